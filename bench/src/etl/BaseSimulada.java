@@ -0,0 +1,310 @@
+package src.etl;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sustituto en memoria de las bases origen y destino para medir el ETL de punta a punta
+ * sin un servidor. El origen devuelve las filas de {@link DatosSinteticos}; el destino
+ * responde a los metadatos (columnas, PK), acepta todas las sentencias sin ejecutarlas
+ * y cuenta las filas recibidas.
+ *
+ * Cada llamada al servidor (lote, sentencia, commit, rollback) puede simular una ida y
+ * vuelta de red con {@code latenciaNanos}, y el trabajo del servidor con un coste fijo por
+ * sentencia ejecutada ({@code costeSentenciaNanos}: cada fila de un lote de sentencias
+ * parametrizadas es una ejecución; un MERGE o un envío de bulk copy, una sola) y un coste
+ * por fila escrita ({@code costeFilaNanos}; el MERGE del staging vuelve a escribir en la
+ * tabla destino las filas de la tabla temporal). Es un modelo lineal, sin índices, log ni
+ * bloqueos: ordena las estrategias según cuántas sentencias y escrituras hacen, con los
+ * costes que se le indiquen. Se registra el tiempo entre commits como latencia por lote.
+ */
+final class BaseSimulada {
+
+    private static final class TablaDestino {
+        final DatosSinteticos estructura;
+        final List<String> clavesPrimarias;
+
+        TablaDestino(DatosSinteticos estructura, List<String> clavesPrimarias) {
+            this.estructura = estructura;
+            this.clavesPrimarias = clavesPrimarias;
+        }
+    }
+
+    private final Map<String, DatosSinteticos> origen = new HashMap<>();
+    private final Map<String, Long> filasOrigen = new HashMap<>();
+    private final Map<String, TablaDestino> destino = new HashMap<>();
+    private final long latenciaNanos;
+    private final long costeSentenciaNanos;
+    private final long costeFilaNanos;
+
+    // Medición de la ejecución en curso (un solo hilo de carga)
+    private long filasRecibidas;
+    private long filasSinAplicar;
+    private long idasYVueltas;
+    private long ultimoCommit;
+    private long[] latenciasLote = new long[1024];
+    private int lotes;
+
+    BaseSimulada(long latenciaNanos, long costeSentenciaNanos, long costeFilaNanos) {
+        this.latenciaNanos = latenciaNanos;
+        this.costeSentenciaNanos = costeSentenciaNanos;
+        this.costeFilaNanos = costeFilaNanos;
+    }
+
+    void agregarOrigen(String tabla, DatosSinteticos datos, long filas) {
+        origen.put(tabla.toLowerCase(Locale.ROOT), datos);
+        filasOrigen.put(tabla.toLowerCase(Locale.ROOT), filas);
+    }
+
+    void agregarDestino(String tabla, DatosSinteticos estructura, List<String> clavesPrimarias) {
+        destino.put(tabla.toLowerCase(Locale.ROOT), new TablaDestino(estructura, clavesPrimarias));
+    }
+
+    void reiniciarMedicion() {
+        filasRecibidas = 0;
+        filasSinAplicar = 0;
+        idasYVueltas = 0;
+        lotes = 0;
+        ultimoCommit = System.nanoTime();
+    }
+
+    long filasRecibidas() {
+        return filasRecibidas;
+    }
+
+    long idasYVueltas() {
+        return idasYVueltas;
+    }
+
+    /** Latencias por lote (tiempo entre commits) de la ejecución en curso, en nanosegundos. */
+    long[] latenciasLote() {
+        return Arrays.copyOf(latenciasLote, lotes);
+    }
+
+    /**
+     * Una llamada al servidor que envía {@code filas} filas y ejecuta {@code sentencias}
+     * sentencias; espera la latencia de red más el trabajo simulado del servidor.
+     */
+    void idaYVuelta(int filas, int sentencias) {
+        idasYVueltas++;
+        filasRecibidas += filas;
+        filasSinAplicar += filas;
+        esperar(sentencias * costeSentenciaNanos + filas * costeFilaNanos);
+    }
+
+    /** Lote de una sentencia parametrizada: una ejecución por fila, o una sin filas. */
+    private void lote(int filas) {
+        idaYVuelta(filas, Math.max(filas, 1));
+    }
+
+    /** Sentencia sin filas enviadas, que escribe {@code filasEscritas} filas ya recibidas. */
+    private void sentencia(long filasEscritas) {
+        idasYVueltas++;
+        esperar(costeSentenciaNanos + filasEscritas * costeFilaNanos);
+    }
+
+    private void esperar(long servidorNanos) {
+        long nanos = latenciaNanos + servidorNanos;
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    /** Commit de un lote: una ida y vuelta más, y el fin del lote para la latencia. */
+    void commit() {
+        idaYVuelta(0, 0);
+        long ahora = System.nanoTime();
+        if (lotes == latenciasLote.length) {
+            latenciasLote = Arrays.copyOf(latenciasLote, lotes * 2);
+        }
+        latenciasLote[lotes++] = ahora - ultimoCommit;
+        ultimoCommit = ahora;
+    }
+
+    Connection conexionOrigen() {
+        return conexion(true);
+    }
+
+    Connection conexionDestino() {
+        return conexion(false);
+    }
+
+    private Connection conexion(boolean esOrigen) {
+        boolean[] autoCommit = {true};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "createStatement":
+                            return sentencia(esOrigen, null);
+                        case "prepareStatement":
+                            String sql = (String) args[0];
+                            return esOrigen ? sentencia(true, sql) : new SentenciaSimulada(sql, this::lote);
+                        case "getMetaData":
+                            return metadatosDestino();
+                        case "getAutoCommit":
+                            return autoCommit[0];
+                        case "setAutoCommit":
+                            autoCommit[0] = (Boolean) args[0];
+                            return null;
+                        case "commit":
+                            commit();
+                            return null;
+                        case "rollback":
+                            idaYVuelta(0, 0);
+                            return null;
+                        case "isValid":
+                            return true;
+                        case "isClosed":
+                        case "isWrapperFor":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /**
+     * Statement (o PreparedStatement de la consulta origen con {@code sqlPreparada}).
+     * En el origen las consultas devuelven las filas de la tabla nombrada en el FROM; en
+     * el destino devuelven la estructura de la tabla sin filas, y el MERGE del modo
+     * staging devuelve como insertadas las filas recibidas desde el MERGE anterior.
+     */
+    private Statement sentencia(boolean esOrigen, String sqlPreparada) {
+        ResultSet[] resultado = {null};
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, metodo, args) -> {
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sqlPreparada;
+                    switch (metodo.getName()) {
+                        case "getMetaData":
+                            return tablaOrigen(sql).metadatos();
+                        case "executeQuery":
+                            if (esOrigen) {
+                                return new ResultSetSintetico(tablaOrigen(sql), filasOrigen.get(nombreTabla(sql)));
+                            }
+                            sentencia(0);
+                            return new ResultSetSintetico(tablaDestino(sql).estructura, 0);
+                        case "execute":
+                            if (!esOrigen && sql.contains("MERGE ")) {
+                                sentencia(filasSinAplicar);
+                                resultado[0] = conteosMerge(filasSinAplicar);
+                                filasSinAplicar = 0;
+                                return true;
+                            }
+                            sentencia(0);
+                            return false;
+                        case "executeUpdate":
+                            sentencia(0);
+                            return 0;
+                        case "getResultSet":
+                            return resultado[0];
+                        case "getUpdateCount":
+                            return -1;
+                        case "getMoreResults":
+                            return false;
+                        case "isClosed":
+                        case "isWrapperFor":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private DatabaseMetaData metadatosDestino() {
+        return (DatabaseMetaData) Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(),
+                new Class<?>[] {DatabaseMetaData.class}, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "getColumns":
+                            return listaColumnas(tablaDestino((String) args[2]).estructura.nombresColumnas());
+                        case "getPrimaryKeys":
+                            return listaColumnas(tablaDestino((String) args[2]).clavesPrimarias);
+                        case "getURL":
+                            // Clave de la caché de metadatos
+                            return "jdbc:simulada://destino";
+                        case "getSearchStringEscape":
+                            return "\\";
+                        default:
+                            throw new SQLException("Metadato no disponible en la base simulada: " + metodo.getName());
+                    }
+                });
+    }
+
+    private static ResultSet listaColumnas(List<String> columnas) {
+        int[] posicion = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "next":
+                            return ++posicion[0] < columnas.size();
+                        case "getString":
+                            return columnas.get(posicion[0]);
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static ResultSet conteosMerge(long insertados) {
+        boolean[] leido = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "next":
+                            boolean hay = !leido[0];
+                            leido[0] = true;
+                            return hay;
+                        case "getLong":
+                            return (Integer) args[0] == 1 ? insertados : 0L;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private DatosSinteticos tablaOrigen(String sql) throws SQLException {
+        DatosSinteticos datos = origen.get(nombreTabla(sql));
+        if (datos == null) {
+            throw new SQLException("Tabla origen inexistente en la base simulada: " + sql);
+        }
+        return datos;
+    }
+
+    private TablaDestino tablaDestino(String sqlOTabla) throws SQLException {
+        String nombre = sqlOTabla.contains(" ") ? nombreTabla(sqlOTabla) : sqlOTabla.toLowerCase(Locale.ROOT);
+        TablaDestino tabla = destino.get(nombre);
+        if (tabla == null) {
+            throw new SQLException("Tabla destino inexistente en la base simulada: " + sqlOTabla);
+        }
+        return tabla;
+    }
+
+    /** Nombre de la tabla del último FROM de la consulta. */
+    private static String nombreTabla(String sql) {
+        String[] palabras = sql.trim().split("\\s+");
+        for (int i = palabras.length - 2; i >= 0; i--) {
+            if (palabras[i].equalsIgnoreCase("FROM")) {
+                return palabras[i + 1].replaceAll("[;)]+$", "").toLowerCase(Locale.ROOT);
+            }
+        }
+        return "";
+    }
+}
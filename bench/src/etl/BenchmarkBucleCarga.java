@@ -0,0 +1,241 @@
+package src.etl;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prueba de rendimiento del bucle de carga (lectura del ResultSet, transformaciones y
+ * enlace de parámetros) sin SQL Server: los datos salen de {@link DatosSinteticos} y
+ * las sentencias son {@link SentenciaSimulada}. Informa ns por fila y bytes asignados
+ * por fila (ThreadMXBean), para comprobar mejoras y regresiones.
+ *
+ * Cada escenario se mide en el hilo actual, tras unas iteraciones de calentamiento:
+ * <ul>
+ *   <li>lectura: FuenteResultSet.siguiente</li>
+ *   <li>transformacion: TransformacionFila sobre filas ya leídas</li>
+ *   <li>enlace: CargadorFilaAFila.agregar y ejecutarLote cada 1000 filas</li>
+ *   <li>completo: las tres etapas seguidas, como en un hilo del ETL</li>
+ *   <li>columnar: las tres etapas por lotes columnares ({@link LoteColumnar}); las
+ *       transformaciones sobre columnas numéricas no se aplican en este escenario</li>
+ * </ul>
+ *
+ * Uso (desde la raíz del proyecto):
+ * <pre>
+ * javac -encoding UTF-8 -cp "lib/*" -d out $(find src bench -name '*.java')
+ * java -cp "out:lib/*" src.etl.BenchmarkBucleCarga [--filas 1000000] [--columnas INT,VARCHAR(40),...]
+ *      [--claves 1] [--transformaciones none,upper,...] [--nulos 0.05] [--distintas 4096]
+ *      [--calentamiento 3] [--iteraciones 5] [--escenarios lectura,transformacion,enlace,completo,columnar]
+ * </pre>
+ */
+public final class BenchmarkBucleCarga {
+
+    private static final int TAMANIO_LOTE = 1000;
+
+    private static final Map<String, String> POR_DEFECTO = new LinkedHashMap<>();
+
+    static {
+        POR_DEFECTO.put("filas", "1000000");
+        POR_DEFECTO.put("columnas", "INT,VARCHAR(40),NVARCHAR(200),DATETIME,DECIMAL(18,2),BIT,BIGINT,FLOAT");
+        POR_DEFECTO.put("claves", "1");
+        POR_DEFECTO.put("transformaciones", "none,upper,lower,date:Año,none,none,none,none");
+        POR_DEFECTO.put("nulos", "0.05");
+        POR_DEFECTO.put("distintas", "4096");
+        POR_DEFECTO.put("calentamiento", "3");
+        POR_DEFECTO.put("iteraciones", "5");
+        POR_DEFECTO.put("escenarios", "lectura,transformacion,enlace,completo,columnar");
+    }
+
+    private interface Escenario {
+        /** Recorre {@code filas} filas y devuelve un valor que impide descartar el trabajo. */
+        long ejecutar(long filas) throws SQLException;
+    }
+
+    private BenchmarkBucleCarga() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = opciones(args);
+        long filas = Long.parseLong(opciones.get("filas"));
+        int claves = Integer.parseInt(opciones.get("claves"));
+        DatosSinteticos datos = new DatosSinteticos(opciones.get("columnas"), claves,
+                Double.parseDouble(opciones.get("nulos")), Integer.parseInt(opciones.get("distintas")), 42);
+
+        List<String> columnas = datos.nombresColumnas();
+        Map<String, String> transformaciones = new HashMap<>();
+        String[] especificaciones = opciones.get("transformaciones").split(",");
+        for (int i = 0; i < especificaciones.length && i < columnas.size(); i++) {
+            transformaciones.put(columnas.get(i), especificaciones[i].trim());
+        }
+        List<String> primaryKeys = new ArrayList<>(columnas.subList(0, claves));
+
+        System.out.println("Columnas: " + opciones.get("columnas") + " (clave: " + primaryKeys + ")");
+        System.out.println("Transformaciones: " + opciones.get("transformaciones"));
+        System.out.println("Filas por iteración: " + filas + ", nulos: " + opciones.get("nulos")
+                + ", JVM: " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        System.out.println();
+        System.out.println(String.format("%-16s %14s %14s %14s %14s", "escenario", "ns/fila (med)", "ns/fila (mín)",
+                "bytes/fila", "filas/s"));
+
+        int calentamiento = Integer.parseInt(opciones.get("calentamiento"));
+        int iteraciones = Integer.parseInt(opciones.get("iteraciones"));
+        for (String nombre : opciones.get("escenarios").split(",")) {
+            Escenario escenario = crear(nombre.trim(), datos, columnas, transformaciones, primaryKeys);
+            medir(nombre.trim(), escenario, filas, calentamiento, iteraciones);
+        }
+    }
+
+    private static Escenario crear(String nombre, DatosSinteticos datos, List<String> columnas,
+            Map<String, String> transformaciones, List<String> primaryKeys) throws SQLException {
+        int ancho = columnas.size();
+        TransformacionFila transformacion = TransformacionFila.compilar(transformaciones, columnas);
+        switch (nombre) {
+            case "lectura":
+                return filas -> {
+                    Object[] fila = new Object[ancho];
+                    long suma = 0;
+                    try (FuenteResultSet fuente = new FuenteResultSet(datos.conexion(filas), "SELECT", columnas, 1000)) {
+                        while (fuente.siguiente(fila)) {
+                            suma += fila[0] == null ? 0 : 1;
+                        }
+                    }
+                    return suma;
+                };
+            case "transformacion":
+                return filas -> {
+                    Object[] fila = new Object[ancho];
+                    long suma = 0;
+                    for (long f = 0; f < filas; f++) {
+                        System.arraycopy(datos.fila(f), 0, fila, 0, ancho);
+                        transformacion.accept(fila);
+                        suma += fila[ancho - 1] == null ? 0 : 1;
+                    }
+                    return suma;
+                };
+            case "enlace":
+                return filas -> {
+                    Connection destino = datos.conexion(0);
+                    try (CargadorFilaAFila cargador = new CargadorFilaAFila(destino, "dbo.Destino", columnas, primaryKeys)) {
+                        for (long f = 0; f < filas; f++) {
+                            cargador.agregar(datos.fila(f));
+                            if ((f + 1) % TAMANIO_LOTE == 0) {
+                                cargador.ejecutarLote();
+                                cargador.alConfirmar();
+                            }
+                        }
+                        cargador.ejecutarLote();
+                        cargador.alConfirmar();
+                    }
+                    return filas;
+                };
+            case "completo":
+                return filas -> {
+                    Object[] fila = new Object[ancho];
+                    Connection destino = datos.conexion(0);
+                    long f = 0;
+                    try (FuenteResultSet fuente = new FuenteResultSet(datos.conexion(filas), "SELECT", columnas, 1000);
+                         CargadorFilaAFila cargador = new CargadorFilaAFila(destino, "dbo.Destino", columnas, primaryKeys)) {
+                        while (fuente.siguiente(fila)) {
+                            transformacion.accept(fila);
+                            cargador.agregar(fila);
+                            if (++f % TAMANIO_LOTE == 0) {
+                                cargador.ejecutarLote();
+                                cargador.alConfirmar();
+                            }
+                        }
+                        cargador.ejecutarLote();
+                        cargador.alConfirmar();
+                    }
+                    return f;
+                };
+            case "columnar":
+                return filas -> {
+                    Connection destino = datos.conexion(0);
+                    long f = 0;
+                    try (FuenteResultSet fuente = new FuenteResultSet(datos.conexion(filas), "SELECT", columnas, 1000);
+                         CargadorFilaAFila cargador = new CargadorFilaAFila(destino, "dbo.Destino", columnas, primaryKeys)) {
+                        LectorColumnas lector = fuente.lector();
+                        Map<String, String> aplicables = new HashMap<>();
+                        for (int i = 0; i < ancho; i++) {
+                            if (LoteColumnar.clase(lector.tipos()[i]) == LoteColumnar.OBJETO
+                                    && transformaciones.containsKey(columnas.get(i))) {
+                                aplicables.put(columnas.get(i), transformaciones.get(columnas.get(i)));
+                            }
+                        }
+                        TransformacionFila porLote = TransformacionFila.compilar(aplicables, columnas);
+                        LoteColumnar lote = lector.crearLote();
+                        int leidas;
+                        while ((leidas = lector.llenar(lote, TAMANIO_LOTE)) > 0) {
+                            porLote.aplicar(lote);
+                            for (int i = 0; i < leidas; i++) {
+                                cargador.agregar(lote, i);
+                            }
+                            f += leidas;
+                            cargador.ejecutarLote();
+                            cargador.alConfirmar();
+                        }
+                    }
+                    return f;
+                };
+            default:
+                throw new IllegalArgumentException("Escenario desconocido: " + nombre);
+        }
+    }
+
+    private static void medir(String nombre, Escenario escenario, long filas, int calentamiento, int iteraciones)
+            throws SQLException {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long idHilo = Thread.currentThread().getId();
+        long control = 0;
+        for (int i = 0; i < calentamiento; i++) {
+            control += escenario.ejecutar(filas);
+        }
+
+        double[] nsPorFila = new double[iteraciones];
+        double[] bytesPorFila = new double[iteraciones];
+        for (int i = 0; i < iteraciones; i++) {
+            long bytesInicio = hilos.getThreadAllocatedBytes(idHilo);
+            long inicio = System.nanoTime();
+            control += escenario.ejecutar(filas);
+            long nanos = System.nanoTime() - inicio;
+            long bytes = hilos.getThreadAllocatedBytes(idHilo) - bytesInicio;
+            nsPorFila[i] = (double) nanos / filas;
+            bytesPorFila[i] = (double) bytes / filas;
+        }
+
+        double mediana = mediana(nsPorFila);
+        System.out.println(String.format("%-16s %14.1f %14.1f %14.1f %14.0f", nombre, mediana,
+                Arrays.stream(nsPorFila).min().orElse(0), mediana(bytesPorFila), 1e9 / mediana));
+        if (control == Long.MIN_VALUE) {
+            System.out.println();
+        }
+    }
+
+    private static double mediana(double[] valores) {
+        double[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        int mitad = ordenados.length / 2;
+        return ordenados.length % 2 == 1 ? ordenados[mitad] : (ordenados[mitad - 1] + ordenados[mitad]) / 2;
+    }
+
+    private static Map<String, String> opciones(String[] args) {
+        Map<String, String> opciones = new LinkedHashMap<>(POR_DEFECTO);
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Opción incompleta: " + args[i]);
+            }
+            String nombre = args[i].substring(2);
+            if (!opciones.containsKey(nombre)) {
+                throw new IllegalArgumentException("Opción desconocida: " + args[i] + ". Opciones: " + POR_DEFECTO.keySet());
+            }
+            opciones.put(nombre, args[++i]);
+        }
+        return opciones;
+    }
+}
@@ -0,0 +1,263 @@
+package src.etl;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Prueba de rendimiento de punta a punta: ejecuta trabajos del ETL
+ * ({@link ETLProcess#extractTransformLoad}) sobre una {@link BaseSimulada} con tablas de
+ * la forma de StackOverflow (Users y Posts con PK, Votes sin PK en el destino) y distintas
+ * cantidades de filas, modos de carga y tamaños de lote. Informa filas/s, latencia por
+ * lote (p50, p99, máx), idas y vueltas, pico de heap y tiempo de GC de cada combinación.
+ *
+ * Un lote "auto" usa el tamaño de lote y la frecuencia de commit adaptativos
+ * ({@link ControladorLote}); un número, un lote fijo con commit por lote. Con
+ * {@code --columnar true,false} se comparan los lotes columnares con el pipeline por filas.
+ *
+ * Los modos fila a fila (UPSERT con PK, INSERT con verificación sin PK), staging (MERGE)
+ * y deduplicado recorren el mismo camino que una ejecución real. SQLServerBulkCopy exige
+ * una conexión real de SQL Server, así que BULK_COPY mide su lado cliente: el pipeline y
+ * {@link DatosBulkCopy}, con una ida y vuelta y un commit por lote.
+ *
+ * La base simulada cobra un coste de servidor por sentencia ejecutada y por fila escrita
+ * ({@code --servidor.sentencia.us}, {@code --servidor.fila.us}); sin él las cifras solo
+ * miden el lado cliente y no sirven para comparar estrategias. Los valores por defecto son
+ * una referencia; para decidir entre modos conviene medirlos en el servidor real (tiempo
+ * de un INSERT parametrizado y de un INSERT ... SELECT de muchas filas, por fila).
+ *
+ * Uso (desde la raíz del proyecto):
+ * <pre>
+ * javac -encoding UTF-8 -cp "lib/*" -d out $(find src bench -name '*.java')
+ * java -Xmx4g -cp "out:lib/*" src.etl.BenchmarkExtremoAExtremo [--tablas Users,Posts,Votes]
+ *      [--filas 10000,1000000,10000000] [--modos FILA_A_FILA,STAGING,DEDUPLICADO,BULK_COPY]
+ *      [--lotes 1000,5000,auto] [--latencia.us 0] [--servidor.sentencia.us 10]
+ *      [--servidor.fila.us 2] [--transformadores 1] [--columnar true]
+ *      [--repeticiones 1]
+ * </pre>
+ */
+public final class BenchmarkExtremoAExtremo {
+
+    private static final Map<String, String> POR_DEFECTO = new LinkedHashMap<>();
+    private static final Map<String, String> FORMAS = new LinkedHashMap<>();
+
+    static {
+        POR_DEFECTO.put("tablas", "Users,Posts,Votes");
+        POR_DEFECTO.put("filas", "10000,1000000");
+        POR_DEFECTO.put("modos", "FILA_A_FILA,STAGING,DEDUPLICADO,BULK_COPY");
+        POR_DEFECTO.put("lotes", "1000,5000,auto");
+        POR_DEFECTO.put("latencia.us", "0");
+        POR_DEFECTO.put("servidor.sentencia.us", "10");
+        POR_DEFECTO.put("servidor.fila.us", "2");
+        POR_DEFECTO.put("transformadores", "1");
+        POR_DEFECTO.put("columnar", "true");
+        POR_DEFECTO.put("repeticiones", "1");
+
+        FORMAS.put("Users", "Id:INT,Reputation:INT,CreationDate:DATETIME,DisplayName:NVARCHAR(40),"
+                + "LastAccessDate:DATETIME,Location:NVARCHAR(100),Views:INT,UpVotes:INT,DownVotes:INT,AccountId:INT");
+        FORMAS.put("Posts", "Id:INT,PostTypeId:INT,AcceptedAnswerId:INT,ParentId:INT,CreationDate:DATETIME,"
+                + "Score:INT,ViewCount:INT,Body:NVARCHAR(2000),OwnerUserId:INT,LastActivityDate:DATETIME,"
+                + "Title:NVARCHAR(250),Tags:NVARCHAR(150),AnswerCount:INT,CommentCount:INT");
+        FORMAS.put("Votes", "Id:INT,PostId:INT,VoteTypeId:INT,UserId:INT,CreationDate:DATETIME,BountyAmount:INT");
+    }
+
+    // Tablas cuyo destino no tiene PK (tabla de hechos sin clave)
+    private static final List<String> SIN_PK = List.of("Votes");
+
+    private BenchmarkExtremoAExtremo() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = opciones(args);
+        long latenciaNanos = Long.parseLong(opciones.get("latencia.us")) * 1000;
+        long costeSentenciaNanos = Long.parseLong(opciones.get("servidor.sentencia.us")) * 1000;
+        long costeFilaNanos = Long.parseLong(opciones.get("servidor.fila.us")) * 1000;
+        int repeticiones = Integer.parseInt(opciones.get("repeticiones"));
+        Path estado = Files.createTempDirectory("etl-benchmark");
+
+        System.out.println("Latencia simulada por ida y vuelta: " + opciones.get("latencia.us") + " us, servidor: "
+                + opciones.get("servidor.sentencia.us") + " us por sentencia y " + opciones.get("servidor.fila.us")
+                + " us por fila escrita, JVM: "
+                + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                + ", heap máx: " + Runtime.getRuntime().maxMemory() / (1 << 20) + " MB");
+        System.out.println();
+        System.out.println(String.format("%-6s %9s %-12s %6s %4s %11s %10s %10s %10s %10s %9s %8s",
+                "tabla", "filas", "modo", "lote", "col", "filas/s", "p50 ms", "p99 ms", "máx ms", "idas/vta", "heap MB", "GC ms"));
+
+        for (String tabla : opciones.get("tablas").split(",")) {
+            tabla = tabla.trim();
+            String forma = FORMAS.get(tabla);
+            if (forma == null) {
+                throw new IllegalArgumentException("Tabla desconocida: " + tabla + ". Tablas: " + FORMAS.keySet());
+            }
+            boolean conPK = !SIN_PK.contains(tabla);
+            for (String cantidad : opciones.get("filas").split(",")) {
+                long filas = Long.parseLong(cantidad.trim());
+                DatosSinteticos datos = new DatosSinteticos(forma, 1, true, 0.05, (int) Math.min(filas, 10_000), 42);
+                BaseSimulada base = new BaseSimulada(latenciaNanos, costeSentenciaNanos, costeFilaNanos);
+                base.agregarOrigen(tabla, datos, filas);
+                base.agregarDestino(tabla, datos, conPK ? List.of("Id") : List.of());
+
+                for (String nombreModo : opciones.get("modos").split(",")) {
+                    ModoCarga modo = ModoCarga.valueOf(nombreModo.trim());
+                    if (modo == ModoCarga.DEDUPLICADO && conPK) {
+                        continue;
+                    }
+                    for (String lote : opciones.get("lotes").split(",")) {
+                        for (String columnar : opciones.get("columnar").split(",")) {
+                            for (int r = 0; r < repeticiones; r++) {
+                                ejecutar(base, tabla, datos, filas, modo, lote.trim(), Boolean.parseBoolean(columnar.trim()),
+                                        opciones.get("transformadores"), estado);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void ejecutar(BaseSimulada base, String tabla, DatosSinteticos datos, long filas, ModoCarga modo,
+            String lote, boolean columnar, String transformadores, Path estado) throws Exception {
+        boolean adaptativo = lote.equals("auto");
+        int filasLote = adaptativo ? CargaPorLotes.MAX_BATCH_SIZE : Integer.parseInt(lote);
+        Properties properties = new Properties();
+        properties.setProperty("etl.estado.dir", estado.toString());
+        properties.setProperty("etl.lote.adaptativo", String.valueOf(adaptativo));
+        properties.setProperty("etl.lote.filas", String.valueOf(filasLote));
+        properties.setProperty("etl.bulk.lote", String.valueOf(adaptativo ? 10000 : filasLote));
+        properties.setProperty("etl.pipeline.transformadores", transformadores);
+        properties.setProperty("etl.lote.columnar", String.valueOf(columnar));
+        properties.setProperty("etl.metricas.intervalo.s", "0");
+        properties.setProperty("etl.metricas.jmx", "false");
+
+        ConfiguracionTrabajo trabajo = new ConfiguracionTrabajo(tabla);
+        trabajo.tablaOrigen = tabla;
+        trabajo.columnasTablaOrigen = datos.nombresColumnas();
+        trabajo.tablaDestino = tabla;
+        trabajo.transformaciones = new LinkedHashMap<>();
+        trabajo.modoCarga = modo;
+        trabajo.conservarHuellas = false;
+        trabajo.particiones = 1;
+        trabajo.estrategiaParticion = ExtraccionParticionada.Estrategia.RANGO;
+        trabajo.columnaMarca = "";
+        trabajo.columnaCheckpoint = "";
+
+        System.gc();
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heap.add(pool);
+            }
+        }
+        long gcInicio = tiempoGC();
+
+        PrintStream salida = System.out;
+        Connection origen = base.conexionOrigen();
+        Connection destino = base.conexionDestino();
+        base.reiniciarMedicion();
+        long inicio = System.nanoTime();
+        try {
+            // Los mensajes de progreso del ETL no forman parte de la medición
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            if (modo == ModoCarga.BULK_COPY) {
+                cargarBulkCliente(base, origen, destino, trabajo, ETLProcess.entero(properties, "etl.bulk.lote", 10000),
+                        properties);
+            } else {
+                ETLProcess.extractTransformLoad(origen, destino, base::conexionOrigen, base::conexionDestino,
+                        trabajo, null, properties, false);
+            }
+        } finally {
+            System.setOut(salida);
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        long picoHeap = 0;
+        for (MemoryPoolMXBean pool : heap) {
+            picoHeap += pool.getPeakUsage().getUsed();
+        }
+        long[] latencias = base.latenciasLote();
+        Arrays.sort(latencias);
+        if (base.filasRecibidas() != filas) {
+            System.out.println("Aviso: el destino recibió " + base.filasRecibidas() + " filas de " + filas + ".");
+        }
+        System.out.println(String.format("%-6s %9d %-12s %6s %4s %11.0f %10.2f %10.2f %10.2f %10d %9d %8d",
+                tabla, filas, modo, lote, columnar && modo != ModoCarga.BULK_COPY ? "sí" : "no", filas * 1e9 / nanos, percentil(latencias, 0.50) / 1e6,
+                percentil(latencias, 0.99) / 1e6, latencias.length == 0 ? 0 : latencias[latencias.length - 1] / 1e6,
+                base.idasYVueltas(), picoHeap / (1 << 20), tiempoGC() - gcInicio));
+    }
+
+    /**
+     * Lado cliente de BULK_COPY: el mismo pipeline que en {@link ETLProcess}, leído a través
+     * de {@link DatosBulkCopy} como lo haría SQLServerBulkCopy, con un envío por lote.
+     */
+    private static void cargarBulkCliente(BaseSimulada base, Connection origen, Connection destino,
+            ConfiguracionTrabajo trabajo, int lote, Properties properties) throws Exception {
+        List<String> columnas = trabajo.columnasTablaOrigen;
+        TransformacionFila transformacion = TransformacionFila.compilar(trabajo.transformaciones, columnas);
+        try (FuenteFilas fuente = new PipelineETL(new FuenteResultSet(origen, trabajo.consultaOrigen(), columnas, 1000),
+                transformacion, columnas.size(), ETLProcess.entero(properties, "etl.pipeline.profundidad", 4096),
+                ETLProcess.entero(properties, "etl.pipeline.transformadores", 1), new MetricasETL(trabajo.nombre))) {
+            DatosBulkCopy datos = new DatosBulkCopy(
+                    DatosBulkCopy.Columnas.leer(destino, trabajo.tablaDestino, columnas), fuente);
+            int enLote = 0;
+            while (datos.next()) {
+                Object[] fila = datos.getRowData();
+                if (fila.length != columnas.size()) {
+                    throw new IllegalStateException("Fila incompleta");
+                }
+                if (++enLote == lote) {
+                    base.idaYVuelta(enLote, 1);
+                    base.commit();
+                    enLote = 0;
+                }
+            }
+            if (enLote > 0) {
+                base.idaYVuelta(enLote, 1);
+                base.commit();
+            }
+        }
+    }
+
+    private static double percentil(long[] ordenados, double p) {
+        if (ordenados.length == 0) {
+            return 0;
+        }
+        return ordenados[(int) Math.min(ordenados.length - 1, Math.ceil(p * ordenados.length) - 1)];
+    }
+
+    private static long tiempoGC() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static Map<String, String> opciones(String[] args) {
+        Map<String, String> opciones = new LinkedHashMap<>(POR_DEFECTO);
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Opción incompleta: " + args[i]);
+            }
+            String nombre = args[i].substring(2);
+            if (!opciones.containsKey(nombre)) {
+                throw new IllegalArgumentException("Opción desconocida: " + args[i] + ". Opciones: " + POR_DEFECTO.keySet());
+            }
+            opciones.put(nombre, args[++i]);
+        }
+        return opciones;
+    }
+}
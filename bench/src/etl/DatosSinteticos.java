@@ -0,0 +1,341 @@
+package src.etl;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Datos generados en memoria para las pruebas de rendimiento, con el ancho, los tipos y
+ * la proporción de nulos que se indiquen. Se generan {@code distintas} filas y se
+ * recorren cíclicamente hasta completar las pedidas, así la generación queda fuera de
+ * la medición. También ofrece una conexión simulada cuyas consultas devuelven un
+ * {@link ResultSetSintetico} y cuyas sentencias preparadas son {@link SentenciaSimulada}.
+ *
+ * Columnas: lista separada por comas de INT, BIGINT, BIT, FLOAT, DATETIME,
+ * DECIMAL(p,s), VARCHAR(n) y NVARCHAR(n), opcionalmente con nombre ("Id:INT"); sin
+ * nombre se llaman col1, col2, ...
+ *
+ * Con claves únicas, las columnas clave toman un valor distinto en cada fila (a partir
+ * del número de fila) aunque el resto de la fila se repita.
+ */
+final class DatosSinteticos {
+
+    private static final class Columna {
+        final String nombre;
+        final String tipo;
+        final int tipoSql;
+        final int precision;
+        final int escala;
+
+        Columna(String nombre, String tipo, int tipoSql, int precision, int escala) {
+            this.nombre = nombre;
+            this.tipo = tipo;
+            this.tipoSql = tipoSql;
+            this.precision = precision;
+            this.escala = escala;
+        }
+    }
+
+    private final List<Columna> columnas = new ArrayList<>();
+    private final int claves;
+    private final boolean clavesUnicas;
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final Object[][] filas;
+    private final ResultSetMetaData metadatos;
+    private final List<SentenciaSimulada> sentencias = new ArrayList<>();
+
+    /**
+     * @param especificacion tipos de las columnas, separados por comas
+     * @param claves cuántas de las primeras columnas forman la clave (sin nulos, valores distintos)
+     * @param proporcionNulos probabilidad de NULL en las demás columnas
+     * @param distintas filas distintas que se generan y se repiten
+     */
+    DatosSinteticos(String especificacion, int claves, double proporcionNulos, int distintas, long semilla) {
+        this(especificacion, claves, false, proporcionNulos, distintas, semilla);
+    }
+
+    /**
+     * @param clavesUnicas true para que las columnas clave no se repitan al recorrer cíclicamente las filas
+     */
+    DatosSinteticos(String especificacion, int claves, boolean clavesUnicas, double proporcionNulos, int distintas,
+            long semilla) {
+        this.claves = claves;
+        this.clavesUnicas = clavesUnicas;
+        for (String tipo : partirTipos(especificacion)) {
+            agregarColumna(tipo.trim());
+        }
+        Random aleatorio = new Random(semilla);
+        filas = new Object[distintas][];
+        for (int f = 0; f < distintas; f++) {
+            Object[] fila = new Object[columnas.size()];
+            for (int c = 0; c < fila.length; c++) {
+                boolean clave = c < claves;
+                fila[c] = !clave && aleatorio.nextDouble() < proporcionNulos
+                        ? null
+                        : generar(columnas.get(c), clave ? f : -1, aleatorio);
+            }
+            filas[f] = fila;
+        }
+        metadatos = crearMetadatos();
+    }
+
+    private static List<String> partirTipos(String especificacion) {
+        // Las comas dentro de paréntesis, como en DECIMAL(18,2), no separan columnas
+        List<String> tipos = new ArrayList<>();
+        int nivel = 0;
+        int inicio = 0;
+        for (int i = 0; i < especificacion.length(); i++) {
+            char c = especificacion.charAt(i);
+            if (c == '(') {
+                nivel++;
+            } else if (c == ')') {
+                nivel--;
+            } else if (c == ',' && nivel == 0) {
+                tipos.add(especificacion.substring(inicio, i));
+                inicio = i + 1;
+            }
+        }
+        tipos.add(especificacion.substring(inicio));
+        return tipos;
+    }
+
+    private void agregarColumna(String definicion) {
+        int separador = definicion.indexOf(':');
+        String nombre = separador > 0 ? definicion.substring(0, separador).trim() : "col" + (columnas.size() + 1);
+        String tipo = definicion.substring(separador + 1).trim().toUpperCase(Locale.ROOT);
+        String base = tipo.replaceAll("\\(.*", "");
+        int[] argumentos = argumentos(tipo);
+        Columna columna;
+        switch (base) {
+            case "INT":
+                columna = new Columna(nombre, base, Types.INTEGER, 10, 0);
+                break;
+            case "BIGINT":
+                columna = new Columna(nombre, base, Types.BIGINT, 19, 0);
+                break;
+            case "BIT":
+                columna = new Columna(nombre, base, Types.BIT, 1, 0);
+                break;
+            case "FLOAT":
+                columna = new Columna(nombre, base, Types.DOUBLE, 53, 0);
+                break;
+            case "DATETIME":
+                columna = new Columna(nombre, base, Types.TIMESTAMP, 23, 3);
+                break;
+            case "DECIMAL":
+                columna = new Columna(nombre, base, Types.DECIMAL,
+                        argumentos.length > 0 ? argumentos[0] : 18, argumentos.length > 1 ? argumentos[1] : 0);
+                break;
+            case "VARCHAR":
+                columna = new Columna(nombre, base, Types.VARCHAR, argumentos.length > 0 ? argumentos[0] : 50, 0);
+                break;
+            case "NVARCHAR":
+                columna = new Columna(nombre, base, Types.NVARCHAR, argumentos.length > 0 ? argumentos[0] : 50, 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Tipo de columna no soportado: " + tipo);
+        }
+        indices.put(nombre.toLowerCase(Locale.ROOT), columnas.size());
+        columnas.add(columna);
+    }
+
+    private static int[] argumentos(String tipo) {
+        int abre = tipo.indexOf('(');
+        if (abre < 0) {
+            return new int[0];
+        }
+        String[] partes = tipo.substring(abre + 1, tipo.indexOf(')')).split(",");
+        int[] valores = new int[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            valores[i] = Integer.parseInt(partes[i].trim());
+        }
+        return valores;
+    }
+
+    private static Object generar(Columna columna, int clave, Random aleatorio) {
+        switch (columna.tipo) {
+            case "INT":
+                return clave >= 0 ? clave + 1 : aleatorio.nextInt(1_000_000);
+            case "BIGINT":
+                return clave >= 0 ? clave + 1L : aleatorio.nextLong() >>> 1;
+            case "BIT":
+                return aleatorio.nextBoolean();
+            case "FLOAT":
+                return aleatorio.nextDouble() * 1000;
+            case "DATETIME":
+                // Entre 2008 y 2024, con la precisión de milisegundos de DATETIME
+                return new Timestamp(1_199_145_600_000L + (long) (aleatorio.nextDouble() * 536_457_600_000L));
+            case "DECIMAL":
+                long digitos = (long) Math.pow(10, Math.min(columna.precision, 18) - 1);
+                return BigDecimal.valueOf((long) (aleatorio.nextDouble() * digitos), columna.escala);
+            default:
+                if (clave >= 0) {
+                    return "k" + clave;
+                }
+                int largo = Math.max(1, columna.precision / 2 + aleatorio.nextInt(columna.precision / 2 + 1));
+                StringBuilder texto = new StringBuilder(largo);
+                for (int i = 0; i < largo; i++) {
+                    if ("NVARCHAR".equals(columna.tipo) && aleatorio.nextInt(20) == 0) {
+                        texto.append("áéíóúñÁÑü".charAt(aleatorio.nextInt(9)));
+                    } else {
+                        texto.append((char) ('a' + aleatorio.nextInt(26)));
+                    }
+                }
+                return texto.toString();
+        }
+    }
+
+    List<String> nombresColumnas() {
+        List<String> nombres = new ArrayList<>();
+        for (Columna columna : columnas) {
+            nombres.add(columna.nombre);
+        }
+        return nombres;
+    }
+
+    int cantidadColumnas() {
+        return columnas.size();
+    }
+
+    Object[] fila(long numero) {
+        return filas[(int) (numero % filas.length)];
+    }
+
+    /** Cantidad de columnas clave cuyo valor se calcula por fila, 0 si las claves se repiten. */
+    int clavesUnicas() {
+        return clavesUnicas ? claves : 0;
+    }
+
+    /** Valor de la columna clave {@code columna} (desde 0) en la fila {@code numero} (desde 0). */
+    Object clave(long numero, int columna) {
+        switch (columnas.get(columna).tipo) {
+            case "INT":
+                return (int) (numero + 1);
+            case "BIGINT":
+                return numero + 1;
+            default:
+                return "k" + numero;
+        }
+    }
+
+    int indiceColumna(String nombre) throws SQLException {
+        Integer indice = indices.get(nombre.toLowerCase(Locale.ROOT));
+        if (indice == null) {
+            throw new SQLException("Columna inexistente: " + nombre);
+        }
+        return indice;
+    }
+
+    ResultSetMetaData metadatos() {
+        return metadatos;
+    }
+
+    /** Sentencias preparadas creadas por la conexión simulada, en orden. */
+    List<SentenciaSimulada> sentencias() {
+        return sentencias;
+    }
+
+    /**
+     * Conexión simulada: cada consulta devuelve {@code totalFilas} filas sintéticas y cada
+     * sentencia preparada es una {@link SentenciaSimulada}. No se usa en el bucle medido,
+     * por eso basta con un Proxy.
+     */
+    Connection conexion(long totalFilas) {
+        boolean[] autoCommit = {true};
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "createStatement":
+                            return sentenciaConsulta(totalFilas);
+                        case "prepareStatement":
+                            SentenciaSimulada sentencia = new SentenciaSimulada((String) args[0]);
+                            sentencias.add(sentencia);
+                            return sentencia;
+                        case "getAutoCommit":
+                            return autoCommit[0];
+                        case "setAutoCommit":
+                            autoCommit[0] = (Boolean) args[0];
+                            return null;
+                        case "isValid":
+                            return true;
+                        case "isClosed":
+                            return false;
+                        case "getMetaData":
+                            return Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(),
+                                    new Class<?>[] {DatabaseMetaData.class}, (p, m, a) -> {
+                                        throw new SQLException("Metadatos no disponibles en la conexión simulada");
+                                    });
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            // commit, rollback, close, setReadOnly, ...: sin efecto
+                            return null;
+                    }
+                });
+    }
+
+    private Statement sentenciaConsulta(long totalFilas) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] {Statement.class, PreparedStatement.class}, (proxy, metodo, args) -> {
+                    switch (metodo.getName()) {
+                        case "executeQuery":
+                            return new ResultSetSintetico(this, totalFilas);
+                        case "execute":
+                            return false;
+                        case "executeUpdate":
+                            return 0;
+                        case "isClosed":
+                        case "isWrapperFor":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private ResultSetMetaData crearMetadatos() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] {ResultSetMetaData.class}, (proxy, metodo, args) -> {
+                    if ("getColumnCount".equals(metodo.getName())) {
+                        return columnas.size();
+                    }
+                    Columna columna = columnas.get((Integer) args[0] - 1);
+                    switch (metodo.getName()) {
+                        case "getColumnName":
+                        case "getColumnLabel":
+                            return columna.nombre;
+                        case "getColumnType":
+                            return columna.tipoSql;
+                        case "getColumnTypeName":
+                            return columna.tipo.toLowerCase(Locale.ROOT);
+                        case "getPrecision":
+                            return columna.precision;
+                        case "getScale":
+                            return columna.escala;
+                        case "isNullable":
+                            return ResultSetMetaData.columnNullable;
+                        default:
+                            throw new SQLException("Metadato no disponible: " + metodo.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,413 @@
+package src.etl;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * ResultSet en memoria, solo hacia adelante, que recorre cíclicamente las filas de
+ * {@link DatosSinteticos}. Devuelve los valores ya construidos, de modo que lo que se
+ * mide en las pruebas de rendimiento es el código del ETL y no la generación de datos.
+ *
+ * Es una clase normal y no un Proxy: un Proxy crea un arreglo de argumentos y encajona
+ * los primitivos en cada llamada, y eso falsearía los bytes asignados por fila.
+ */
+@SuppressWarnings("deprecation")
+final class ResultSetSintetico implements ResultSet {
+    private final DatosSinteticos datos;
+    private final long totalFilas;
+    private final int clavesUnicas;
+    private long fila = -1;
+    private Object[] actual;
+    private boolean ultimoNulo;
+    private boolean cerrado;
+    private int tamanioFetch;
+
+    ResultSetSintetico(DatosSinteticos datos, long totalFilas) {
+        this.datos = datos;
+        this.totalFilas = totalFilas;
+        this.clavesUnicas = datos.clavesUnicas();
+    }
+
+    @Override
+    public boolean next() {
+        if (++fila >= totalFilas) {
+            actual = null;
+            return false;
+        }
+        actual = datos.fila(fila);
+        return true;
+    }
+
+    private Object valor(int columna) throws SQLException {
+        if (actual == null) {
+            throw new SQLException("El cursor no está sobre una fila");
+        }
+        Object valor = columna <= clavesUnicas ? datos.clave(fila, columna - 1) : actual[columna - 1];
+        ultimoNulo = valor == null;
+        return valor;
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        return datos.indiceColumna(columnLabel) + 1;
+    }
+
+    @Override
+    public boolean wasNull() {
+        return ultimoNulo;
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        return valor(columnIndex);
+    }
+
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor == null ? null : valor.toString();
+    }
+
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    @Override
+    public String getNString(int columnIndex) throws SQLException {
+        return getString(columnIndex);
+    }
+
+    @Override
+    public String getNString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor != null && (Boolean) valor;
+    }
+
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return getBoolean(findColumn(columnLabel));
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor == null ? 0 : ((Number) valor).shortValue();
+    }
+
+    @Override
+    public short getShort(String columnLabel) throws SQLException {
+        return getShort(findColumn(columnLabel));
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor == null ? 0 : ((Number) valor).intValue();
+    }
+
+    @Override
+    public int getInt(String columnLabel) throws SQLException {
+        return getInt(findColumn(columnLabel));
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor == null ? 0 : ((Number) valor).longValue();
+    }
+
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        return getLong(findColumn(columnLabel));
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor == null ? 0 : ((Number) valor).floatValue();
+    }
+
+    @Override
+    public float getFloat(String columnLabel) throws SQLException {
+        return getFloat(findColumn(columnLabel));
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        Object valor = valor(columnIndex);
+        return valor == null ? 0 : ((Number) valor).doubleValue();
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        return (BigDecimal) valor(columnIndex);
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        return (Timestamp) valor(columnIndex);
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() {
+        return datos.metadatos();
+    }
+
+    @Override
+    public int getType() {
+        return TYPE_FORWARD_ONLY;
+    }
+
+    @Override
+    public int getConcurrency() {
+        return CONCUR_READ_ONLY;
+    }
+
+    @Override
+    public int getFetchDirection() {
+        return FETCH_FORWARD;
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        if (direction != FETCH_FORWARD) {
+            throw noSoportado();
+        }
+    }
+
+    @Override
+    public int getFetchSize() {
+        return tamanioFetch;
+    }
+
+    @Override
+    public void setFetchSize(int rows) {
+        tamanioFetch = rows;
+    }
+
+    @Override
+    public SQLWarning getWarnings() {
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return cerrado;
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+    }
+
+    private static SQLFeatureNotSupportedException noSoportado() {
+        return new SQLFeatureNotSupportedException("No soportado por el ResultSet sintético");
+    }
+
+    // Resto de la interfaz: sin uso en las pruebas de rendimiento
+    @Override public boolean absolute(int a0) throws SQLException { throw noSoportado(); }
+    @Override public void afterLast() throws SQLException { throw noSoportado(); }
+    @Override public void beforeFirst() throws SQLException { throw noSoportado(); }
+    @Override public void cancelRowUpdates() throws SQLException { throw noSoportado(); }
+    @Override public void deleteRow() throws SQLException { throw noSoportado(); }
+    @Override public boolean first() throws SQLException { throw noSoportado(); }
+    @Override public Array getArray(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Array getArray(int a0) throws SQLException { throw noSoportado(); }
+    @Override public InputStream getAsciiStream(String a0) throws SQLException { throw noSoportado(); }
+    @Override public InputStream getAsciiStream(int a0) throws SQLException { throw noSoportado(); }
+    @Override public BigDecimal getBigDecimal(String a0, int a1) throws SQLException { throw noSoportado(); }
+    @Override public BigDecimal getBigDecimal(int a0, int a1) throws SQLException { throw noSoportado(); }
+    @Override public InputStream getBinaryStream(String a0) throws SQLException { throw noSoportado(); }
+    @Override public InputStream getBinaryStream(int a0) throws SQLException { throw noSoportado(); }
+    @Override public Blob getBlob(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Blob getBlob(int a0) throws SQLException { throw noSoportado(); }
+    @Override public byte getByte(String a0) throws SQLException { throw noSoportado(); }
+    @Override public byte getByte(int a0) throws SQLException { throw noSoportado(); }
+    @Override public byte[] getBytes(String a0) throws SQLException { throw noSoportado(); }
+    @Override public byte[] getBytes(int a0) throws SQLException { throw noSoportado(); }
+    @Override public Reader getCharacterStream(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Reader getCharacterStream(int a0) throws SQLException { throw noSoportado(); }
+    @Override public Clob getClob(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Clob getClob(int a0) throws SQLException { throw noSoportado(); }
+    @Override public String getCursorName() throws SQLException { throw noSoportado(); }
+    @Override public Date getDate(String a0, Calendar a1) throws SQLException { throw noSoportado(); }
+    @Override public Date getDate(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Date getDate(int a0, Calendar a1) throws SQLException { throw noSoportado(); }
+    @Override public Date getDate(int a0) throws SQLException { throw noSoportado(); }
+    @Override public int getHoldability() throws SQLException { throw noSoportado(); }
+    @Override public Reader getNCharacterStream(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Reader getNCharacterStream(int a0) throws SQLException { throw noSoportado(); }
+    @Override public NClob getNClob(String a0) throws SQLException { throw noSoportado(); }
+    @Override public NClob getNClob(int a0) throws SQLException { throw noSoportado(); }
+    @Override public <T> T getObject(String a0, Class<T> a1) throws SQLException { throw noSoportado(); }
+    @Override public Object getObject(String a0, Map<String, Class<?>> a1) throws SQLException { throw noSoportado(); }
+    @Override public <T> T getObject(int a0, Class<T> a1) throws SQLException { throw noSoportado(); }
+    @Override public Object getObject(int a0, Map<String, Class<?>> a1) throws SQLException { throw noSoportado(); }
+    @Override public Ref getRef(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Ref getRef(int a0) throws SQLException { throw noSoportado(); }
+    @Override public int getRow() throws SQLException { throw noSoportado(); }
+    @Override public RowId getRowId(String a0) throws SQLException { throw noSoportado(); }
+    @Override public RowId getRowId(int a0) throws SQLException { throw noSoportado(); }
+    @Override public SQLXML getSQLXML(String a0) throws SQLException { throw noSoportado(); }
+    @Override public SQLXML getSQLXML(int a0) throws SQLException { throw noSoportado(); }
+    @Override public Statement getStatement() throws SQLException { throw noSoportado(); }
+    @Override public Time getTime(String a0, Calendar a1) throws SQLException { throw noSoportado(); }
+    @Override public Time getTime(String a0) throws SQLException { throw noSoportado(); }
+    @Override public Time getTime(int a0, Calendar a1) throws SQLException { throw noSoportado(); }
+    @Override public Time getTime(int a0) throws SQLException { throw noSoportado(); }
+    @Override public Timestamp getTimestamp(String a0, Calendar a1) throws SQLException { throw noSoportado(); }
+    @Override public Timestamp getTimestamp(int a0, Calendar a1) throws SQLException { throw noSoportado(); }
+    @Override public URL getURL(String a0) throws SQLException { throw noSoportado(); }
+    @Override public URL getURL(int a0) throws SQLException { throw noSoportado(); }
+    @Override public InputStream getUnicodeStream(String a0) throws SQLException { throw noSoportado(); }
+    @Override public InputStream getUnicodeStream(int a0) throws SQLException { throw noSoportado(); }
+    @Override public void insertRow() throws SQLException { throw noSoportado(); }
+    @Override public boolean isAfterLast() throws SQLException { throw noSoportado(); }
+    @Override public boolean isBeforeFirst() throws SQLException { throw noSoportado(); }
+    @Override public boolean isFirst() throws SQLException { throw noSoportado(); }
+    @Override public boolean isLast() throws SQLException { throw noSoportado(); }
+    @Override public boolean isWrapperFor(Class<?> a0) throws SQLException { throw noSoportado(); }
+    @Override public boolean last() throws SQLException { throw noSoportado(); }
+    @Override public void moveToCurrentRow() throws SQLException { throw noSoportado(); }
+    @Override public void moveToInsertRow() throws SQLException { throw noSoportado(); }
+    @Override public boolean previous() throws SQLException { throw noSoportado(); }
+    @Override public void refreshRow() throws SQLException { throw noSoportado(); }
+    @Override public boolean relative(int a0) throws SQLException { throw noSoportado(); }
+    @Override public boolean rowDeleted() throws SQLException { throw noSoportado(); }
+    @Override public boolean rowInserted() throws SQLException { throw noSoportado(); }
+    @Override public boolean rowUpdated() throws SQLException { throw noSoportado(); }
+    @Override public <T> T unwrap(Class<T> a0) throws SQLException { throw noSoportado(); }
+    @Override public void updateArray(String a0, Array a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateArray(int a0, Array a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateAsciiStream(String a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateAsciiStream(String a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateAsciiStream(String a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateAsciiStream(int a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateAsciiStream(int a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateAsciiStream(int a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBigDecimal(String a0, BigDecimal a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBigDecimal(int a0, BigDecimal a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBinaryStream(String a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateBinaryStream(String a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateBinaryStream(String a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBinaryStream(int a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateBinaryStream(int a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateBinaryStream(int a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBlob(String a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateBlob(String a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBlob(String a0, Blob a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBlob(int a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateBlob(int a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBlob(int a0, Blob a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBoolean(String a0, boolean a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBoolean(int a0, boolean a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateByte(String a0, byte a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateByte(int a0, byte a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBytes(String a0, byte[] a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateBytes(int a0, byte[] a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateCharacterStream(String a0, Reader a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateCharacterStream(String a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateCharacterStream(String a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateCharacterStream(int a0, Reader a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateCharacterStream(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateCharacterStream(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateClob(String a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateClob(String a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateClob(String a0, Clob a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateClob(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateClob(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateClob(int a0, Clob a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateDate(String a0, Date a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateDate(int a0, Date a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateDouble(String a0, double a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateDouble(int a0, double a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateFloat(String a0, float a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateFloat(int a0, float a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateInt(String a0, int a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateInt(int a0, int a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateLong(String a0, long a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateLong(int a0, long a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNCharacterStream(String a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateNCharacterStream(String a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNCharacterStream(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateNCharacterStream(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNClob(String a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateNClob(String a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNClob(String a0, NClob a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNClob(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateNClob(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNClob(int a0, NClob a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNString(String a0, String a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNString(int a0, String a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateNull(String a0) throws SQLException { throw noSoportado(); }
+    @Override public void updateNull(int a0) throws SQLException { throw noSoportado(); }
+    @Override public void updateObject(String a0, Object a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateObject(String a0, Object a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateObject(int a0, Object a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void updateObject(int a0, Object a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateRef(String a0, Ref a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateRef(int a0, Ref a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateRow() throws SQLException { throw noSoportado(); }
+    @Override public void updateRowId(String a0, RowId a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateRowId(int a0, RowId a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateSQLXML(String a0, SQLXML a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateSQLXML(int a0, SQLXML a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateShort(String a0, short a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateShort(int a0, short a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateString(String a0, String a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateString(int a0, String a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateTime(String a0, Time a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateTime(int a0, Time a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateTimestamp(String a0, Timestamp a1) throws SQLException { throw noSoportado(); }
+    @Override public void updateTimestamp(int a0, Timestamp a1) throws SQLException { throw noSoportado(); }
+}
@@ -0,0 +1,351 @@
+package src.etl;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.function.IntConsumer;
+
+/**
+ * PreparedStatement simulado para las pruebas de rendimiento: guarda cada parámetro en
+ * arreglos propios (los primitivos sin encajonar), cuenta las filas del lote y no envía
+ * nada. Así el coste medido del enlace de parámetros es solo el del código del ETL.
+ * Opcionalmente avisa de cada envío al "servidor" (ver {@link BaseSimulada}).
+ */
+@SuppressWarnings("deprecation")
+final class SentenciaSimulada implements PreparedStatement {
+    private final String sql;
+    // Recibe las filas de cada envío; null = sin servidor simulado
+    private final IntConsumer envio;
+    private Object[] objetos = new Object[16];
+    private long[] enteros = new long[16];
+    private double[] decimales = new double[16];
+    private int[] tipos = new int[16];
+    private int filasLote;
+    private long filasEnviadas;
+    private long lotesEnviados;
+    private int[] resultadoLote = new int[0];
+    private boolean cerrada;
+
+    SentenciaSimulada(String sql) {
+        this(sql, null);
+    }
+
+    SentenciaSimulada(String sql, IntConsumer envio) {
+        this.sql = sql;
+        this.envio = envio;
+    }
+
+    private void enviar(int filas) {
+        if (envio != null) {
+            envio.accept(filas);
+        }
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    long filasEnviadas() {
+        return filasEnviadas;
+    }
+
+    long lotesEnviados() {
+        return lotesEnviados;
+    }
+
+    /** Valor enlazado en la posición indicada (1..n), como objeto. */
+    Object parametro(int indice) {
+        return objetos[indice];
+    }
+
+    private void asegurar(int indice) {
+        if (indice >= objetos.length) {
+            int tamanio = Math.max(indice + 1, objetos.length * 2);
+            objetos = Arrays.copyOf(objetos, tamanio);
+            enteros = Arrays.copyOf(enteros, tamanio);
+            decimales = Arrays.copyOf(decimales, tamanio);
+            tipos = Arrays.copyOf(tipos, tamanio);
+        }
+    }
+
+    private void objeto(int indice, Object valor, int tipo) {
+        asegurar(indice);
+        objetos[indice] = valor;
+        tipos[indice] = tipo;
+    }
+
+    private void entero(int indice, long valor, int tipo) {
+        asegurar(indice);
+        objetos[indice] = null;
+        enteros[indice] = valor;
+        tipos[indice] = tipo;
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x) {
+        objeto(parameterIndex, x, Types.JAVA_OBJECT);
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object x, int targetSqlType) {
+        objeto(parameterIndex, x, targetSqlType);
+    }
+
+    @Override
+    public void setNull(int parameterIndex, int sqlType) {
+        objeto(parameterIndex, null, sqlType);
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) {
+        objeto(parameterIndex, x, Types.VARCHAR);
+    }
+
+    @Override
+    public void setNString(int parameterIndex, String value) {
+        objeto(parameterIndex, value, Types.NVARCHAR);
+    }
+
+    @Override
+    public void setBigDecimal(int parameterIndex, BigDecimal x) {
+        objeto(parameterIndex, x, Types.DECIMAL);
+    }
+
+    @Override
+    public void setTimestamp(int parameterIndex, Timestamp x) {
+        objeto(parameterIndex, x, Types.TIMESTAMP);
+    }
+
+    @Override
+    public void setDate(int parameterIndex, Date x) {
+        objeto(parameterIndex, x, Types.DATE);
+    }
+
+    @Override
+    public void setTime(int parameterIndex, Time x) {
+        objeto(parameterIndex, x, Types.TIME);
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) {
+        objeto(parameterIndex, x, Types.VARBINARY);
+    }
+
+    @Override
+    public void setBoolean(int parameterIndex, boolean x) {
+        entero(parameterIndex, x ? 1 : 0, Types.BIT);
+    }
+
+    @Override
+    public void setShort(int parameterIndex, short x) {
+        entero(parameterIndex, x, Types.SMALLINT);
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) {
+        entero(parameterIndex, x, Types.INTEGER);
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) {
+        entero(parameterIndex, x, Types.BIGINT);
+    }
+
+    @Override
+    public void setFloat(int parameterIndex, float x) {
+        setDouble(parameterIndex, x);
+    }
+
+    @Override
+    public void setDouble(int parameterIndex, double x) {
+        asegurar(parameterIndex);
+        objetos[parameterIndex] = null;
+        decimales[parameterIndex] = x;
+        tipos[parameterIndex] = Types.DOUBLE;
+    }
+
+    @Override
+    public void clearParameters() {
+        Arrays.fill(objetos, null);
+    }
+
+    @Override
+    public void addBatch() {
+        filasLote++;
+    }
+
+    @Override
+    public void clearBatch() {
+        filasLote = 0;
+    }
+
+    @Override
+    public int[] executeBatch() {
+        if (resultadoLote.length != filasLote) {
+            resultadoLote = new int[filasLote];
+            Arrays.fill(resultadoLote, 1);
+        }
+        filasEnviadas += filasLote;
+        lotesEnviados++;
+        enviar(filasLote);
+        filasLote = 0;
+        return resultadoLote;
+    }
+
+    @Override
+    public int executeUpdate() {
+        filasEnviadas++;
+        enviar(1);
+        return 1;
+    }
+
+    @Override
+    public boolean execute() {
+        enviar(0);
+        return false;
+    }
+
+    @Override
+    public boolean execute(String sql) {
+        enviar(0);
+        return false;
+    }
+
+    @Override
+    public int executeUpdate(String sql) {
+        enviar(0);
+        return 0;
+    }
+
+    @Override
+    public int getUpdateCount() {
+        return -1;
+    }
+
+    @Override
+    public boolean getMoreResults() {
+        return false;
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) {
+    }
+
+    @Override
+    public void setFetchSize(int rows) {
+    }
+
+    @Override
+    public SQLWarning getWarnings() {
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return cerrada;
+    }
+
+    @Override
+    public void close() {
+        cerrada = true;
+    }
+
+    private static SQLFeatureNotSupportedException noSoportado() {
+        return new SQLFeatureNotSupportedException("No soportado por la sentencia simulada");
+    }
+
+    // Resto de la interfaz: sin uso en las pruebas de rendimiento
+    @Override public void addBatch(String a0) throws SQLException { throw noSoportado(); }
+    @Override public void cancel() throws SQLException { throw noSoportado(); }
+    @Override public void closeOnCompletion() throws SQLException { throw noSoportado(); }
+    @Override public boolean execute(String a0, int[] a1) throws SQLException { throw noSoportado(); }
+    @Override public boolean execute(String a0, String[] a1) throws SQLException { throw noSoportado(); }
+    @Override public boolean execute(String a0, int a1) throws SQLException { throw noSoportado(); }
+    @Override public ResultSet executeQuery() throws SQLException { throw noSoportado(); }
+    @Override public ResultSet executeQuery(String a0) throws SQLException { throw noSoportado(); }
+    @Override public int executeUpdate(String a0, int[] a1) throws SQLException { throw noSoportado(); }
+    @Override public int executeUpdate(String a0, String[] a1) throws SQLException { throw noSoportado(); }
+    @Override public int executeUpdate(String a0, int a1) throws SQLException { throw noSoportado(); }
+    @Override public Connection getConnection() throws SQLException { throw noSoportado(); }
+    @Override public int getFetchDirection() throws SQLException { throw noSoportado(); }
+    @Override public int getFetchSize() throws SQLException { throw noSoportado(); }
+    @Override public ResultSet getGeneratedKeys() throws SQLException { throw noSoportado(); }
+    @Override public int getMaxFieldSize() throws SQLException { throw noSoportado(); }
+    @Override public int getMaxRows() throws SQLException { throw noSoportado(); }
+    @Override public ResultSetMetaData getMetaData() throws SQLException { throw noSoportado(); }
+    @Override public boolean getMoreResults(int a0) throws SQLException { throw noSoportado(); }
+    @Override public ParameterMetaData getParameterMetaData() throws SQLException { throw noSoportado(); }
+    @Override public int getQueryTimeout() throws SQLException { throw noSoportado(); }
+    @Override public ResultSet getResultSet() throws SQLException { throw noSoportado(); }
+    @Override public int getResultSetConcurrency() throws SQLException { throw noSoportado(); }
+    @Override public int getResultSetHoldability() throws SQLException { throw noSoportado(); }
+    @Override public int getResultSetType() throws SQLException { throw noSoportado(); }
+    @Override public boolean isCloseOnCompletion() throws SQLException { throw noSoportado(); }
+    @Override public boolean isPoolable() throws SQLException { throw noSoportado(); }
+    @Override public boolean isWrapperFor(Class<?> a0) throws SQLException { throw noSoportado(); }
+    @Override public void setArray(int a0, Array a1) throws SQLException { throw noSoportado(); }
+    @Override public void setAsciiStream(int a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void setAsciiStream(int a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setAsciiStream(int a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void setBinaryStream(int a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void setBinaryStream(int a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setBinaryStream(int a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void setBlob(int a0, InputStream a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setBlob(int a0, InputStream a1) throws SQLException { throw noSoportado(); }
+    @Override public void setBlob(int a0, Blob a1) throws SQLException { throw noSoportado(); }
+    @Override public void setByte(int a0, byte a1) throws SQLException { throw noSoportado(); }
+    @Override public void setCharacterStream(int a0, Reader a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public void setCharacterStream(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setCharacterStream(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void setClob(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setClob(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void setClob(int a0, Clob a1) throws SQLException { throw noSoportado(); }
+    @Override public void setCursorName(String a0) throws SQLException { throw noSoportado(); }
+    @Override public void setDate(int a0, Date a1, Calendar a2) throws SQLException { throw noSoportado(); }
+    @Override public void setEscapeProcessing(boolean a0) throws SQLException { throw noSoportado(); }
+    @Override public void setFetchDirection(int a0) throws SQLException { throw noSoportado(); }
+    @Override public void setMaxFieldSize(int a0) throws SQLException { throw noSoportado(); }
+    @Override public void setMaxRows(int a0) throws SQLException { throw noSoportado(); }
+    @Override public void setNCharacterStream(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setNCharacterStream(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void setNClob(int a0, Reader a1, long a2) throws SQLException { throw noSoportado(); }
+    @Override public void setNClob(int a0, Reader a1) throws SQLException { throw noSoportado(); }
+    @Override public void setNClob(int a0, NClob a1) throws SQLException { throw noSoportado(); }
+    @Override public void setNull(int a0, int a1, String a2) throws SQLException { throw noSoportado(); }
+    @Override public void setObject(int a0, Object a1, int a2, int a3) throws SQLException { throw noSoportado(); }
+    @Override public void setPoolable(boolean a0) throws SQLException { throw noSoportado(); }
+    @Override public void setRef(int a0, Ref a1) throws SQLException { throw noSoportado(); }
+    @Override public void setRowId(int a0, RowId a1) throws SQLException { throw noSoportado(); }
+    @Override public void setSQLXML(int a0, SQLXML a1) throws SQLException { throw noSoportado(); }
+    @Override public void setTime(int a0, Time a1, Calendar a2) throws SQLException { throw noSoportado(); }
+    @Override public void setTimestamp(int a0, Timestamp a1, Calendar a2) throws SQLException { throw noSoportado(); }
+    @Override public void setURL(int a0, URL a1) throws SQLException { throw noSoportado(); }
+    @Override public void setUnicodeStream(int a0, InputStream a1, int a2) throws SQLException { throw noSoportado(); }
+    @Override public <T> T unwrap(Class<T> a0) throws SQLException { throw noSoportado(); }
+}
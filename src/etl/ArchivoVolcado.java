@@ -0,0 +1,556 @@
+package src.etl;
+
+import microsoft.sql.DateTimeOffset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Archivo de volcado intermedio entre la extracción y la carga: las filas ya
+ * transformadas se escriben en bloques columnares (por columna, un mapa de nulos y
+ * los valores en binario) comprimidos con Deflate, a través de un FileChannel.
+ *
+ * Así la consulta origen se cierra en cuanto termina la extracción, aunque la carga
+ * sea lenta, y el archivo puede volver a cargarse sin leer otra vez el origen. Al
+ * final del archivo hay un índice de bloques que permite dividirlo en partes para
+ * cargarlas en paralelo ({@link #partes}).
+ *
+ * Formato: cabecera (huella del trabajo, columnas, marca de agua), bloques
+ * [filas, bytes comprimidos, bytes originales, datos] e índice [bloques, posición y
+ * filas de cada uno], seguido de la posición del índice y la firma.
+ */
+final class ArchivoVolcado {
+    private static final int FIRMA = 0x45544C56; // "ETLV"
+    private static final int VERSION = 2;
+
+    // Tipo de los valores no nulos de una columna dentro de un bloque
+    private static final byte NULO = 0;
+    private static final byte MIXTO = 1;
+    private static final byte ENTERO = 2;
+    private static final byte LARGO = 3;
+    private static final byte CORTO = 4;
+    private static final byte BYTE = 5;
+    private static final byte LOGICO = 6;
+    private static final byte DOBLE = 7;
+    private static final byte REAL = 8;
+    private static final byte DECIMAL = 9;
+    private static final byte TEXTO = 10;
+    private static final byte FECHA_HORA = 11;
+    private static final byte FECHA = 12;
+    private static final byte HORA = 13;
+    private static final byte BINARIO = 14;
+    private static final byte FECHA_HORA_ZONA = 15;
+
+    /** Cabecera e índice de bloques de un archivo de volcado completo. */
+    static final class Cabecera {
+        final String huella;
+        final List<String> columnas;
+        // Marca de agua hasta la que se extrajo, o null si la extracción no es incremental
+        final Object marca;
+        final long[] posiciones;
+        final int[] filasBloque;
+
+        private Cabecera(String huella, List<String> columnas, Object marca, long[] posiciones, int[] filasBloque) {
+            this.huella = huella;
+            this.columnas = columnas;
+            this.marca = marca;
+            this.posiciones = posiciones;
+            this.filasBloque = filasBloque;
+        }
+
+        long filas() {
+            long filas = 0;
+            for (int f : filasBloque) {
+                filas += f;
+            }
+            return filas;
+        }
+    }
+
+    private ArchivoVolcado() {
+    }
+
+    /**
+     * Escribe todas las filas de la fuente y devuelve cuántas se escribieron. El archivo
+     * se escribe con otro nombre y se renombra al terminar, así que nunca queda a medias.
+     *
+     * @param huella identifica el trabajo que generó el archivo, para reutilizarlo solo con el mismo
+     * @param marca  marca de agua de la extracción, o null
+     */
+    static long escribir(Path archivo, String huella, List<String> columnas, Object marca, FuenteFilas fuente,
+            int filasPorBloque) throws SQLException, IOException {
+        Path directorio = archivo.toAbsolutePath().getParent();
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+        }
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        int cantidadColumnas = columnas.size();
+        Object[][] bloque = new Object[Math.max(1, filasPorBloque)][cantidadColumnas];
+        List<long[]> indice = new ArrayList<>();
+        long filas = 0;
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            DataOutputStream salida = new DataOutputStream(bytes);
+            salida.writeInt(FIRMA);
+            salida.writeInt(VERSION);
+            salida.writeUTF(huella);
+            salida.writeInt(cantidadColumnas);
+            for (String columna : columnas) {
+                salida.writeUTF(columna);
+            }
+            escribirValor(salida, marca);
+            escribirTodo(canal, ByteBuffer.wrap(bytes.toByteArray()));
+
+            Deflater compresor = new Deflater(Deflater.BEST_SPEED);
+            byte[] comprimido = new byte[1 << 16];
+            int enBloque = 0;
+            Object[] fila = new Object[cantidadColumnas];
+            try {
+                while (true) {
+                    boolean hay = fuente.siguiente(fila);
+                    if (hay) {
+                        System.arraycopy(fila, 0, bloque[enBloque++], 0, cantidadColumnas);
+                        filas++;
+                    }
+                    if (enBloque > 0 && (!hay || enBloque == bloque.length)) {
+                        bytes.reset();
+                        for (int c = 0; c < cantidadColumnas; c++) {
+                            escribirColumna(salida, bloque, enBloque, c);
+                        }
+                        byte[] original = bytes.toByteArray();
+                        compresor.reset();
+                        compresor.setInput(original);
+                        compresor.finish();
+                        int longitud = 0;
+                        while (!compresor.finished()) {
+                            if (longitud == comprimido.length) {
+                                comprimido = Arrays.copyOf(comprimido, comprimido.length * 2);
+                            }
+                            longitud += compresor.deflate(comprimido, longitud, comprimido.length - longitud);
+                        }
+
+                        indice.add(new long[] {canal.position(), enBloque});
+                        ByteBuffer encabezado = ByteBuffer.allocate(12);
+                        encabezado.putInt(enBloque).putInt(longitud).putInt(original.length).flip();
+                        escribirTodo(canal, encabezado);
+                        escribirTodo(canal, ByteBuffer.wrap(comprimido, 0, longitud));
+                        for (int i = 0; i < enBloque; i++) {
+                            Arrays.fill(bloque[i], null);
+                        }
+                        enBloque = 0;
+                    }
+                    if (!hay) {
+                        break;
+                    }
+                }
+            } finally {
+                compresor.end();
+            }
+
+            long posicionIndice = canal.position();
+            ByteBuffer pie = ByteBuffer.allocate(4 + indice.size() * 12 + 12);
+            pie.putInt(indice.size());
+            for (long[] entrada : indice) {
+                pie.putLong(entrada[0]).putInt((int) entrada[1]);
+            }
+            pie.putLong(posicionIndice).putInt(FIRMA).flip();
+            escribirTodo(canal, pie);
+            canal.force(false);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return filas;
+    }
+
+    /** Lee la cabecera y el índice; falla si el archivo no es un volcado completo. */
+    static Cabecera leerCabecera(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            if (tamanio < 24) {
+                throw new IOException("El archivo de volcado '" + archivo + "' está incompleto.");
+            }
+            ByteBuffer pie = leer(canal, tamanio - 12, 12);
+            long posicionIndice = pie.getLong();
+            if (pie.getInt() != FIRMA || posicionIndice < 0 || posicionIndice > tamanio - 16) {
+                throw new IOException("El archivo de volcado '" + archivo + "' está incompleto o no es un volcado.");
+            }
+            ByteBuffer indice = leer(canal, posicionIndice, (int) (tamanio - 12 - posicionIndice));
+            int bloques = indice.getInt();
+            long[] posiciones = new long[bloques];
+            int[] filasBloque = new int[bloques];
+            for (int i = 0; i < bloques; i++) {
+                posiciones[i] = indice.getLong();
+                filasBloque[i] = indice.getInt();
+            }
+
+            long finCabecera = bloques > 0 ? posiciones[0] : posicionIndice;
+            ByteBuffer cabecera = leer(canal, 0, (int) finCabecera);
+            DataInputStream entrada = new DataInputStream(
+                    new ByteArrayInputStream(cabecera.array(), 0, cabecera.limit()));
+            if (entrada.readInt() != FIRMA || entrada.readInt() != VERSION) {
+                throw new IOException("El archivo de volcado '" + archivo + "' tiene una versión no soportada.");
+            }
+            String huella = entrada.readUTF();
+            int cantidadColumnas = entrada.readInt();
+            List<String> columnas = new ArrayList<>(cantidadColumnas);
+            for (int i = 0; i < cantidadColumnas; i++) {
+                columnas.add(entrada.readUTF());
+            }
+            Object marca = leerValor(entrada, entrada.readByte());
+            return new Cabecera(huella, columnas, marca, posiciones, filasBloque);
+        }
+    }
+
+    /**
+     * Divide los bloques del archivo en hasta {@code cantidad} partes contiguas con
+     * aproximadamente las mismas filas; cada parte se lee con su propio canal.
+     */
+    static List<FuenteFilas> partes(Path archivo, Cabecera cabecera, int cantidad) throws IOException {
+        int bloques = cabecera.posiciones.length;
+        int partes = Math.max(1, Math.min(cantidad, bloques));
+        long porParte = (cabecera.filas() + partes - 1) / partes;
+        List<FuenteFilas> fuentes = new ArrayList<>(partes);
+        int desde = 0;
+        long acumuladas = 0;
+        for (int b = 0; b < bloques; b++) {
+            acumuladas += cabecera.filasBloque[b];
+            boolean ultimo = b == bloques - 1;
+            if (ultimo || (acumuladas >= porParte * (fuentes.size() + 1) && fuentes.size() < partes - 1)) {
+                fuentes.add(new Parte(archivo, cabecera, desde, b + 1));
+                desde = b + 1;
+            }
+        }
+        if (fuentes.isEmpty()) {
+            fuentes.add(new Parte(archivo, cabecera, 0, 0));
+        }
+        return fuentes;
+    }
+
+    /** Bloques [desde, hasta) del archivo, descomprimidos de a uno. */
+    private static final class Parte implements FuenteFilas {
+        private final Path archivo;
+        private final Cabecera cabecera;
+        private final int hasta;
+        private final Inflater descompresor = new Inflater();
+        private FileChannel canal;
+        private int siguienteBloque;
+        // Valores del bloque actual por columna
+        private final Object[][] columnas;
+        private int filasBloque = 0;
+        private int filaActual = 0;
+
+        Parte(Path archivo, Cabecera cabecera, int desde, int hasta) {
+            this.archivo = archivo;
+            this.cabecera = cabecera;
+            this.siguienteBloque = desde;
+            this.hasta = hasta;
+            this.columnas = new Object[cabecera.columnas.size()][];
+        }
+
+        @Override
+        public boolean siguiente(Object[] fila) throws SQLException {
+            try {
+                while (filaActual == filasBloque) {
+                    if (siguienteBloque == hasta) {
+                        return false;
+                    }
+                    leerBloque(siguienteBloque++);
+                }
+            } catch (IOException | DataFormatException e) {
+                throw new SQLException("No se pudo leer el archivo de volcado '" + archivo + "'", e);
+            }
+            for (int c = 0; c < columnas.length; c++) {
+                fila[c] = columnas[c][filaActual];
+            }
+            filaActual++;
+            return true;
+        }
+
+        private void leerBloque(int bloque) throws IOException, DataFormatException {
+            if (canal == null) {
+                canal = FileChannel.open(archivo, StandardOpenOption.READ);
+            }
+            ByteBuffer encabezado = leer(canal, cabecera.posiciones[bloque], 12);
+            int filas = encabezado.getInt();
+            int longitud = encabezado.getInt();
+            byte[] original = new byte[encabezado.getInt()];
+            ByteBuffer comprimido = leer(canal, cabecera.posiciones[bloque] + 12, longitud);
+
+            descompresor.reset();
+            descompresor.setInput(comprimido.array(), 0, longitud);
+            int leidos = 0;
+            while (leidos < original.length) {
+                int n = descompresor.inflate(original, leidos, original.length - leidos);
+                if (n == 0 && (descompresor.finished() || descompresor.needsInput())) {
+                    throw new IOException("Bloque " + bloque + " del archivo de volcado dañado.");
+                }
+                leidos += n;
+            }
+            DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(original));
+            for (int c = 0; c < columnas.length; c++) {
+                if (columnas[c] == null || columnas[c].length < filas) {
+                    columnas[c] = new Object[filas];
+                }
+                leerColumna(entrada, columnas[c], filas);
+            }
+            filasBloque = filas;
+            filaActual = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            descompresor.end();
+            if (canal != null) {
+                try {
+                    canal.close();
+                } catch (IOException e) {
+                    throw new SQLException("No se pudo cerrar el archivo de volcado '" + archivo + "'", e);
+                }
+            }
+        }
+    }
+
+    private static void escribirColumna(DataOutputStream salida, Object[][] bloque, int filas, int c)
+            throws IOException {
+        byte tipo = NULO;
+        boolean hayNulos = false;
+        for (int f = 0; f < filas; f++) {
+            Object valor = bloque[f][c];
+            if (valor == null) {
+                hayNulos = true;
+            } else if (tipo == NULO) {
+                tipo = tipo(valor);
+            } else if (tipo != MIXTO && tipo != tipo(valor)) {
+                tipo = MIXTO;
+            }
+        }
+        salida.writeByte(tipo);
+        if (tipo == NULO) {
+            return;
+        }
+        salida.writeBoolean(hayNulos);
+        if (hayNulos) {
+            byte[] nulos = new byte[(filas + 7) >>> 3];
+            for (int f = 0; f < filas; f++) {
+                if (bloque[f][c] == null) {
+                    nulos[f >>> 3] |= (byte) (1 << (f & 7));
+                }
+            }
+            salida.write(nulos);
+        }
+        for (int f = 0; f < filas; f++) {
+            Object valor = bloque[f][c];
+            if (valor == null) {
+                continue;
+            }
+            if (tipo == MIXTO) {
+                escribirValor(salida, valor);
+            } else {
+                escribirDato(salida, tipo, valor);
+            }
+        }
+    }
+
+    private static void leerColumna(DataInputStream entrada, Object[] valores, int filas) throws IOException {
+        byte tipo = entrada.readByte();
+        if (tipo == NULO) {
+            Arrays.fill(valores, 0, filas, null);
+            return;
+        }
+        byte[] nulos = null;
+        if (entrada.readBoolean()) {
+            nulos = new byte[(filas + 7) >>> 3];
+            entrada.readFully(nulos);
+        }
+        for (int f = 0; f < filas; f++) {
+            if (nulos != null && (nulos[f >>> 3] & (1 << (f & 7))) != 0) {
+                valores[f] = null;
+            } else {
+                valores[f] = tipo == MIXTO ? leerValor(entrada, entrada.readByte()) : leerDato(entrada, tipo);
+            }
+        }
+    }
+
+    /** Un valor con su tipo delante (cabecera y columnas de tipos mezclados). */
+    private static void escribirValor(DataOutputStream salida, Object valor) throws IOException {
+        if (valor == null) {
+            salida.writeByte(NULO);
+            return;
+        }
+        byte tipo = tipo(valor);
+        salida.writeByte(tipo);
+        escribirDato(salida, tipo, valor);
+    }
+
+    private static Object leerValor(DataInputStream entrada, byte tipo) throws IOException {
+        return tipo == NULO ? null : leerDato(entrada, tipo);
+    }
+
+    private static byte tipo(Object valor) {
+        if (valor instanceof Integer) return ENTERO;
+        if (valor instanceof Long) return LARGO;
+        if (valor instanceof Short) return CORTO;
+        if (valor instanceof Byte) return BYTE;
+        if (valor instanceof Boolean) return LOGICO;
+        if (valor instanceof Double) return DOBLE;
+        if (valor instanceof Float) return REAL;
+        if (valor instanceof BigDecimal) return DECIMAL;
+        if (valor instanceof String) return TEXTO;
+        if (valor instanceof Timestamp) return FECHA_HORA;
+        if (valor instanceof java.sql.Date) return FECHA;
+        if (valor instanceof Time) return HORA;
+        if (valor instanceof byte[]) return BINARIO;
+        if (valor instanceof DateTimeOffset) return FECHA_HORA_ZONA;
+        throw new IllegalArgumentException("Tipo no soportado en el archivo de volcado: " + valor.getClass().getName());
+    }
+
+    private static void escribirDato(DataOutputStream salida, byte tipo, Object valor) throws IOException {
+        switch (tipo) {
+            case ENTERO:
+                salida.writeInt((Integer) valor);
+                break;
+            case LARGO:
+                salida.writeLong((Long) valor);
+                break;
+            case CORTO:
+                salida.writeShort((Short) valor);
+                break;
+            case BYTE:
+                salida.writeByte((Byte) valor);
+                break;
+            case LOGICO:
+                salida.writeBoolean((Boolean) valor);
+                break;
+            case DOBLE:
+                salida.writeDouble((Double) valor);
+                break;
+            case REAL:
+                salida.writeFloat((Float) valor);
+                break;
+            case DECIMAL:
+                BigDecimal decimal = (BigDecimal) valor;
+                salida.writeInt(decimal.scale());
+                escribirBytes(salida, decimal.unscaledValue().toByteArray());
+                break;
+            case TEXTO:
+                escribirBytes(salida, ((String) valor).getBytes(StandardCharsets.UTF_8));
+                break;
+            case FECHA_HORA:
+                Timestamp fechaHora = (Timestamp) valor;
+                salida.writeLong(fechaHora.getTime());
+                salida.writeInt(fechaHora.getNanos());
+                break;
+            case FECHA:
+                salida.writeLong(((java.sql.Date) valor).toLocalDate().toEpochDay());
+                break;
+            case HORA:
+                // toLocalTime() descarta las fracciones de segundo; getTime() conserva los milisegundos
+                salida.writeLong(((Time) valor).getTime());
+                break;
+            case FECHA_HORA_ZONA:
+                DateTimeOffset conZona = (DateTimeOffset) valor;
+                Timestamp utc = conZona.getTimestamp();
+                salida.writeLong(utc.getTime());
+                salida.writeInt(utc.getNanos());
+                salida.writeInt(conZona.getMinutesOffset());
+                break;
+            default:
+                escribirBytes(salida, (byte[]) valor);
+                break;
+        }
+    }
+
+    private static Object leerDato(DataInputStream entrada, byte tipo) throws IOException {
+        switch (tipo) {
+            case ENTERO:
+                return entrada.readInt();
+            case LARGO:
+                return entrada.readLong();
+            case CORTO:
+                return entrada.readShort();
+            case BYTE:
+                return entrada.readByte();
+            case LOGICO:
+                return entrada.readBoolean();
+            case DOBLE:
+                return entrada.readDouble();
+            case REAL:
+                return entrada.readFloat();
+            case DECIMAL:
+                int escala = entrada.readInt();
+                return new BigDecimal(new BigInteger(leerBytes(entrada)), escala);
+            case TEXTO:
+                return new String(leerBytes(entrada), StandardCharsets.UTF_8);
+            case FECHA_HORA:
+                Timestamp fechaHora = new Timestamp(entrada.readLong());
+                fechaHora.setNanos(entrada.readInt());
+                return fechaHora;
+            case FECHA:
+                return java.sql.Date.valueOf(LocalDate.ofEpochDay(entrada.readLong()));
+            case HORA:
+                return new Time(entrada.readLong());
+            case FECHA_HORA_ZONA:
+                Timestamp utc = new Timestamp(entrada.readLong());
+                utc.setNanos(entrada.readInt());
+                return DateTimeOffset.valueOf(utc, entrada.readInt());
+            case BINARIO:
+                return leerBytes(entrada);
+            default:
+                throw new IOException("Tipo desconocido en el archivo de volcado: " + tipo);
+        }
+    }
+
+    private static void escribirBytes(DataOutputStream salida, byte[] bytes) throws IOException {
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static byte[] leerBytes(DataInputStream entrada) throws IOException {
+        byte[] bytes = new byte[entrada.readInt()];
+        entrada.readFully(bytes);
+        return bytes;
+    }
+
+    private static void escribirTodo(FileChannel canal, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    private static ByteBuffer leer(FileChannel canal, long posicion, int longitud) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(longitud);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicion + buffer.position()) < 0) {
+                throw new IOException("Fin inesperado del archivo de volcado.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
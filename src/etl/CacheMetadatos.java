@@ -0,0 +1,295 @@
+package src.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de los metadatos del catálogo (tablas de una base, columnas y PK de una tabla)
+ * compartida por todos los trabajos del proceso, por clave servidor/base/esquema/tabla.
+ *
+ * Una entrada se usa sin consultar al servidor durante {@code etl.metadatos.ttl.s}; pasado
+ * ese tiempo se compara su modify_date en sys.objects (una consulta de una fila en lugar
+ * de recorrer el catálogo) y solo se vuelve a leer de DatabaseMetaData si hubo DDL. Con
+ * {@code etl.metadatos.disco} las entradas se guardan en el directorio de estado, así que
+ * las ejecuciones programadas arrancan con la caché de la ejecución anterior.
+ */
+final class CacheMetadatos {
+    private static final String SEPARADOR = "\t";
+
+    private static volatile CacheMetadatos compartida = new CacheMetadatos(null, 3600_000L);
+
+    private static final class Tabla {
+        final List<String> columnas;
+        final List<String> clavesPrimarias;
+        // modify_date de sys.objects al leer la entrada (texto ISO), o "" si no se pudo obtener
+        final String modificada;
+        volatile long validada;
+
+        Tabla(List<String> columnas, List<String> clavesPrimarias, String modificada, long validada) {
+            this.columnas = Collections.unmodifiableList(columnas);
+            this.clavesPrimarias = Collections.unmodifiableList(clavesPrimarias);
+            this.modificada = modificada;
+            this.validada = validada;
+        }
+    }
+
+    private static final class Catalogo {
+        final List<String> tablas;
+        // Cantidad de tablas y máximo modify_date de sys.tables al leer la lista
+        final String firma;
+        volatile long validada;
+
+        Catalogo(List<String> tablas, String firma, long validada) {
+            this.tablas = Collections.unmodifiableList(tablas);
+            this.firma = firma;
+            this.validada = validada;
+        }
+    }
+
+    private final Path archivo;
+    private final long ttlMs;
+    private final Map<String, Tabla> tablas = new ConcurrentHashMap<>();
+    private final Map<String, Catalogo> catalogos = new ConcurrentHashMap<>();
+
+    private CacheMetadatos(Path archivo, long ttlMs) {
+        this.archivo = archivo;
+        this.ttlMs = ttlMs;
+    }
+
+    /** Reemplaza la caché compartida según la configuración, cargando la copia en disco si existe. */
+    static void configurar(Properties properties, Path directorioEstado) {
+        Path archivo = Boolean.parseBoolean(properties.getProperty("etl.metadatos.disco", "true"))
+                ? directorioEstado.resolve("metadatos.properties")
+                : null;
+        CacheMetadatos cache = new CacheMetadatos(archivo, ETLProcess.entero(properties, "etl.metadatos.ttl.s", 3600) * 1000L);
+        if (archivo != null && Files.exists(archivo)) {
+            try {
+                cache.cargar();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("No se pudo leer la caché de metadatos, se consultará el catálogo: " + e.getMessage());
+                cache.tablas.clear();
+                cache.catalogos.clear();
+            }
+        }
+        compartida = cache;
+    }
+
+    static CacheMetadatos compartida() {
+        return compartida;
+    }
+
+    /** Nombres de las tablas de la base de la conexión. */
+    List<String> tablas(Connection conn) throws SQLException {
+        String clave = base(conn);
+        Catalogo catalogo = catalogos.get(clave);
+        long ahora = System.currentTimeMillis();
+        if (catalogo != null && ahora - catalogo.validada < ttlMs) {
+            return catalogo.tablas;
+        }
+        String firma = firmaCatalogo(conn);
+        if (catalogo != null && firma != null && firma.equals(catalogo.firma)) {
+            catalogo.validada = ahora;
+            return catalogo.tablas;
+        }
+
+        List<String> nombres = new ArrayList<>();
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getTables(null, null, "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                nombres.add(rs.getString("TABLE_NAME"));
+            }
+        }
+        catalogo = new Catalogo(nombres, firma == null ? "" : firma, ahora);
+        catalogos.put(clave, catalogo);
+        guardar();
+        return catalogo.tablas;
+    }
+
+    /** Columnas de la tabla, en el orden de DatabaseMetaData.getColumns. */
+    List<String> columnas(Connection conn, String tabla) throws SQLException {
+        return tabla(conn, tabla).columnas;
+    }
+
+    /** Columnas de la clave primaria de la tabla, o una lista vacía si no tiene. */
+    List<String> clavesPrimarias(Connection conn, String tabla) throws SQLException {
+        return tabla(conn, tabla).clavesPrimarias;
+    }
+
+    private Tabla tabla(Connection conn, String tabla) throws SQLException {
+        // "esquema.tabla" o solo "tabla", con o sin corchetes
+        int punto = tabla.lastIndexOf('.');
+        String esquema = punto < 0 ? null : sinCorchetes(tabla.substring(0, punto));
+        String nombre = sinCorchetes(tabla.substring(punto + 1));
+        // Sin esquema, el que usa SQL Server para el nombre (el predeterminado de la sesión o
+        // dbo): logins con distinto esquema predeterminado no comparten la entrada, y no se
+        // mezclan columnas de tablas con el mismo nombre en varios esquemas
+        if (esquema == null) {
+            esquema = esquema(conn, tabla);
+        }
+        String clave = base(conn) + "/" + (esquema == null ? "" : esquema) + "/" + nombre;
+        Tabla entrada = tablas.get(clave);
+        long ahora = System.currentTimeMillis();
+        if (entrada != null && ahora - entrada.validada < ttlMs) {
+            return entrada;
+        }
+        String modificada = modificacion(conn, tabla);
+        if (entrada != null && modificada != null && modificada.equals(entrada.modificada)) {
+            entrada.validada = ahora;
+            return entrada;
+        }
+
+        List<String> columnas = new ArrayList<>();
+        List<String> clavesPrimarias = new ArrayList<>();
+        DatabaseMetaData metaData = conn.getMetaData();
+        String escape = metaData.getSearchStringEscape();
+        try (ResultSet rs = metaData.getColumns(null, esquema == null ? null : patron(esquema, escape),
+                patron(nombre, escape), "%")) {
+            while (rs.next()) {
+                columnas.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        try (ResultSet rs = metaData.getPrimaryKeys(null, esquema, nombre)) {
+            while (rs.next()) {
+                clavesPrimarias.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        entrada = new Tabla(columnas, clavesPrimarias, modificada == null ? "" : modificada, ahora);
+        // Una tabla inexistente no se guarda: puede crearse antes de la próxima consulta
+        if (!columnas.isEmpty()) {
+            tablas.put(clave, entrada);
+            guardar();
+        }
+        return entrada;
+    }
+
+    /** Servidor (URL sin propiedades) y base de datos de la conexión. */
+    private static String base(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+        int propiedades = url == null ? -1 : url.indexOf(';');
+        return (propiedades < 0 ? url : url.substring(0, propiedades)) + "/" + conn.getCatalog();
+    }
+
+    /** modify_date de la tabla, que cambia con cada ALTER TABLE; null si no existe o no se pudo consultar. */
+    private static String modificacion(Connection conn, String tabla) {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT CONVERT(VARCHAR(30), modify_date, 126) FROM sys.objects WHERE object_id = OBJECT_ID(?)")) {
+            stmt.setString(1, tabla);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /** Esquema en el que SQL Server resuelve el nombre de la tabla; null si no existe o no se pudo consultar. */
+    private static String esquema(Connection conn, String tabla) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT OBJECT_SCHEMA_NAME(OBJECT_ID(?))")) {
+            stmt.setString(1, tabla);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static String sinCorchetes(String nombre) {
+        nombre = nombre.trim();
+        return nombre.startsWith("[") && nombre.endsWith("]") ? nombre.substring(1, nombre.length() - 1) : nombre;
+    }
+
+    /** Nombre literal como patrón de DatabaseMetaData: '_' y '%' no son comodines. */
+    private static String patron(String nombre, String escape) {
+        if (escape == null || escape.isEmpty()) {
+            return nombre;
+        }
+        return nombre.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    /** Cantidad de tablas y última modificación, que cambian al crear, borrar o alterar una tabla. */
+    private static String firmaCatalogo(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), CONVERT(VARCHAR(30), MAX(modify_date), 126) FROM sys.tables")) {
+            return rs.next() ? rs.getLong(1) + "|" + rs.getString(2) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private void cargar() throws IOException {
+        Properties guardadas = new Properties();
+        try (InputStream in = Files.newInputStream(archivo)) {
+            guardadas.load(in);
+        }
+        for (String nombre : guardadas.stringPropertyNames()) {
+            String[] partes = guardadas.getProperty(nombre).split(SEPARADOR, -1);
+            if (nombre.startsWith("tabla:")) {
+                // validada, modificada, cantidad de columnas, columnas y columnas de la PK
+                int cantidad = entero(partes, 2);
+                if (cantidad < 0 || 3 + cantidad > partes.length) {
+                    // Entrada con otro formato: se vuelve a leer del servidor
+                    continue;
+                }
+                tablas.put(nombre.substring(6), new Tabla(
+                        new ArrayList<>(Arrays.asList(partes).subList(3, 3 + cantidad)),
+                        new ArrayList<>(Arrays.asList(partes).subList(3 + cantidad, partes.length)),
+                        partes[1], Long.parseLong(partes[0])));
+            } else if (nombre.startsWith("catalogo:")) {
+                catalogos.put(nombre.substring(9), new Catalogo(
+                        Arrays.asList(partes).subList(2, partes.length), partes[1], Long.parseLong(partes[0])));
+            }
+        }
+    }
+
+    /** Guarda la copia en disco de forma atómica (archivo temporal + move). */
+    private synchronized void guardar() {
+        if (archivo == null) {
+            return;
+        }
+        Properties copia = new Properties();
+        // Los nombres entre corchetes pueden tener comas; el tabulador es el mismo separador de los catálogos
+        tablas.forEach((clave, tabla) -> copia.setProperty("tabla:" + clave, tabla.validada + SEPARADOR
+                + tabla.modificada + SEPARADOR + tabla.columnas.size()
+                + (tabla.columnas.isEmpty() ? "" : SEPARADOR + String.join(SEPARADOR, tabla.columnas))
+                + (tabla.clavesPrimarias.isEmpty() ? "" : SEPARADOR + String.join(SEPARADOR, tabla.clavesPrimarias))));
+        catalogos.forEach((clave, catalogo) -> copia.setProperty("catalogo:" + clave, catalogo.validada + SEPARADOR
+                + catalogo.firma + (catalogo.tablas.isEmpty() ? "" : SEPARADOR + String.join(SEPARADOR, catalogo.tablas))));
+        try {
+            Files.createDirectories(archivo.toAbsolutePath().getParent());
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporal)) {
+                copia.store(out, "Caché de metadatos del catálogo");
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // La caché en memoria sigue siendo válida; solo se pierde la copia para la próxima ejecución
+            System.out.println("No se pudo guardar la caché de metadatos: " + e.getMessage());
+        }
+    }
+
+    private static int entero(String[] partes, int indice) {
+        try {
+            return indice < partes.length ? Integer.parseInt(partes[indice]) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
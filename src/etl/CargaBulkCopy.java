@@ -0,0 +1,58 @@
+package src.etl;
+
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Inserción masiva con SQLServerBulkCopy (protocolo BULK INSERT de TDS) en lugar de
+ * lotes de PreparedStatement. Solo inserta: sirve para cargas iniciales, tablas sin
+ * PK que se recargan completas y tablas de staging.
+ */
+final class CargaBulkCopy {
+
+    private CargaBulkCopy() {
+    }
+
+    /**
+     * Envía todas las filas de la fuente a la tabla destino y devuelve cuántas se copiaron.
+     *
+     * @param columnasDestino    columnas destino, en el orden de las filas de la fuente
+     * @param transaccionInterna true para confirmar cada lote en su propia transacción
+     *                           (requiere la conexión en auto-commit); false para
+     *                           participar en la transacción abierta de la conexión
+     * @param conservarIdentidad true para copiar los valores de las columnas IDENTITY mapeadas,
+     *                           como un INSERT explícito
+     */
+    static long cargar(Connection destConn, String tableDestination, DatosBulkCopy.Columnas columnasDestino,
+            FuenteFilas fuente, int tamanioLote, boolean bloqueoTabla, boolean transaccionInterna,
+            boolean conservarIdentidad) throws SQLException {
+        DatosBulkCopy datos = new DatosBulkCopy(columnasDestino, fuente);
+
+        SQLServerBulkCopyOptions opciones = new SQLServerBulkCopyOptions();
+        opciones.setBatchSize(tamanioLote);
+        opciones.setTableLock(bloqueoTabla);
+        opciones.setUseInternalTransaction(transaccionInterna);
+        opciones.setBulkCopyTimeout(0);
+        // Igual que un INSERT explícito: se respetan los NULL
+        opciones.setKeepNulls(true);
+        opciones.setKeepIdentity(conservarIdentidad);
+
+        List<String> nombres = columnasDestino.nombres();
+        // SQLServerBulkCopy exige la conexión del driver, no el proxy del pool de conexiones
+        try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(destConn.unwrap(SQLServerConnection.class))) {
+            bulkCopy.setDestinationTableName(tableDestination);
+            bulkCopy.setBulkCopyOptions(opciones);
+            // Las columnas de la fuente ya vienen en el orden del mapeo a columnas destino
+            for (int i = 0; i < nombres.size(); i++) {
+                bulkCopy.addColumnMapping(i + 1, nombres.get(i));
+            }
+            bulkCopy.writeToServer(datos);
+        }
+        return datos.filasLeidas();
+    }
+}
@@ -0,0 +1,343 @@
+package src.etl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bucle de carga por lotes: agrega las filas al {@link Cargador}, ejecuta un lote cada
+ * {@link ControladorLote#tamanio()} filas y hace commit cada
+ * {@link ControladorLote#lotesPorCommit()} lotes, valores que el controlador ajusta
+ * según la latencia medida de cada lote y de cada commit.
+ *
+ * Las filas desde el último commit se conservan para poder reenviarlas: ante un error
+ * transitorio (víctima de interbloqueo, conexión perdida) se hace rollback, se espera
+ * con retroceso exponencial y se reintenta el lote, abriendo una conexión nueva si la
+ * anterior se perdió. Con checkpoint, después de cada commit se guarda la última clave
+ * confirmada de cada partición.
+ */
+class CargaPorLotes {
+
+    /** Crea el cargador sobre una conexión (la original o una nueva después de reconectar). */
+    @FunctionalInterface
+    interface FabricaCargador {
+        Cargador crear(Connection destConn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Bucle {
+        void recorrer() throws SQLException;
+    }
+
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final ProveedorConexion proveedorDestino;
+    private final FabricaCargador fabrica;
+    private final ControladorLote controlador;
+    private final Checkpoint checkpoint;
+    private final int indiceClave;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final MetricasETL metricas;
+
+    private Connection destConn;
+    private boolean conexionPropia = false;
+    private Cargador cargador;
+    // Copias de las filas enviadas desde el último commit; los arreglos se reutilizan
+    private final List<Object[]> sinConfirmar = new ArrayList<>();
+    private int filasSinConfirmar = 0;
+    // Filas agregadas al cargador desde el último ejecutarLote, y lotes ejecutados desde el último commit
+    private int filasEnLote = 0;
+    private int lotesSinConfirmar = 0;
+    // Con lotes columnares: el pipeline que los provee y los recibidos desde el último commit
+    private PipelineColumnar lotes;
+    private final List<LoteColumnar> lotesRetenidos = new ArrayList<>();
+
+    /**
+     * @param checkpoint  checkpoint a actualizar en cada commit, o null
+     * @param indiceClave posición de la columna clave del checkpoint en la fila
+     */
+    CargaPorLotes(Connection destConn, ProveedorConexion proveedorDestino, FabricaCargador fabrica,
+            ControladorLote controlador,
+            Checkpoint checkpoint, int indiceClave, int maxIntentos, long esperaBaseMs, MetricasETL metricas) {
+        this.destConn = destConn;
+        this.proveedorDestino = proveedorDestino;
+        this.fabrica = fabrica;
+        this.controlador = controlador;
+        this.checkpoint = checkpoint;
+        this.indiceClave = indiceClave;
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBaseMs = esperaBaseMs;
+        this.metricas = metricas;
+    }
+
+    void cargar(FuenteFilas fuente, int columnas, String tableDestination) throws SQLException {
+        ejecutar(() -> {
+            long batchSize = 0;
+
+            // Las transformaciones ya se aplicaron en la etapa de transformación del pipeline
+            Object[] valores = new Object[columnas];
+            while (fuente.siguiente(valores)) {
+                agregar(valores);
+                batchSize++;
+
+                if (filasEnLote >= controlador.tamanio()) {
+                    boolean confirmar = ++lotesSinConfirmar >= controlador.lotesPorCommit()
+                            || controlador.excedeMemoria(filasSinConfirmar);
+                    cerrarLote(confirmar);
+                    if (confirmar) {
+                        System.out.println("Procesados " + batchSize + " registros...");
+                    }
+                }
+            }
+        }, tableDestination);
+    }
+
+    /**
+     * Carga los lotes columnares del pipeline: cada lote leído es un lote del cargador.
+     * Los lotes desde el último commit se retienen para reenviarlos y se devuelven al
+     * pipeline después del commit, en lugar de copiar cada fila.
+     */
+    void cargar(PipelineColumnar fuente, String tableDestination) throws SQLException {
+        lotes = fuente;
+        ejecutar(() -> {
+            long batchSize = 0;
+            fuente.tamanio(controlador.tamanio());
+            LoteColumnar lote;
+            while ((lote = fuente.siguiente()) != null) {
+                lotesRetenidos.add(lote);
+                int filas = lote.filas();
+                for (int f = 0; f < filas; f++) {
+                    cargador.agregar(lote, f);
+                }
+                if (checkpoint != null) {
+                    registrarClaves(lote);
+                }
+                filasEnLote = filas;
+                filasSinConfirmar += filas;
+                batchSize += filas;
+                controlador.loteAgregado(lote.fila(0));
+
+                boolean confirmar = ++lotesSinConfirmar >= controlador.lotesPorCommit()
+                        || controlador.excedeMemoria(filasSinConfirmar);
+                cerrarLote(confirmar);
+                fuente.tamanio(controlador.tamanio());
+                if (confirmar) {
+                    System.out.println("Procesados " + batchSize + " registros...");
+                }
+            }
+        }, tableDestination);
+    }
+
+    private void ejecutar(Bucle bucle, String tableDestination) throws SQLException {
+        // El cargador se crea fuera de la transacción: lo que prepara (la tabla temporal del
+        // modo staging) no se pierde con el rollback de un lote que se reintenta
+        cargador = fabrica.crear(destConn);
+        metricas.tamanioLote = controlador.tamanio();
+        metricas.lotesPorCommit = controlador.lotesPorCommit();
+        try {
+            destConn.setAutoCommit(false);
+            bucle.recorrer();
+
+            if (filasSinConfirmar > 0) {
+                cerrarLote(true);
+            }
+            cargador.finalizar();
+            if (checkpoint != null) {
+                eliminarCheckpoint();
+            }
+
+            System.out.println("\nProceso ETL completado con éxito. Datos cargados en '" + tableDestination + "'");
+            System.out.println(cargador.resumen());
+            System.out.println(controlador.resumen());
+        } catch (SQLException | RuntimeException e) {
+            // Que el setAutoCommit(true) del final no confirme un lote a medias
+            deshacer();
+            throw e;
+        } finally {
+            try {
+                cargador.close();
+            } finally {
+                if (conexionPropia) {
+                    destConn.close();
+                } else {
+                    destConn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Con lotes columnares la lectura es de una sola partición y el checkpoint se queda
+     * con la mayor clave: alcanza con registrar la mayor del lote, sin convertir cada una a Long.
+     */
+    private void registrarClaves(LoteColumnar lote) {
+        if (lote.claseColumna(indiceClave) != LoteColumnar.ENTERO) {
+            for (int f = 0; f < lote.filas(); f++) {
+                Object clave = lote.valor(indiceClave, f);
+                if (clave != null) {
+                    checkpoint.registrar(clave);
+                }
+            }
+            return;
+        }
+        boolean hay = false;
+        long mayor = Long.MIN_VALUE;
+        for (int f = 0; f < lote.filas(); f++) {
+            if (!lote.esNulo(indiceClave, f)) {
+                mayor = Math.max(mayor, lote.entero(indiceClave, f));
+                hay = true;
+            }
+        }
+        if (hay) {
+            checkpoint.registrar(mayor);
+        }
+    }
+
+    private void agregar(Object[] valores) throws SQLException {
+        if (filasSinConfirmar == sinConfirmar.size()) {
+            sinConfirmar.add(new Object[valores.length]);
+        }
+        System.arraycopy(valores, 0, sinConfirmar.get(filasSinConfirmar++), 0, valores.length);
+
+        cargador.agregar(valores);
+        filasEnLote++;
+        controlador.filaAgregada(valores);
+        if (checkpoint != null) {
+            checkpoint.registrar(valores[indiceClave]);
+        }
+    }
+
+    /** Ejecuta el lote pendiente y, si {@code confirmar}, hace commit de todo lo enviado desde el anterior. */
+    private void cerrarLote(boolean confirmar) throws SQLException {
+        for (int intento = 1; ; intento++) {
+            try {
+                if (intento > 1) {
+                    reenviar();
+                }
+                long inicio = System.nanoTime();
+                cargador.ejecutarLote();
+                long ejecutado = System.nanoTime();
+                metricas.ejecutarLote.registrar(ejecutado - inicio);
+                controlador.loteEjecutado(filasEnLote, ejecutado - inicio);
+                filasEnLote = 0;
+                if (confirmar) {
+                    destConn.commit();
+                    long nanosCommit = System.nanoTime() - ejecutado;
+                    metricas.commit.registrar(nanosCommit);
+                    controlador.commitEjecutado(nanosCommit);
+                }
+                break;
+            } catch (SQLException e) {
+                deshacer();
+                if (!Reintentos.esTransitorio(e) || intento >= maxIntentos) {
+                    throw e;
+                }
+                metricas.reintentos.increment();
+                System.out.println("Error transitorio en el lote (" + e.getMessage() + "). Reintento " + intento
+                        + " de " + (maxIntentos - 1) + "...");
+                Reintentos.esperar(intento, esperaBaseMs);
+                if (Reintentos.esConexionPerdida(e) || destConn.isClosed()) {
+                    reconectar();
+                } else {
+                    cargador.alDeshacer();
+                }
+            }
+        }
+        metricas.tamanioLote = controlador.tamanio();
+        metricas.lotesPorCommit = controlador.lotesPorCommit();
+        if (!confirmar) {
+            return;
+        }
+
+        cargador.alConfirmar();
+        metricas.filasCargadas.add(filasSinConfirmar);
+        filasSinConfirmar = 0;
+        lotesSinConfirmar = 0;
+        for (LoteColumnar lote : lotesRetenidos) {
+            lotes.liberar(lote);
+        }
+        lotesRetenidos.clear();
+        if (checkpoint != null) {
+            try {
+                checkpoint.confirmar();
+            } catch (IOException e) {
+                throw new SQLException("No se pudo guardar el checkpoint de la carga", e);
+            }
+        }
+    }
+
+    /**
+     * Después del rollback vuelve a enviar las filas desde el último commit, en lotes del
+     * tamaño actual (o en los mismos lotes columnares); el último queda pendiente en el cargador.
+     */
+    private void reenviar() throws SQLException {
+        filasEnLote = 0;
+        if (lotes != null) {
+            for (int i = 0; i < lotesRetenidos.size(); i++) {
+                if (i > 0) {
+                    cargador.ejecutarLote();
+                }
+                LoteColumnar lote = lotesRetenidos.get(i);
+                for (int f = 0; f < lote.filas(); f++) {
+                    cargador.agregar(lote, f);
+                }
+                filasEnLote = lote.filas();
+            }
+            return;
+        }
+        for (int i = 0; i < filasSinConfirmar; i++) {
+            if (filasEnLote == controlador.tamanio()) {
+                cargador.ejecutarLote();
+                filasEnLote = 0;
+            }
+            cargador.agregar(sinConfirmar.get(i));
+            filasEnLote++;
+        }
+    }
+
+    private void deshacer() {
+        try {
+            destConn.rollback();
+        } catch (SQLException e) {
+            // Con la conexión perdida el servidor ya descartó la transacción
+        }
+    }
+
+    private void reconectar() throws SQLException {
+        try {
+            // Lo que el cargador compartía con la carga (huellas, índice de cambios) vuelve al último commit
+            cargador.alDeshacer();
+        } catch (SQLException e) {
+            // Las sentencias de la conexión perdida ya no se pueden limpiar
+        }
+        try {
+            cargador.close();
+        } catch (SQLException e) {
+            // Las sentencias de la conexión perdida ya no se pueden cerrar limpiamente
+        }
+        if (conexionPropia) {
+            try {
+                destConn.close();
+            } catch (SQLException e) {
+                // idem
+            }
+        }
+        System.out.println("Abriendo una nueva conexión al destino...");
+        metricas.reconexiones.increment();
+        destConn = proveedorDestino.obtener();
+        conexionPropia = true;
+        cargador = fabrica.crear(destConn);
+        destConn.setAutoCommit(false);
+    }
+
+    private void eliminarCheckpoint() throws SQLException {
+        try {
+            checkpoint.eliminar();
+        } catch (IOException e) {
+            throw new SQLException("No se pudo eliminar el checkpoint de la carga terminada", e);
+        }
+    }
+}
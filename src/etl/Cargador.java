@@ -0,0 +1,42 @@
+package src.etl;
+
+import java.sql.SQLException;
+
+/**
+ * Estrategia de carga hacia la tabla destino.
+ * Recibe las filas ya transformadas (en el orden de las columnas destino mapeadas)
+ * y las envía a la base de datos por lotes. El commit lo controla el proceso ETL.
+ */
+interface Cargador extends AutoCloseable {
+
+    void agregar(Object[] valores) throws SQLException;
+
+    /**
+     * Agrega la fila {@code fila} de un lote columnar. Por omisión la copia a un arreglo
+     * de valores; los cargadores que enlazan directo desde el lote no crean objetos.
+     */
+    default void agregar(LoteColumnar lote, int fila) throws SQLException {
+        agregar(lote.fila(fila));
+    }
+
+    void ejecutarLote() throws SQLException;
+
+    /** Se invoca después de cada commit: lo enviado desde el commit anterior ya es definitivo. */
+    default void alConfirmar() throws SQLException {
+    }
+
+    /**
+     * Se invoca después de un rollback: descarta lo enviado desde el último commit, que el
+     * proceso ETL vuelve a agregar si reintenta.
+     */
+    void alDeshacer() throws SQLException;
+
+    /** Se invoca una sola vez, después del último commit de una carga completada con éxito. */
+    default void finalizar() throws SQLException {
+    }
+
+    String resumen();
+
+    @Override
+    void close() throws SQLException;
+}
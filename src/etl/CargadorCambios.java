@@ -0,0 +1,283 @@
+package src.etl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Detección de cambios para tablas con PK: delante del cargador del modo elegido,
+ * compara la huella de cada fila transformada con la última huella conocida de su clave
+ * y solo le pasa las filas nuevas o modificadas. Las filas sin cambios no generan
+ * UPDATE, ni registro de transacciones, ni mantenimiento de índices.
+ *
+ * Las huellas conocidas ({@link Indice}) salen de una columna BIGINT del destino que
+ * la carga mantiene, o de un índice local en el directorio de estado. Se actualizan
+ * solo después de cada commit. El índice local se borra antes del primer commit y se
+ * escribe una vez al terminar la carga, junto con la firma del trabajo y un marcador del
+ * contenido del destino. Un índice desactualizado haría omitir cambios reales, así que
+ * solo se reutiliza si el destino tiene una columna rowversion, cuyo máximo cambia con
+ * cualquier INSERT o UPDATE, y todavía tiene el mismo marcador.
+ */
+class CargadorCambios implements Cargador {
+
+    /** Huellas conocidas por clave, compartidas por los cargadores de una misma carga. */
+    static final class Indice {
+        private final MapaHuellas huellas;
+        private final int[] posicionesClave;
+        // Columnas que recibe el cargador: las mapeadas y, al final, la de huella si la hay
+        private final List<String> columnasCarga;
+        private final boolean conColumna;
+        private final String tabla;
+        private final Path archivo;
+        private final String firma;
+        private boolean invalidado = false;
+
+        private Indice(MapaHuellas huellas, int[] posicionesClave, List<String> columnasCarga, boolean conColumna,
+                String tabla, Path archivo, String firma) {
+            this.huellas = huellas;
+            this.posicionesClave = posicionesClave;
+            this.columnasCarga = columnasCarga;
+            this.conColumna = conColumna;
+            this.tabla = tabla;
+            this.archivo = archivo;
+            this.firma = firma;
+        }
+
+        List<String> columnasCarga() {
+            return columnasCarga;
+        }
+
+        /**
+         * Lee las huellas conocidas: de {@code columnaHuella} en el destino si se indica; si
+         * no, del archivo local, o calculándolas desde las filas del destino cuando el
+         * archivo no existe (una carga que no terminó lo deja borrado), es de otra firma, el
+         * destino no tiene rowversion o cambió desde entonces.
+         *
+         * @param firma identifica el mapeo de columnas y las transformaciones del trabajo
+         */
+        static Indice leer(Connection destConn, String tableDestination, List<String> columnasDestinoMapeadas,
+                List<String> primaryKeys, String columnaHuella, Path archivo, String firma) throws SQLException {
+            int[] posicionesClave = new int[primaryKeys.size()];
+            for (int i = 0; i < posicionesClave.length; i++) {
+                posicionesClave[i] = columnasDestinoMapeadas.indexOf(primaryKeys.get(i));
+            }
+            List<String> columnasCarga = new ArrayList<>(columnasDestinoMapeadas);
+            if (columnaHuella != null) {
+                columnasCarga.add(columnaHuella);
+                return new Indice(leerColumna(destConn, tableDestination, primaryKeys, columnaHuella),
+                        posicionesClave, columnasCarga, true, tableDestination, null, firma);
+            }
+
+            MapaHuellas huellas = null;
+            MarcadorTabla marcador = MarcadorTabla.leer(destConn, tableDestination);
+            if (!marcador.conVersionFila) {
+                System.out.println("'" + tableDestination + "' no tiene una columna rowversion: el índice de cambios "
+                        + "se calcula desde el destino en cada carga (o use carga.cambios.columna).");
+                archivo = null;
+            } else if (Files.exists(archivo)) {
+                try {
+                    // El destino pudo cambiar fuera del ETL (recarga, borrado, UPDATE): el índice ya no lo representa
+                    huellas = MapaHuellas.cargar(archivo, firma, marcador.valor);
+                    System.out.println("Huellas de cambios cargadas desde '" + archivo + "': " + huellas.tamanio());
+                } catch (IOException e) {
+                    System.out.println("No se pudo usar el índice de cambios, se calculará desde el destino: "
+                            + e.getMessage());
+                }
+            }
+            if (huellas == null) {
+                huellas = calcular(destConn, tableDestination, columnasDestinoMapeadas, posicionesClave);
+            }
+            return new Indice(huellas, posicionesClave, columnasCarga, false, tableDestination, archivo, firma);
+        }
+
+        /**
+         * Borra el índice local antes del primer commit: si la carga no termina, la próxima
+         * ejecución no lee huellas anteriores a las filas que esta ya confirmó.
+         */
+        private void invalidar() throws SQLException {
+            if (archivo == null || invalidado) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException e) {
+                throw new SQLException("No se pudo borrar el índice de cambios '" + archivo + "'", e);
+            }
+            invalidado = true;
+        }
+
+        /** Escribe el índice local al terminar la carga, con el marcador del destino. */
+        private void guardar(Connection destConn) throws SQLException {
+            if (archivo == null) {
+                return;
+            }
+            try {
+                huellas.guardar(archivo, firma, MarcadorTabla.leer(destConn, tabla).valor);
+            } catch (IOException e) {
+                throw new SQLException("No se pudo guardar el índice de cambios '" + archivo + "'", e);
+            }
+        }
+
+        private static MapaHuellas leerColumna(Connection destConn, String tableDestination, List<String> primaryKeys,
+                String columnaHuella) throws SQLException {
+            MapaHuellas huellas = new MapaHuellas(1 << 16);
+            Object[] clave = new Object[primaryKeys.size()];
+            try (Statement stmt = destConn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(10000);
+                try (ResultSet rs = stmt.executeQuery("SELECT " + String.join(", ", primaryKeys) + ", " + columnaHuella
+                        + " FROM " + tableDestination)) {
+                    while (rs.next()) {
+                        long huella = rs.getLong(clave.length + 1);
+                        // Las filas sin huella (anteriores a la detección de cambios) se envían una vez
+                        if (rs.wasNull()) {
+                            continue;
+                        }
+                        for (int i = 0; i < clave.length; i++) {
+                            clave[i] = rs.getObject(i + 1);
+                        }
+                        huellas.poner(HuellaFila.calcular(clave), huella);
+                    }
+                }
+            }
+            System.out.println("Huellas de cambios leídas de la columna '" + columnaHuella + "': " + huellas.tamanio());
+            return huellas;
+        }
+
+        private static MapaHuellas calcular(Connection destConn, String tableDestination,
+                List<String> columnasDestinoMapeadas, int[] posicionesClave) throws SQLException {
+            MapaHuellas huellas = new MapaHuellas(1 << 16);
+            Object[] valores = new Object[columnasDestinoMapeadas.size()];
+            Object[] clave = new Object[posicionesClave.length];
+            try (Statement stmt = destConn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(10000);
+                try (ResultSet rs = stmt.executeQuery("SELECT " + String.join(", ", columnasDestinoMapeadas)
+                        + " FROM " + tableDestination)) {
+                    while (rs.next()) {
+                        for (int i = 0; i < valores.length; i++) {
+                            valores[i] = rs.getObject(i + 1);
+                        }
+                        for (int i = 0; i < clave.length; i++) {
+                            clave[i] = valores[posicionesClave[i]];
+                        }
+                        // La misma huella que calcula agregar para una fila igual
+                        long huella = HuellaFila.calcular(valores);
+                        huellas.poner(HuellaFila.calcular(clave), huella == 0 ? 1 : huella);
+                    }
+                }
+            }
+            System.out.println("Huellas de cambios calculadas desde el destino: " + huellas.tamanio());
+            return huellas;
+        }
+    }
+
+    private final Cargador cargador;
+    private final Indice indice;
+    private final Connection destConn;
+    private final Object[] clave;
+    // Fila con la huella agregada al final, para la columna de huella del destino
+    private final Object[] conHuella;
+
+    // Claves y huellas enviadas desde el último commit; pasan al índice al confirmar
+    private long[] clavesPendientes = new long[1024];
+    private long[] huellasPendientes = new long[1024];
+    private int cantidadPendientes = 0;
+    private long nuevasPendientes = 0;
+    private long sinCambiosPendientes = 0;
+    private long nuevas = 0;
+    private long modificadas = 0;
+    private long sinCambios = 0;
+
+    CargadorCambios(Cargador cargador, Indice indice, Connection destConn) {
+        this.cargador = cargador;
+        this.indice = indice;
+        this.destConn = destConn;
+        this.clave = new Object[indice.posicionesClave.length];
+        this.conHuella = indice.conColumna ? new Object[indice.columnasCarga.size()] : null;
+    }
+
+    @Override
+    public void agregar(Object[] valores) throws SQLException {
+        for (int i = 0; i < clave.length; i++) {
+            clave[i] = valores[indice.posicionesClave[i]];
+        }
+        long huellaClave = HuellaFila.calcular(clave);
+        long huella = HuellaFila.calcular(valores);
+        if (huella == 0) {
+            huella = 1;
+        }
+        long conocida = indice.huellas.obtener(huellaClave);
+        if (conocida == huella) {
+            sinCambiosPendientes++;
+            return;
+        }
+        if (conocida == 0) {
+            nuevasPendientes++;
+        }
+        if (cantidadPendientes == clavesPendientes.length) {
+            clavesPendientes = Arrays.copyOf(clavesPendientes, cantidadPendientes * 2);
+            huellasPendientes = Arrays.copyOf(huellasPendientes, cantidadPendientes * 2);
+        }
+        clavesPendientes[cantidadPendientes] = huellaClave;
+        huellasPendientes[cantidadPendientes++] = huella;
+
+        if (conHuella == null) {
+            cargador.agregar(valores);
+        } else {
+            System.arraycopy(valores, 0, conHuella, 0, valores.length);
+            conHuella[valores.length] = huella;
+            cargador.agregar(conHuella);
+        }
+    }
+
+    @Override
+    public void ejecutarLote() throws SQLException {
+        indice.invalidar();
+        cargador.ejecutarLote();
+    }
+
+    @Override
+    public void alConfirmar() throws SQLException {
+        cargador.alConfirmar();
+        for (int i = 0; i < cantidadPendientes; i++) {
+            indice.huellas.poner(clavesPendientes[i], huellasPendientes[i]);
+        }
+        nuevas += nuevasPendientes;
+        modificadas += cantidadPendientes - nuevasPendientes;
+        sinCambios += sinCambiosPendientes;
+        cantidadPendientes = 0;
+        nuevasPendientes = 0;
+        sinCambiosPendientes = 0;
+    }
+
+    @Override
+    public void alDeshacer() throws SQLException {
+        cargador.alDeshacer();
+        cantidadPendientes = 0;
+        nuevasPendientes = 0;
+        sinCambiosPendientes = 0;
+    }
+
+    @Override
+    public void finalizar() throws SQLException {
+        cargador.finalizar();
+        indice.guardar(destConn);
+    }
+
+    @Override
+    public String resumen() {
+        return cargador.resumen() + " Detección de cambios: " + nuevas + " nuevas, " + modificadas + " modificadas, "
+                + sinCambios + " sin cambios omitidas.";
+    }
+
+    @Override
+    public void close() throws SQLException {
+        cargador.close();
+    }
+}
@@ -0,0 +1,191 @@
+package src.etl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Carga para tablas sin PK que descarta en el cliente, por su huella en memoria, las
+ * filas que ya están en el destino, en lugar de ejecutar un IF NOT EXISTS por todas las
+ * columnas en cada registro. Las huellas del destino se leen una vez por ejecución (o
+ * desde el archivo guardado al terminar la ejecución anterior, si el destino no cambió
+ * desde entonces).
+ *
+ * Las huellas son solo un filtro previo: se calculan con los valores Java de cada lado, y
+ * filas iguales en la base pueden diferir en el cliente (un entero cargado en un varchar,
+ * un datetime2 redondeado por un datetime, el relleno de char(n), una intercalación que
+ * no distingue mayúsculas). Las filas que pasan el filtro se envían al cargador del
+ * servidor, que solo inserta las que el destino no tiene.
+ *
+ * Las huellas ({@link Huellas}) son de la carga, no del cargador: si la carga reconecta y
+ * crea otro cargador, este sigue con las huellas ya confirmadas en la misma ejecución.
+ */
+class CargadorDeduplicado implements Cargador {
+
+    /** Huellas conocidas del destino, compartidas por los cargadores de una misma carga. */
+    static final class Huellas {
+        private final ConjuntoHuellas conjunto;
+        private final String tabla;
+        private final Path archivo;
+        private final String firma;
+        private boolean invalidado = false;
+
+        private Huellas(ConjuntoHuellas conjunto, String tabla, Path archivo, String firma) {
+            this.conjunto = conjunto;
+            this.tabla = tabla;
+            this.archivo = archivo;
+            this.firma = firma;
+        }
+
+        /**
+         * Lee las huellas del archivo guardado, si existe, tiene la misma firma y el destino
+         * no cambió desde que se guardó; si no, las calcula desde las filas del destino.
+         *
+         * @param archivo archivo donde se conservan las huellas entre ejecuciones,
+         *                o null para leerlas siempre desde el destino
+         * @param firma   identifica el mapeo de columnas y las transformaciones del trabajo
+         */
+        static Huellas leer(Connection destConn, String tableDestination, List<String> columnasDestinoMapeadas,
+                Path archivo, String firma) throws SQLException {
+            if (archivo != null && Files.exists(archivo)) {
+                try {
+                    // El destino pudo cambiar fuera del ETL (recarga, borrado, INSERT): las huellas ya no lo representan
+                    ConjuntoHuellas guardadas = ConjuntoHuellas.cargar(archivo, firma,
+                            MarcadorTabla.leer(destConn, tableDestination).valor);
+                    System.out.println("Huellas cargadas desde '" + archivo + "': " + guardadas.tamanio());
+                    return new Huellas(guardadas, tableDestination, archivo, firma);
+                } catch (IOException e) {
+                    System.out.println("No se pudo usar el archivo de huellas, se leerán desde el destino: "
+                            + e.getMessage());
+                }
+            }
+
+            ConjuntoHuellas conjunto = new ConjuntoHuellas(1 << 16);
+            int columnas = columnasDestinoMapeadas.size();
+            Object[] valores = new Object[columnas];
+            try (Statement stmt = destConn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(10000);
+                try (ResultSet rs = stmt.executeQuery("SELECT " + String.join(", ", columnasDestinoMapeadas)
+                        + " FROM " + tableDestination)) {
+                    while (rs.next()) {
+                        for (int i = 0; i < columnas; i++) {
+                            valores[i] = rs.getObject(i + 1);
+                        }
+                        conjunto.agregar(HuellaFila.calcular(valores));
+                    }
+                }
+            }
+            System.out.println("Huellas leídas del destino: " + conjunto.tamanio());
+            return new Huellas(conjunto, tableDestination, archivo, firma);
+        }
+
+        /**
+         * Borra el archivo antes del primer commit: si la carga no termina, la próxima
+         * ejecución no lee un conjunto sin las filas que esta ya confirmó.
+         */
+        private void invalidar() throws SQLException {
+            if (archivo == null || invalidado) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(archivo);
+            } catch (IOException e) {
+                throw new SQLException("No se pudo borrar el archivo de huellas '" + archivo + "'", e);
+            }
+            invalidado = true;
+        }
+
+        private void guardar(Connection destConn) throws SQLException {
+            if (archivo == null) {
+                return;
+            }
+            try {
+                conjunto.guardar(archivo, firma, MarcadorTabla.leer(destConn, tabla).valor);
+            } catch (IOException e) {
+                throw new SQLException("No se pudo guardar el archivo de huellas '" + archivo + "'", e);
+            }
+        }
+    }
+
+    private final Cargador servidor;
+    private final Connection destConn;
+    private final Huellas huellas;
+    private long descartados = 0;
+    // Huellas agregadas desde el último commit, para quitarlas del conjunto si hay rollback
+    private long[] huellasPendientes = new long[1024];
+    private int cantidadPendientes = 0;
+    private long descartadosPendientes = 0;
+
+    /**
+     * @param servidor cargador que inserta solo las filas que no están en el destino, comparando
+     *                 en el servidor (staging sin PK: MERGE por todas las columnas)
+     */
+    CargadorDeduplicado(Cargador servidor, Connection destConn, Huellas huellas) {
+        this.servidor = servidor;
+        this.destConn = destConn;
+        this.huellas = huellas;
+    }
+
+    @Override
+    public void agregar(Object[] valores) throws SQLException {
+        // También descarta las filas repetidas dentro del mismo origen
+        long huella = HuellaFila.calcular(valores);
+        if (!huellas.conjunto.agregar(huella)) {
+            descartadosPendientes++;
+            return;
+        }
+        if (cantidadPendientes == huellasPendientes.length) {
+            huellasPendientes = Arrays.copyOf(huellasPendientes, cantidadPendientes * 2);
+        }
+        huellasPendientes[cantidadPendientes++] = huella;
+
+        servidor.agregar(valores);
+    }
+
+    @Override
+    public void ejecutarLote() throws SQLException {
+        huellas.invalidar();
+        servidor.ejecutarLote();
+    }
+
+    @Override
+    public void alConfirmar() throws SQLException {
+        servidor.alConfirmar();
+        descartados += descartadosPendientes;
+        cantidadPendientes = 0;
+        descartadosPendientes = 0;
+    }
+
+    @Override
+    public void alDeshacer() throws SQLException {
+        // Primero las huellas: con la conexión perdida el cargador del servidor puede fallar
+        for (int i = 0; i < cantidadPendientes; i++) {
+            huellas.conjunto.eliminar(huellasPendientes[i]);
+        }
+        cantidadPendientes = 0;
+        descartadosPendientes = 0;
+        servidor.alDeshacer();
+    }
+
+    @Override
+    public void finalizar() throws SQLException {
+        servidor.finalizar();
+        huellas.guardar(destConn);
+    }
+
+    @Override
+    public String resumen() {
+        return servidor.resumen() + " Filas repetidas descartadas por huella: " + descartados + ".";
+    }
+
+    @Override
+    public void close() throws SQLException {
+        servidor.close();
+    }
+}
@@ -0,0 +1,74 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Carga registro a registro con la sentencia UPSERT (tablas con PK)
+ * o INSERT con verificación de existencia (tablas sin PK).
+ */
+class CargadorFilaAFila implements Cargador {
+    private final PreparedStatement pstmt;
+    private final PlanEnlace plan;
+    private long filas = 0;
+    private long filasPendientes = 0;
+
+    CargadorFilaAFila(Connection destConn, String tableDestination, List<String> columnasDestinoMapeadas,
+            List<String> primaryKeys) throws SQLException {
+        int[] tipos = PlanEnlace.tiposColumnas(destConn, tableDestination, columnasDestinoMapeadas);
+        String sql;
+        if (!primaryKeys.isEmpty()) {
+            // Parámetros: UPDATE (todos menos PKs), WHERE (solo PKs), INSERT (todos)
+            sql = ETLProcess.construirUpsertSQL(tableDestination, columnasDestinoMapeadas, primaryKeys);
+            this.plan = PlanEnlace.upsert(columnasDestinoMapeadas, primaryKeys, tipos);
+        } else {
+            // Parámetros: WHERE (todos), INSERT (todos)
+            sql = ETLProcess.construirInsertConVerificacion(tableDestination, columnasDestinoMapeadas);
+            this.plan = PlanEnlace.insercionConVerificacion(tipos);
+        }
+        this.pstmt = destConn.prepareStatement(sql);
+    }
+
+    @Override
+    public void agregar(Object[] valores) throws SQLException {
+        plan.enlazar(pstmt, valores);
+        pstmt.addBatch();
+        filasPendientes++;
+    }
+
+    @Override
+    public void agregar(LoteColumnar lote, int fila) throws SQLException {
+        plan.enlazar(pstmt, lote, fila);
+        pstmt.addBatch();
+        filasPendientes++;
+    }
+
+    @Override
+    public void ejecutarLote() throws SQLException {
+        pstmt.executeBatch();
+    }
+
+    @Override
+    public void alConfirmar() {
+        filas += filasPendientes;
+        filasPendientes = 0;
+    }
+
+    @Override
+    public void alDeshacer() throws SQLException {
+        pstmt.clearBatch();
+        filasPendientes = 0;
+    }
+
+    @Override
+    public String resumen() {
+        return filas + " registros procesados fila a fila.";
+    }
+
+    @Override
+    public void close() throws SQLException {
+        pstmt.close();
+    }
+}
@@ -0,0 +1,221 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carga por bloques a través de una tabla temporal: cada lote se inserta en
+ * #ETL_Staging con INSERT por lotes y se aplica sobre el destino con un único
+ * MERGE por bloque, en lugar de dos búsquedas por índice por cada registro.
+ * Opcionalmente el bloque se copia a la tabla temporal con SQLServerBulkCopy.
+ *
+ * Cada fila lleva un número de orden que asigna el cliente (no una columna IDENTITY,
+ * cuyo orden el bulk copy no garantiza): ante varias filas con la misma PK en un bloque,
+ * el MERGE aplica la última que llegó.
+ */
+class CargadorStaging implements Cargador {
+    static final String TABLA_STAGING = "#ETL_Staging";
+    private static final String COLUMNA_ORDEN = "_etl_fila";
+
+    private final Connection destConn;
+    private final boolean usarBulkCopy;
+    // Columnas de la tabla temporal para el bulk copy (las mapeadas y la de orden), leídas una vez
+    private final DatosBulkCopy.Columnas columnasBloque;
+    // Filas del bloque cuando se usa bulk copy; los arreglos se reutilizan entre bloques
+    private final List<Object[]> bloque = new ArrayList<>();
+    private final PreparedStatement insertStaging;
+    private final PlanEnlace plan;
+    private final Statement mergeStmt;
+    private final String mergeSQL;
+    private final int columnas;
+    // Número de orden de la próxima fila enviada a la tabla temporal
+    private long orden = 0;
+    private int filasEnLote = 0;
+    private long insertados = 0;
+    private long actualizados = 0;
+    // Conteos de los bloques todavía sin commit
+    private long insertadosPendientes = 0;
+    private long actualizadosPendientes = 0;
+
+    CargadorStaging(Connection destConn, String tableDestination, List<String> columnasDestinoMapeadas,
+            List<String> primaryKeys, boolean usarBulkCopy) throws SQLException {
+        this.destConn = destConn;
+        this.usarBulkCopy = usarBulkCopy;
+        this.columnas = columnasDestinoMapeadas.size();
+        String columnas = String.join(", ", columnasDestinoMapeadas);
+
+        // Crear la tabla temporal con la estructura de las columnas destino.
+        // El UNION ALL evita que SELECT INTO copie la propiedad IDENTITY.
+        try (Statement stmt = destConn.createStatement()) {
+            stmt.execute("IF OBJECT_ID('tempdb.." + TABLA_STAGING + "') IS NOT NULL DROP TABLE " + TABLA_STAGING);
+            stmt.execute("SELECT TOP 0 " + columnas + " INTO " + TABLA_STAGING + " FROM " + tableDestination
+                    + " UNION ALL SELECT TOP 0 " + columnas + " FROM " + tableDestination);
+            // Orden de llegada, para quedarse con la última versión de una misma PK dentro del bloque
+            stmt.execute("ALTER TABLE " + TABLA_STAGING + " ADD " + COLUMNA_ORDEN + " BIGINT NOT NULL");
+        }
+
+        StringBuilder insert = new StringBuilder();
+        insert.append("INSERT INTO ").append(TABLA_STAGING).append(" (").append(columnas).append(", ")
+              .append(COLUMNA_ORDEN).append(") VALUES (");
+        for (int i = 0; i < columnasDestinoMapeadas.size(); i++) {
+            insert.append("?, ");
+        }
+        insert.append("?)");
+        this.insertStaging = destConn.prepareStatement(insert.toString());
+        this.plan = PlanEnlace.insercion(PlanEnlace.tiposColumnas(destConn, tableDestination, columnasDestinoMapeadas));
+
+        List<String> columnasStaging = new ArrayList<>(columnasDestinoMapeadas);
+        columnasStaging.add(COLUMNA_ORDEN);
+        this.columnasBloque = usarBulkCopy ? DatosBulkCopy.Columnas.leer(destConn, TABLA_STAGING, columnasStaging) : null;
+        this.mergeSQL = construirMergeBloque(tableDestination, columnasDestinoMapeadas, primaryKeys);
+        this.mergeStmt = destConn.createStatement();
+    }
+
+    private static String construirMergeBloque(String tableDestination, List<String> columnasDestino,
+            List<String> primaryKeys) {
+        String columnas = String.join(", ", columnasDestino);
+        String fuente;
+        List<String> clavesMerge;
+
+        if (!primaryKeys.isEmpty()) {
+            // Una sola fila por PK: la última que llegó al bloque
+            fuente = "(SELECT " + columnas + " FROM (SELECT " + columnas
+                    + ", ROW_NUMBER() OVER (PARTITION BY " + String.join(", ", primaryKeys)
+                    + " ORDER BY " + COLUMNA_ORDEN + " DESC) AS _etl_rn FROM " + TABLA_STAGING
+                    + ") AS s WHERE _etl_rn = 1)";
+            clavesMerge = primaryKeys;
+        } else {
+            // Sin PK: se compara por todas las columnas y solo se insertan las filas nuevas
+            fuente = "(SELECT DISTINCT " + columnas + " FROM " + TABLA_STAGING + ")";
+            clavesMerge = columnasDestino;
+        }
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("SET NOCOUNT ON; ")
+           .append("DECLARE @acciones TABLE (accion NVARCHAR(10)); ")
+           .append(ETLProcess.construirMergeSQLCompleto(tableDestination, fuente, columnasDestino,
+                   columnasDestino, clavesMerge, "OUTPUT $action INTO @acciones"))
+           .append(" TRUNCATE TABLE ").append(TABLA_STAGING).append("; ")
+           .append("SELECT COALESCE(SUM(CASE WHEN accion = 'INSERT' THEN 1 ELSE 0 END), 0), ")
+           .append("COALESCE(SUM(CASE WHEN accion = 'UPDATE' THEN 1 ELSE 0 END), 0) FROM @acciones;");
+        return sql.toString();
+    }
+
+    @Override
+    public void agregar(Object[] valores) throws SQLException {
+        if (usarBulkCopy) {
+            if (filasEnLote == bloque.size()) {
+                bloque.add(new Object[columnas + 1]);
+            }
+            Object[] fila = bloque.get(filasEnLote);
+            System.arraycopy(valores, 0, fila, 0, columnas);
+            fila[columnas] = orden++;
+        } else {
+            plan.enlazar(insertStaging, valores);
+            insertStaging.setLong(columnas + 1, orden++);
+            insertStaging.addBatch();
+        }
+        filasEnLote++;
+    }
+
+    @Override
+    public void agregar(LoteColumnar lote, int fila) throws SQLException {
+        if (usarBulkCopy) {
+            // El bulk copy necesita las filas como valores
+            agregar(lote.fila(fila));
+            return;
+        }
+        plan.enlazar(insertStaging, lote, fila);
+        insertStaging.setLong(columnas + 1, orden++);
+        insertStaging.addBatch();
+        filasEnLote++;
+    }
+
+    @Override
+    public void ejecutarLote() throws SQLException {
+        if (filasEnLote == 0) {
+            return;
+        }
+        if (usarBulkCopy) {
+            copiarBloque();
+        } else {
+            insertStaging.executeBatch();
+        }
+        filasEnLote = 0;
+
+        // El MERGE devuelve un único result set con los conteos del bloque
+        boolean esResultSet = mergeStmt.execute(mergeSQL);
+        while (!esResultSet && mergeStmt.getUpdateCount() != -1) {
+            esResultSet = mergeStmt.getMoreResults();
+        }
+        if (esResultSet) {
+            try (ResultSet rs = mergeStmt.getResultSet()) {
+                if (rs.next()) {
+                    insertadosPendientes += rs.getLong(1);
+                    actualizadosPendientes += rs.getLong(2);
+                }
+            }
+        }
+    }
+
+    private void copiarBloque() throws SQLException {
+        int filas = filasEnLote;
+        FuenteFilas filasBloque = new FuenteFilas() {
+            private int siguiente = 0;
+
+            @Override
+            public boolean siguiente(Object[] fila) {
+                if (siguiente >= filas) {
+                    return false;
+                }
+                System.arraycopy(bloque.get(siguiente++), 0, fila, 0, fila.length);
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        // Dentro de la transacción del bloque, que confirma el proceso ETL después del MERGE
+        CargaBulkCopy.cargar(destConn, TABLA_STAGING, columnasBloque, filasBloque, filas, true, false, false);
+    }
+
+    @Override
+    public void alConfirmar() {
+        insertados += insertadosPendientes;
+        actualizados += actualizadosPendientes;
+        insertadosPendientes = 0;
+        actualizadosPendientes = 0;
+    }
+
+    @Override
+    public void alDeshacer() throws SQLException {
+        // El rollback ya deshizo los INSERT en la tabla temporal y el MERGE
+        insertStaging.clearBatch();
+        filasEnLote = 0;
+        insertadosPendientes = 0;
+        actualizadosPendientes = 0;
+    }
+
+    @Override
+    public String resumen() {
+        return "Filas insertadas: " + insertados + ", filas actualizadas: " + actualizados + ".";
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            insertStaging.close();
+            mergeStmt.close();
+        } finally {
+            try (Statement stmt = destConn.createStatement()) {
+                stmt.execute("IF OBJECT_ID('tempdb.." + TABLA_STAGING + "') IS NOT NULL DROP TABLE " + TABLA_STAGING);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package src.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Último valor de la columna clave confirmado en el destino para cada partición de
+ * la extracción. Se escribe de forma atómica después de cada commit, y permite que
+ * {@code --resume} reanude la lectura desde ahí en lugar de empezar desde la fila 0.
+ * En una carga incremental guarda también las marcas de agua entre las que se lee, para
+ * reanudar sobre las mismas filas y no con una marca nueva.
+ *
+ * Requiere que cada partición se lea en orden de la columna clave y que las filas de
+ * una misma partición lleguen a la carga en ese orden (un solo hilo de transformación),
+ * y que la clave sea entera y única en el destino.
+ */
+final class Checkpoint {
+    private final Path archivo;
+    private final String trabajo;
+    private final PlanParticiones plan;
+    private final Long[] confirmado;
+    private final Long[] pendiente;
+    private final Object marcaAnterior;
+    private final Object marcaNueva;
+
+    private Checkpoint(Path archivo, String trabajo, PlanParticiones plan, Long[] confirmado, Object marcaAnterior,
+            Object marcaNueva) {
+        this.archivo = archivo;
+        this.trabajo = trabajo;
+        this.plan = plan;
+        this.confirmado = confirmado;
+        this.pendiente = confirmado.clone();
+        this.marcaAnterior = marcaAnterior;
+        this.marcaNueva = marcaNueva;
+    }
+
+    /**
+     * @param trabajo       huella que identifica la consulta, el destino y el mapeo; un checkpoint
+     *                      de otro trabajo no se usa para reanudar
+     * @param marcaAnterior marca de agua desde la que lee una carga incremental, o null
+     * @param marcaNueva    marca de agua hasta la que lee una carga incremental, o null si no lo es
+     */
+    static Checkpoint nuevo(Path archivo, String trabajo, PlanParticiones plan, Object marcaAnterior,
+            Object marcaNueva) {
+        return new Checkpoint(archivo, trabajo, plan, new Long[plan.cantidad()], marcaAnterior, marcaNueva);
+    }
+
+    /** Devuelve el checkpoint guardado para el trabajo, o null si no existe o es de otro trabajo. */
+    static Checkpoint cargar(Path archivo, String trabajo) throws IOException {
+        if (!Files.exists(archivo)) {
+            return null;
+        }
+        Properties propiedades = new Properties();
+        try (InputStream in = Files.newInputStream(archivo)) {
+            propiedades.load(in);
+        }
+        if (!trabajo.equals(propiedades.getProperty("trabajo"))) {
+            System.out.println("El checkpoint '" + archivo + "' corresponde a otra consulta o mapeo; se ignora.");
+            return null;
+        }
+        PlanParticiones plan = PlanParticiones.cargar(propiedades);
+        Long[] confirmado = new Long[plan.cantidad()];
+        for (int i = 0; i < confirmado.length; i++) {
+            String valor = propiedades.getProperty("confirmado." + i);
+            confirmado[i] = valor == null ? null : Long.valueOf(valor);
+        }
+        String anterior = propiedades.getProperty("marca.anterior");
+        String nueva = propiedades.getProperty("marca.nueva");
+        return new Checkpoint(archivo, trabajo, plan, confirmado,
+                anterior == null ? null : MarcasAgua.desdeTexto(anterior),
+                nueva == null ? null : MarcasAgua.desdeTexto(nueva));
+    }
+
+    PlanParticiones plan() {
+        return plan;
+    }
+
+    /** Marca de agua desde la que lee la carga incremental, o null si es la primera. */
+    Object marcaAnterior() {
+        return marcaAnterior;
+    }
+
+    /** Marca de agua hasta la que lee la carga incremental, o null si la carga no es incremental. */
+    Object marcaNueva() {
+        return marcaNueva;
+    }
+
+    /** Último valor confirmado de la partición, o null si todavía no se confirmó ninguna fila. */
+    Long confirmado(int particion) {
+        return confirmado[particion];
+    }
+
+    /** Registra la clave de una fila enviada al destino y todavía no confirmada. */
+    void registrar(Object clave) {
+        int particion = plan.particionDe(clave);
+        if (particion < 0) {
+            return;
+        }
+        long valor = ((Number) clave).longValue();
+        if (pendiente[particion] == null || valor > pendiente[particion]) {
+            pendiente[particion] = valor;
+        }
+    }
+
+    /** Marca como confirmadas las filas registradas desde el último commit y guarda el archivo. */
+    void confirmar() throws IOException {
+        System.arraycopy(pendiente, 0, confirmado, 0, confirmado.length);
+
+        Properties propiedades = new Properties();
+        propiedades.setProperty("trabajo", trabajo);
+        plan.guardar(propiedades);
+        if (marcaAnterior != null) {
+            propiedades.setProperty("marca.anterior", MarcasAgua.aTexto(marcaAnterior));
+        }
+        if (marcaNueva != null) {
+            propiedades.setProperty("marca.nueva", MarcasAgua.aTexto(marcaNueva));
+        }
+        for (int i = 0; i < confirmado.length; i++) {
+            if (confirmado[i] != null) {
+                propiedades.setProperty("confirmado." + i, confirmado[i].toString());
+            }
+        }
+
+        Files.createDirectories(archivo.toAbsolutePath().getParent());
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporal)) {
+            propiedades.store(out, "Checkpoint de carga");
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Elimina el checkpoint al terminar la carga completa. */
+    void eliminar() throws IOException {
+        Files.deleteIfExists(archivo);
+    }
+}
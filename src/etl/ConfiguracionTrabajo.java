@@ -0,0 +1,171 @@
+package src.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Definición de un trabajo ETL: origen, destino, mapeo, transformaciones y modo de carga.
+ *
+ * En modo interactivo las opciones que quedan en null se preguntan por consola. Un
+ * archivo de trabajo (properties, ver trabajos/ejemplo.properties) define las mismas
+ * opciones para ejecutar sin preguntas; lo que no indica toma su valor por defecto.
+ */
+class ConfiguracionTrabajo {
+    String nombre;
+
+    // Trabajos que deben terminar bien antes de empezar este (por ejemplo, dimensiones antes que hechos)
+    List<String> dependencias = new ArrayList<>();
+
+    // Origen: una consulta o una tabla con sus columnas
+    String consulta;
+    String tablaOrigen;
+    List<String> columnasTablaOrigen;
+    // Condición WHERE sobre el origen; null = todas las filas
+    String filtro;
+
+    String tablaDestino;
+
+    // Columna origen -> columna destino; null = por nombre (o preguntar)
+    Map<String, String> mapeo;
+    // Columna origen -> "lower", "upper", "date:Año", "concat:valor" o "none"; null = ninguna (o preguntar)
+    Map<String, String> transformaciones;
+
+    ModoCarga modoCarga;
+    Boolean conservarHuellas;
+    // Desactivar índices no agrupados y restricciones durante la carga; null = preguntar
+    Boolean desactivarIndices;
+    // Detección de cambios por huella (tablas con PK); null = preguntar
+    Boolean detectarCambios;
+    // Columna BIGINT del destino con la huella de cada fila; null = índice local en el directorio de estado
+    String columnaHuella;
+
+    Integer particiones;
+    String columnaParticion;
+    ExtraccionParticionada.Estrategia estrategiaParticion;
+
+    // Extracción incremental; "" = sin marca de agua
+    String columnaMarca;
+
+    // Checkpoints; "" = sin checkpoint
+    String columnaCheckpoint;
+
+    // Archivo de volcado entre extracción y carga; null = cargar directamente desde el origen
+    String volcado;
+    // Cargar desde el volcado existente del mismo trabajo sin volver a leer el origen
+    boolean reutilizarVolcado;
+
+    ConfiguracionTrabajo(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /** Consulta origen: la indicada o la generada a partir de la tabla y sus columnas. */
+    String consultaOrigen() {
+        if (consulta != null) {
+            return consulta;
+        }
+        return "SELECT " + String.join(", ", columnasTablaOrigen) + " FROM " + tablaOrigen;
+    }
+
+    /**
+     * Identifica las filas que lee el trabajo: la tabla origen o una huella de la consulta,
+     * y una huella del filtro si lo hay. No depende de las columnas elegidas.
+     */
+    String origen() {
+        String origen = consulta != null ? "consulta:" + Integer.toHexString(consulta.hashCode()) : tablaOrigen;
+        return filtro == null ? origen : origen + "[" + Integer.toHexString(filtro.hashCode()) + "]";
+    }
+
+    static ConfiguracionTrabajo desdeArchivo(Path archivo) throws IOException {
+        Properties propiedades = new Properties();
+        try (InputStream in = Files.newInputStream(archivo);
+             Reader lector = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            propiedades.load(lector);
+        }
+
+        String nombreArchivo = archivo.getFileName().toString();
+        ConfiguracionTrabajo trabajo = new ConfiguracionTrabajo(propiedades.getProperty("trabajo.nombre",
+                nombreArchivo.replaceFirst("\\.properties$", "")));
+
+        String dependencias = texto(propiedades, "trabajo.depende");
+        if (dependencias != null) {
+            trabajo.dependencias = lista(dependencias);
+        }
+
+        trabajo.consulta = texto(propiedades, "origen.consulta");
+        trabajo.tablaOrigen = texto(propiedades, "origen.tabla");
+        String columnas = texto(propiedades, "origen.columnas");
+        if (trabajo.consulta == null) {
+            if (trabajo.tablaOrigen == null || columnas == null) {
+                throw new IllegalArgumentException("El trabajo '" + trabajo.nombre
+                        + "' debe indicar origen.consulta u origen.tabla y origen.columnas.");
+            }
+            trabajo.columnasTablaOrigen = lista(columnas);
+        }
+        trabajo.filtro = texto(propiedades, "origen.filtro");
+
+        trabajo.tablaDestino = texto(propiedades, "destino.tabla");
+        if (trabajo.tablaDestino == null) {
+            throw new IllegalArgumentException("El trabajo '" + trabajo.nombre + "' debe indicar destino.tabla.");
+        }
+
+        Map<String, String> mapeo = prefijo(propiedades, "mapeo.");
+        trabajo.mapeo = mapeo.isEmpty() ? null : mapeo;
+        trabajo.transformaciones = prefijo(propiedades, "transformacion.");
+
+        trabajo.modoCarga = ModoCarga.valueOf(propiedades.getProperty("carga.modo", "FILA_A_FILA").trim());
+        trabajo.conservarHuellas = Boolean.parseBoolean(propiedades.getProperty("carga.huellas.conservar", "false").trim());
+        trabajo.desactivarIndices = Boolean.parseBoolean(propiedades.getProperty("carga.indices.desactivar", "false").trim());
+        trabajo.detectarCambios = Boolean.parseBoolean(propiedades.getProperty("carga.cambios", "false").trim());
+        trabajo.columnaHuella = texto(propiedades, "carga.cambios.columna");
+
+        trabajo.particiones = Integer.parseInt(propiedades.getProperty("extraccion.particiones", "1").trim());
+        trabajo.columnaParticion = texto(propiedades, "extraccion.columna");
+        trabajo.estrategiaParticion = ExtraccionParticionada.Estrategia.valueOf(
+                propiedades.getProperty("extraccion.estrategia", "RANGO").trim());
+        if (trabajo.particiones > 1 && trabajo.columnaParticion == null) {
+            throw new IllegalArgumentException("El trabajo '" + trabajo.nombre
+                    + "' indica extraccion.particiones pero no extraccion.columna.");
+        }
+
+        trabajo.columnaMarca = propiedades.getProperty("incremental.columna", "").trim();
+        trabajo.columnaCheckpoint = propiedades.getProperty("checkpoint.columna", "").trim();
+
+        trabajo.volcado = texto(propiedades, "volcado.archivo");
+        trabajo.reutilizarVolcado = Boolean.parseBoolean(propiedades.getProperty("volcado.reutilizar", "false").trim());
+        return trabajo;
+    }
+
+    private static String texto(Properties propiedades, String clave) {
+        String valor = propiedades.getProperty(clave);
+        return valor == null || valor.trim().isEmpty() ? null : valor.trim();
+    }
+
+    private static List<String> lista(String valor) {
+        return Arrays.stream(valor.split(","))
+                .map(String::trim)
+                .filter(columna -> !columna.isEmpty())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static Map<String, String> prefijo(Properties propiedades, String prefijo) {
+        Map<String, String> valores = new LinkedHashMap<>();
+        for (String clave : propiedades.stringPropertyNames()) {
+            if (clave.startsWith(prefijo)) {
+                valores.put(clave.substring(prefijo.length()), propiedades.getProperty(clave).trim());
+            }
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,171 @@
+package src.etl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Conjunto de huellas de 64 bits con direccionamiento abierto sobre un long[].
+ * Ocupa 16 bytes por fila como máximo (factor de carga 0.5) y no crea objetos por
+ * inserción, a diferencia de un HashSet&lt;Long&gt;.
+ *
+ * El archivo guarda, además de las huellas, la firma del trabajo y un marcador del
+ * contenido del destino al guardarlo: si el destino cambió desde entonces no se vuelve a leer.
+ */
+final class ConjuntoHuellas {
+    private static final int MAGICO = 0x45544C34; // "ETL4": con la firma del trabajo y el marcador del destino
+    // El 0 marca una celda vacía, por eso la huella 0 se guarda como 1
+    private static final long VACIO = 0L;
+
+    private long[] tabla;
+    private int tamanio;
+
+    ConjuntoHuellas(int capacidadEsperada) {
+        int capacidad = 16;
+        while (capacidad < capacidadEsperada * 2L) {
+            capacidad <<= 1;
+        }
+        tabla = new long[capacidad];
+    }
+
+    /** Agrega la huella y devuelve false si ya estaba en el conjunto. */
+    boolean agregar(long huella) {
+        if (huella == VACIO) {
+            huella = 1L;
+        }
+        if ((tamanio + 1) * 2 > tabla.length) {
+            redimensionar();
+        }
+        int mascara = tabla.length - 1;
+        int i = posicionInicial(huella, mascara);
+        while (tabla[i] != VACIO) {
+            if (tabla[i] == huella) {
+                return false;
+            }
+            i = (i + 1) & mascara;
+        }
+        tabla[i] = huella;
+        tamanio++;
+        return true;
+    }
+
+    boolean contiene(long huella) {
+        if (huella == VACIO) {
+            huella = 1L;
+        }
+        int mascara = tabla.length - 1;
+        int i = posicionInicial(huella, mascara);
+        while (tabla[i] != VACIO) {
+            if (tabla[i] == huella) {
+                return true;
+            }
+            i = (i + 1) & mascara;
+        }
+        return false;
+    }
+
+    /** Quita la huella del conjunto (borrado con desplazamiento hacia atrás, sin lápidas). */
+    boolean eliminar(long huella) {
+        if (huella == VACIO) {
+            huella = 1L;
+        }
+        int mascara = tabla.length - 1;
+        int i = posicionInicial(huella, mascara);
+        while (tabla[i] != huella) {
+            if (tabla[i] == VACIO) {
+                return false;
+            }
+            i = (i + 1) & mascara;
+        }
+        tabla[i] = VACIO;
+        tamanio--;
+
+        // Reubicar las huellas siguientes del mismo grupo que quedarían inalcanzables
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            if (tabla[j] == VACIO) {
+                return true;
+            }
+            int k = posicionInicial(tabla[j], mascara);
+            boolean enRango = i <= j ? (i < k && k <= j) : (i < k || k <= j);
+            if (!enRango) {
+                tabla[i] = tabla[j];
+                tabla[j] = VACIO;
+                i = j;
+            }
+        }
+    }
+
+    private static int posicionInicial(long huella, int mascara) {
+        return (int) (huella ^ (huella >>> 32)) & mascara;
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    private void redimensionar() {
+        long[] anterior = tabla;
+        tabla = new long[anterior.length << 1];
+        tamanio = 0;
+        for (long huella : anterior) {
+            if (huella != VACIO) {
+                agregar(huella);
+            }
+        }
+    }
+
+    /**
+     * Escribe el conjunto en un archivo temporal y lo mueve de forma atómica sobre el destino.
+     *
+     * @param firma    identifica las columnas y transformaciones que produjeron las huellas
+     * @param marcador describe el contenido del destino al guardar
+     */
+    void guardar(Path archivo, String firma, String marcador) throws IOException {
+        Files.createDirectories(archivo.toAbsolutePath().getParent());
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+            out.writeInt(MAGICO);
+            out.writeUTF(firma);
+            out.writeUTF(marcador);
+            out.writeInt(tamanio);
+            for (long huella : tabla) {
+                if (huella != VACIO) {
+                    out.writeLong(huella);
+                }
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee un conjunto guardado; falla si el archivo es de otro formato o de otra firma, o si
+     * el destino ya no tiene el mismo {@code marcador}.
+     */
+    static ConjuntoHuellas cargar(Path archivo, String firma, String marcador) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("El archivo de huellas '" + archivo + "' no tiene un formato válido.");
+            }
+            if (!in.readUTF().equals(firma)) {
+                throw new IOException("El archivo de huellas '" + archivo + "' es de otro mapeo de columnas "
+                        + "o de otras transformaciones.");
+            }
+            if (!in.readUTF().equals(marcador)) {
+                throw new IOException("el destino cambió desde que se escribió '" + archivo + "'.");
+            }
+            int cantidad = in.readInt();
+            ConjuntoHuellas conjunto = new ConjuntoHuellas(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                conjunto.agregar(in.readLong());
+            }
+            return conjunto;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package src.etl;
+
+import java.math.BigDecimal;
+import java.util.Properties;
+
+/**
+ * Tamaño de lote y frecuencia de commit adaptados a lo que se mide durante la carga.
+ *
+ * Lote: se estima con una media móvil el tiempo de ejecutarLote por fila y se elige el
+ * tamaño que tardaría {@code objetivo} en ejecutarse (lotes grandes con filas angostas,
+ * chicos con filas anchas o un servidor lento), cambiando a lo sumo x2 o /2 por lote y
+ * dentro de [mínimo, máximo].
+ *
+ * Commit: si el commit pesa más del 20 % del tiempo de un lote (vaciado del log lento)
+ * se confirma cada más lotes, hasta {@code lotesPorCommitMaximo}; si pesa menos del 5 %
+ * se vuelve a confirmar más seguido, para retener menos bloqueos y menos filas a reenviar.
+ *
+ * Memoria: las filas sin confirmar (copia para reenviar y parámetros en el driver) no
+ * pueden superar {@code memoriaBytes}; el tamaño de una fila se estima por muestreo.
+ *
+ * Sin adaptación el lote y la frecuencia de commit quedan fijos en sus valores iniciales.
+ */
+final class ControladorLote {
+    // Peso de la medición nueva en las medias móviles
+    private static final double ALFA = 0.3;
+    private static final int MUESTREO_FILAS = 256;
+
+    private final boolean adaptativo;
+    private final int minimo;
+    private final int maximo;
+    private final long objetivoNanos;
+    private final int lotesPorCommitMaximo;
+    private final long memoriaBytes;
+
+    private int tamanio;
+    private int lotesPorCommit;
+    private double nanosPorFila = -1;
+    private double nanosLote = -1;
+    private double nanosCommit = -1;
+    private double bytesPorFila = -1;
+    private long filasVistas;
+
+    // Para el resumen
+    private int tamanioMenor = Integer.MAX_VALUE;
+    private int tamanioMayor;
+    private int lotesPorCommitMayor;
+    private long lotes;
+    private long commits;
+
+    ControladorLote(boolean adaptativo, int inicial, int minimo, int maximo, long objetivoMs,
+            int lotesPorCommitInicial, int lotesPorCommitMaximo, long memoriaMb) {
+        this.adaptativo = adaptativo;
+        this.minimo = Math.max(1, minimo);
+        this.maximo = Math.max(this.minimo, maximo);
+        this.objetivoNanos = objetivoMs * 1_000_000L;
+        this.lotesPorCommitMaximo = Math.max(1, lotesPorCommitMaximo);
+        this.memoriaBytes = memoriaMb * 1024 * 1024;
+        this.tamanio = adaptativo ? Math.min(this.maximo, Math.max(this.minimo, inicial)) : Math.max(1, inicial);
+        this.lotesPorCommit = Math.max(1, adaptativo ? Math.min(lotesPorCommitInicial, this.lotesPorCommitMaximo)
+                : lotesPorCommitInicial);
+        registrarTamanios();
+    }
+
+    static ControladorLote desde(Properties properties) {
+        return new ControladorLote(
+                Boolean.parseBoolean(properties.getProperty("etl.lote.adaptativo", "true")),
+                ETLProcess.entero(properties, "etl.lote.filas", CargaPorLotes.MAX_BATCH_SIZE),
+                ETLProcess.entero(properties, "etl.lote.minimo", 100),
+                ETLProcess.entero(properties, "etl.lote.maximo", 20000),
+                ETLProcess.entero(properties, "etl.lote.objetivo.ms", 250),
+                ETLProcess.entero(properties, "etl.commit.lotes", 1),
+                ETLProcess.entero(properties, "etl.commit.lotes.maximo", 8),
+                ETLProcess.entero(properties, "etl.lote.memoria.mb", 64));
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    int lotesPorCommitMaximo() {
+        return lotesPorCommitMaximo;
+    }
+
+    int lotesPorCommit() {
+        return lotesPorCommit;
+    }
+
+    /** Muestrea el tamaño de las filas que se agregan al lote. */
+    void filaAgregada(Object[] fila) {
+        if (adaptativo && filasVistas++ % MUESTREO_FILAS == 0) {
+            double bytes = estimarBytes(fila);
+            bytesPorFila = bytesPorFila < 0 ? bytes : ALFA * bytes + (1 - ALFA) * bytesPorFila;
+        }
+    }
+
+    /** Como {@link #filaAgregada}, con una fila de muestra por lote columnar. */
+    void loteAgregado(Object[] muestra) {
+        if (adaptativo) {
+            double bytes = estimarBytes(muestra);
+            bytesPorFila = bytesPorFila < 0 ? bytes : ALFA * bytes + (1 - ALFA) * bytesPorFila;
+        }
+    }
+
+    /** true si las filas sin confirmar ya ocupan el presupuesto de memoria. */
+    boolean excedeMemoria(int filasSinConfirmar) {
+        // Copia para reenviar + parámetros retenidos por el driver
+        return adaptativo && bytesPorFila > 0 && filasSinConfirmar * bytesPorFila * 2 >= memoriaBytes;
+    }
+
+    void loteEjecutado(int filas, long nanos) {
+        if (filas == 0) {
+            return;
+        }
+        lotes++;
+        if (!adaptativo) {
+            return;
+        }
+        double porFila = (double) nanos / filas;
+        nanosPorFila = nanosPorFila < 0 ? porFila : ALFA * porFila + (1 - ALFA) * nanosPorFila;
+        nanosLote = nanosLote < 0 ? nanos : ALFA * nanos + (1 - ALFA) * nanosLote;
+
+        long propuesto = (long) (objetivoNanos / Math.max(1, nanosPorFila));
+        propuesto = Math.max(tamanio / 2, Math.min(2L * tamanio, propuesto));
+        if (bytesPorFila > 0) {
+            propuesto = Math.min(propuesto, (long) (memoriaBytes / (2 * bytesPorFila * lotesPorCommit)));
+        }
+        tamanio = (int) Math.max(minimo, Math.min(maximo, propuesto));
+        registrarTamanios();
+    }
+
+    void commitEjecutado(long nanos) {
+        commits++;
+        if (!adaptativo) {
+            return;
+        }
+        nanosCommit = nanosCommit < 0 ? nanos : ALFA * nanos + (1 - ALFA) * nanosCommit;
+        if (nanosLote <= 0) {
+            return;
+        }
+        // Peso del commit frente a los lotes que confirma
+        double fraccion = nanosCommit / (nanosCommit + nanosLote * lotesPorCommit);
+        boolean cabeEnMemoria = bytesPorFila <= 0
+                || (lotesPorCommit + 1) * (double) tamanio * bytesPorFila * 2 < memoriaBytes;
+        if (fraccion > 0.20 && lotesPorCommit < lotesPorCommitMaximo && cabeEnMemoria) {
+            lotesPorCommit++;
+        } else if (fraccion < 0.05 && lotesPorCommit > 1) {
+            lotesPorCommit--;
+        }
+        registrarTamanios();
+    }
+
+    private void registrarTamanios() {
+        tamanioMenor = Math.min(tamanioMenor, tamanio);
+        tamanioMayor = Math.max(tamanioMayor, tamanio);
+        lotesPorCommitMayor = Math.max(lotesPorCommitMayor, lotesPorCommit);
+    }
+
+    String resumen() {
+        if (!adaptativo) {
+            return String.format("Lotes: %d de %d filas, commit cada %d lote(s) (%d commits).",
+                    lotes, tamanio, lotesPorCommit, commits);
+        }
+        return String.format("Lote adaptativo: %d filas al final (entre %d y %d), commit cada %d lote(s) al final "
+                        + "(hasta %d); %d lotes, %d commits, %.1f us por fila, ~%.0f bytes por fila.",
+                tamanio, tamanioMenor, tamanioMayor, lotesPorCommit, lotesPorCommitMayor, lotes, commits,
+                Math.max(0, nanosPorFila) / 1000, Math.max(0, bytesPorFila));
+    }
+
+    /** Tamaño aproximado en memoria de los valores de una fila. */
+    static long estimarBytes(Object[] fila) {
+        long bytes = 16L + 8L * fila.length;
+        for (Object valor : fila) {
+            if (valor instanceof String) {
+                bytes += 40 + 2L * ((String) valor).length();
+            } else if (valor instanceof byte[]) {
+                bytes += 16 + ((byte[]) valor).length;
+            } else if (valor instanceof BigDecimal) {
+                bytes += 64;
+            } else if (valor != null) {
+                bytes += 24;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,124 @@
+package src.etl;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Adaptador de una {@link FuenteFilas} a {@link ISQLServerBulkData}, para que
+ * SQLServerBulkCopy lea las filas transformadas a medida que salen de la fuente
+ * en lugar de cargarlas antes en memoria. Los tipos de cada columna se toman de
+ * la tabla destino, que es contra la que el driver valida los valores.
+ */
+class DatosBulkCopy implements ISQLServerBulkData {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Nombre, tipo, precisión y escala de las columnas destino, leídos una vez y
+     * reutilizados en cada bloque que se copia a la misma tabla.
+     */
+    static final class Columnas implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> nombres;
+        private final int[] tipos;
+        private final int[] precisiones;
+        private final int[] escalas;
+
+        private Columnas(List<String> nombres, int[] tipos, int[] precisiones, int[] escalas) {
+            this.nombres = nombres;
+            this.tipos = tipos;
+            this.precisiones = precisiones;
+            this.escalas = escalas;
+        }
+
+        static Columnas leer(Connection destConn, String tableDestination, List<String> columnasDestino)
+                throws SQLException {
+            int columnas = columnasDestino.size();
+            int[] tipos = new int[columnas];
+            int[] precisiones = new int[columnas];
+            int[] escalas = new int[columnas];
+            try (Statement stmt = destConn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT TOP 0 " + String.join(", ", columnasDestino)
+                         + " FROM " + tableDestination)) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                for (int i = 0; i < columnas; i++) {
+                    tipos[i] = metaData.getColumnType(i + 1);
+                    precisiones[i] = metaData.getPrecision(i + 1);
+                    escalas[i] = metaData.getScale(i + 1);
+                }
+            }
+            return new Columnas(columnasDestino, tipos, precisiones, escalas);
+        }
+
+        List<String> nombres() {
+            return nombres;
+        }
+    }
+
+    private final transient FuenteFilas fuente;
+    private final Columnas columnas;
+    private final Object[] fila;
+    private long filasLeidas = 0;
+
+    DatosBulkCopy(Columnas columnas, FuenteFilas fuente) {
+        this.fuente = fuente;
+        this.columnas = columnas;
+        this.fila = new Object[columnas.nombres.size()];
+    }
+
+    long filasLeidas() {
+        return filasLeidas;
+    }
+
+    @Override
+    public Set<Integer> getColumnOrdinals() {
+        Set<Integer> ordinales = new LinkedHashSet<>();
+        for (int i = 1; i <= columnas.nombres.size(); i++) {
+            ordinales.add(i);
+        }
+        return ordinales;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnas.nombres.get(column - 1);
+    }
+
+    @Override
+    public int getColumnType(int column) {
+        return columnas.tipos[column - 1];
+    }
+
+    @Override
+    public int getPrecision(int column) {
+        return columnas.precisiones[column - 1];
+    }
+
+    @Override
+    public int getScale(int column) {
+        return columnas.escalas[column - 1];
+    }
+
+    @Override
+    public Object[] getRowData() {
+        return fila;
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (!fuente.siguiente(fila)) {
+            return false;
+        }
+        filasLeidas++;
+        return true;
+    }
+}
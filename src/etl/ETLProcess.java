@@ -1,12 +1,58 @@
 package src.etl;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ETLProcess {
     public static void main(String[] args) {
+        List<String> argumentos = Arrays.asList(args);
+        // --resume: reanudar la última carga interrumpida desde su checkpoint
+        boolean reanudar = argumentos.contains("--resume");
+
+        // --restaurar-indices: reconstruir lo que dejaron desactivado cargas interrumpidas;
+        // con --sin-verificar las restricciones se activan sin verificar las filas existentes
+        if (argumentos.contains("--restaurar-indices")) {
+            int fallidos;
+            try {
+                Properties properties = loadProperties();
+                if (argumentos.contains("--sin-verificar")) {
+                    properties.setProperty("etl.indices.verificar", "false");
+                }
+                fallidos = restaurarIndices(properties);
+            } catch (Exception e) {
+                System.out.println("Error al restaurar los índices:");
+                e.printStackTrace();
+                fallidos = 1;
+            }
+            System.exit(fallidos == 0 ? 0 : 1);
+        }
+
+        // --trabajos: ejecución sin preguntas de los archivos de trabajo indicados
+        if (argumentos.contains("--trabajos")) {
+            int fallidos;
+            try {
+                fallidos = EjecutorTrabajos.ejecutar(valoresOpcion(argumentos, "--trabajos"),
+                        Integer.parseInt(valoresOpcion(argumentos, "--paralelo").stream().findFirst().orElse("1")),
+                        loadProperties(), reanudar);
+            } catch (Exception e) {
+                System.out.println("Error en la ejecución del ETL:");
+                e.printStackTrace();
+                fallidos = 1;
+            }
+            System.exit(fallidos == 0 ? 0 : 1);
+        }
+
         Scanner scanner = new Scanner(System.in);
         
         try {
@@ -30,7 +76,8 @@ public class ETLProcess {
                     
                     // Selección de datos origen
                     System.out.println("\n=== CONFIGURACIÓN DE ORIGEN ===");
-                    String query = configurarOrigen(scanner, sourceConnection);
+                    ConfiguracionTrabajo trabajo = new ConfiguracionTrabajo("interactivo");
+                    configurarOrigen(scanner, sourceConnection, trabajo);
                     
                     // Selección de tabla destino
                     System.out.println("\n=== CONFIGURACIÓN DE DESTINO ===");
@@ -38,7 +85,16 @@ public class ETLProcess {
 
                     // Proceso ETL
                     System.out.println("\n=== TRANSFORMACIÓN ===");
-                    extractTransformLoad(sourceConnection, destinationConnection, query, tableDestination, scanner);
+                    ProveedorConexion proveedorOrigen = () -> DriverManager.getConnection(dbUrlOrigen, dbUserOrigen, dbPasswordOrigen);
+                    ProveedorConexion proveedorDestino = () -> DriverManager.getConnection(dbUrlDestino, dbUserDestino, dbPasswordDestino);
+                    trabajo.tablaDestino = tableDestination;
+                    try {
+                        extractTransformLoad(sourceConnection, destinationConnection, proveedorOrigen, proveedorDestino,
+                                trabajo, scanner, properties, reanudar);
+                    } catch (SQLException | IOException e) {
+                        System.out.println("Error en el proceso ETL:");
+                        e.printStackTrace();
+                    }
                 } else {
                     System.out.println("Error al conectar a las bases de datos.");
                 }
@@ -52,6 +108,18 @@ public class ETLProcess {
         }
     }
 
+    /** Valores que siguen a una opción de la línea de comandos, hasta la siguiente opción. */
+    private static List<String> valoresOpcion(List<String> argumentos, String opcion) {
+        List<String> valores = new ArrayList<>();
+        int indice = argumentos.indexOf(opcion);
+        if (indice >= 0) {
+            for (int i = indice + 1; i < argumentos.size() && !argumentos.get(i).startsWith("--"); i++) {
+                valores.add(argumentos.get(i));
+            }
+        }
+        return valores;
+    }
+
     private static Properties loadProperties() throws Exception {
         Properties properties = new Properties();
         try (InputStream input = ETLProcess.class.getClassLoader().getResourceAsStream("config.properties")) {
@@ -60,9 +128,19 @@ public class ETLProcess {
             }
             properties.load(input);
         }
+        CacheMetadatos.configurar(properties, directorioEstado(properties));
         return properties;
     }
 
+    private static Path directorioEstado(Properties properties) {
+        return Paths.get(properties.getProperty("etl.estado.dir", "estado"));
+    }
+
+    static int entero(Properties properties, String clave, int valorPorDefecto) {
+        String valor = properties.getProperty(clave);
+        return valor == null || valor.trim().isEmpty() ? valorPorDefecto : Integer.parseInt(valor.trim());
+    }
+
     private static Connection connectToDatabase(String url, String user, String password) {
         try {
             Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
@@ -74,7 +152,8 @@ public class ETLProcess {
         }
     }
 
-    private static String configurarOrigen(Scanner scanner, Connection connection) throws SQLException {
+    private static void configurarOrigen(Scanner scanner, Connection connection, ConfiguracionTrabajo trabajo)
+            throws SQLException {
         System.out.println("Seleccione el método de extracción:");
         System.out.println("1. Ingresar consulta SQL manualmente");
         System.out.println("2. Seleccionar una tabla de la base de datos");
@@ -83,13 +162,14 @@ public class ETLProcess {
 
         if (opcion == 1) {
             System.out.print("Ingrese la consulta SQL para extraer los datos: ");
-            return scanner.nextLine();
+            trabajo.consulta = scanner.nextLine();
         } else {
-            return seleccionarTablaOrigen(scanner, connection);
+            seleccionarTablaOrigen(scanner, connection, trabajo);
         }
     }
 
-    private static String seleccionarTablaOrigen(Scanner scanner, Connection connection) throws SQLException {
+    private static void seleccionarTablaOrigen(Scanner scanner, Connection connection, ConfiguracionTrabajo trabajo)
+            throws SQLException {
         List<String> tablaNombres = listarTablasDisponibles(connection, "origen");
         
         System.out.print("Ingrese el nombre de la tabla origen: ");
@@ -102,12 +182,9 @@ public class ETLProcess {
         }
 
         System.out.println("\nColumnas disponibles en '" + tablaOrigen + "':");
-        ResultSet columns = connection.getMetaData().getColumns(null, null, tablaOrigen, "%");
-        List<String> columnasDisponibles = new ArrayList<>();
-        while (columns.next()) {
-            String columnName = columns.getString("COLUMN_NAME");
+        List<String> columnasDisponibles = CacheMetadatos.compartida().columnas(connection, tablaOrigen);
+        for (String columnName : columnasDisponibles) {
             System.out.println("- " + columnName);
-            columnasDisponibles.add(columnName);
         }
 
         System.out.print("\nIngrese los nombres de las columnas a exportar (separadas por comas): ");
@@ -121,7 +198,13 @@ public class ETLProcess {
             throw new IllegalArgumentException("No se seleccionaron columnas válidas.");
         }
 
-        return "SELECT " + String.join(", ", columnasValidas) + " FROM " + tablaOrigen;
+        // La consulta se genera después, con las transformaciones que SQL Server puede resolver
+        trabajo.tablaOrigen = tablaOrigen;
+        trabajo.columnasTablaOrigen = columnasValidas;
+
+        System.out.print("Filtro de filas (condición WHERE, vacío = todas): ");
+        String filtro = scanner.nextLine().trim();
+        trabajo.filtro = filtro.isEmpty() ? null : filtro;
     }
 
     private static String seleccionarTablaDestino(Scanner scanner, Connection connection) throws SQLException {
@@ -140,15 +223,11 @@ public class ETLProcess {
     }
 
     private static List<String> listarTablasDisponibles(Connection connection, String tipo) throws SQLException {
-        List<String> tablaNombres = new ArrayList<>();
-        DatabaseMetaData metaData = connection.getMetaData();
-        ResultSet tables = metaData.getTables(null, null, "%", new String[]{"TABLE"});
+        List<String> tablaNombres = CacheMetadatos.compartida().tablas(connection);
         
         System.out.println("\nTablas disponibles en la base de datos " + tipo + ":");
-        while (tables.next()) {
-            String tableName = tables.getString("TABLE_NAME");
+        for (String tableName : tablaNombres) {
             System.out.println("- " + tableName);
-            tablaNombres.add(tableName);
         }
         
         if (tablaNombres.isEmpty()) {
@@ -158,156 +237,601 @@ public class ETLProcess {
         return tablaNombres;
     }
 
-    private static void extractTransformLoad(Connection sourceConn, Connection destConn, String query, 
-    String tableDestination, Scanner scanner) {
-try (Statement stmt = sourceConn.createStatement();
-     ResultSet rs = stmt.executeQuery(query)) {
+    /**
+     * Ejecuta un trabajo. Con {@code scanner} las opciones que el trabajo no define se
+     * preguntan por consola; sin él (trabajos programados) se usan sus valores por defecto.
+     */
+    static void extractTransformLoad(Connection sourceConn, Connection destConn, ProveedorConexion proveedorOrigen,
+            ProveedorConexion proveedorDestino, ConfiguracionTrabajo trabajo, Scanner scanner, Properties properties,
+            boolean reanudar) throws SQLException, IOException {
+        String query = trabajo.consultaOrigen();
+        String tableDestination = trabajo.tablaDestino;
+
+        try (PreparedStatement describir = sourceConn.prepareStatement(query)) {
+
+            // Estructura de la consulta sin ejecutarla, para poder particionarla antes de leer
+            ResultSetMetaData metaData = describir.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            List<String> columnasOrigen = new ArrayList<>();
+
+            // Obtener nombres de columnas origen
+            for (int i = 1; i <= columnCount; i++) {
+                columnasOrigen.add(metaData.getColumnName(i));
+            }
 
-    ResultSetMetaData metaData = rs.getMetaData();
-    int columnCount = metaData.getColumnCount();
-    List<String> columnasOrigen = new ArrayList<>();
+            // Obtener estructura tabla destino
+            List<String> columnasDestino = obtenerColumnasDestino(destConn, tableDestination);
+            List<String> primaryKeys = obtenerClavesPrimarias(destConn, tableDestination);
+
+            // Mapeo de columnas
+            if (trabajo.mapeo == null) {
+                trabajo.mapeo = scanner != null
+                        ? obtenerMapeoColumnas(scanner, columnasOrigen, columnasDestino, primaryKeys)
+                        : mapeoPorNombre(columnasOrigen, columnasDestino, primaryKeys);
+            } else {
+                validarMapeo(trabajo.mapeo, columnasDestino, primaryKeys);
+            }
+            Map<String, String> mapeoColumnas = trabajo.mapeo;
+
+            // Filtrar columnas mapeadas
+            List<String> columnasOrigenMapeadas = new ArrayList<>();
+            List<String> columnasDestinoMapeadas = new ArrayList<>();
+            for (int i = 0; i < columnasOrigen.size(); i++) {
+                if (mapeoColumnas.containsKey(columnasOrigen.get(i))) {
+                    columnasOrigenMapeadas.add(columnasOrigen.get(i));
+                    columnasDestinoMapeadas.add(mapeoColumnas.get(columnasOrigen.get(i)));
+                }
+            }
+            if (columnasOrigenMapeadas.isEmpty()) {
+                throw new IllegalArgumentException("El trabajo '" + trabajo.nombre + "' no mapea ninguna columna.");
+            }
 
-    // Obtener nombres de columnas origen
-    for (int i = 1; i <= columnCount; i++) {
-        columnasOrigen.add(metaData.getColumnName(i));
-    }
+            // Transformaciones
+            if (trabajo.transformaciones == null) {
+                trabajo.transformaciones = scanner != null
+                        ? solicitarTransformaciones(scanner, columnasOrigenMapeadas)
+                        : new HashMap<>();
+            }
+            Map<String, String> transformaciones = trabajo.transformaciones;
 
-    // Obtener estructura tabla destino
-    List<String> columnasDestino = obtenerColumnasDestino(destConn, tableDestination);
-    List<String> primaryKeys = obtenerClavesPrimarias(destConn, tableDestination);
+            // Extracción secuencial o particionada
+            if (trabajo.particiones == null) {
+                solicitarParticiones(scanner, trabajo, columnasOrigen);
+            }
+            int particiones = trabajo.particiones;
+            String columnaParticion = trabajo.columnaParticion;
+            ExtraccionParticionada.Estrategia estrategia = trabajo.estrategiaParticion;
 
-    // Mapeo de columnas
-    Map<String, String> mapeoColumnas = obtenerMapeoColumnas(scanner, columnasOrigen, columnasDestino, primaryKeys);
-    
-    // Filtrar columnas mapeadas
-    List<String> columnasOrigenMapeadas = new ArrayList<>();
-    List<String> columnasDestinoMapeadas = new ArrayList<>();
-    for (int i = 0; i < columnasOrigen.size(); i++) {
-        if (mapeoColumnas.containsKey(columnasOrigen.get(i))) {
-            columnasOrigenMapeadas.add(columnasOrigen.get(i));
-            columnasDestinoMapeadas.add(mapeoColumnas.get(columnasOrigen.get(i)));
-        }
-    }
+            // Extracción incremental: solo las filas posteriores a la última marca confirmada
+            if (trabajo.columnaMarca == null) {
+                trabajo.columnaMarca = solicitarColumnaMarca(scanner, columnasOrigen);
+            }
 
-    // Transformaciones
-    Map<String, String> transformaciones = solicitarTransformaciones(scanner, columnasOrigenMapeadas);
+            // Transformaciones y filtro resueltos por SQL Server en la consulta generada para una tabla
+            Map<String, String> transformacionesJava = transformaciones;
+            if (trabajo.consulta == null
+                    && Boolean.parseBoolean(properties.getProperty("etl.origen.optimizar", "true"))) {
+                // La marca de agua y la partición se calculan sobre los valores originales
+                Set<String> excluidas = new HashSet<>();
+                excluidas.add(trabajo.columnaMarca);
+                if (columnaParticion != null) {
+                    excluidas.add(columnaParticion);
+                }
+                OptimizadorConsulta.Resultado optimizada = OptimizadorConsulta.optimizar(trabajo.tablaOrigen,
+                        trabajo.columnasTablaOrigen, metaData, transformaciones, excluidas, trabajo.filtro);
+                query = optimizada.consulta;
+                transformacionesJava = optimizada.transformaciones;
+                if (!optimizada.resueltas.isEmpty()) {
+                    System.out.println("Transformaciones resueltas en la consulta origen: "
+                            + String.join(", ", optimizada.resueltas));
+                }
+            } else if (trabajo.filtro != null) {
+                query = trabajo.consulta == null
+                        ? trabajo.consultaOrigen() + " WHERE " + trabajo.filtro
+                        : OptimizadorConsulta.filtrar(query, trabajo.filtro);
+            }
+            String consultaOriginal = query;
+
+            // Volcado intermedio: la extracción escribe un archivo y la carga lo lee después
+            Path archivoVolcado = trabajo.volcado == null ? null : Paths.get(trabajo.volcado);
+            String huellaVolcado = Integer.toHexString((consultaOriginal + "|" + tableDestination + "|"
+                    + trabajo.columnaMarca + "|" + columnasOrigenMapeadas + "|" + transformaciones).hashCode());
+            ArchivoVolcado.Cabecera volcado = null;
+            if (archivoVolcado != null && trabajo.reutilizarVolcado && Files.exists(archivoVolcado)) {
+                try {
+                    volcado = ArchivoVolcado.leerCabecera(archivoVolcado);
+                    if (!volcado.huella.equals(huellaVolcado)) {
+                        System.out.println("El volcado '" + archivoVolcado + "' es de otra definición del trabajo; "
+                                + "se vuelve a extraer.");
+                        volcado = null;
+                    }
+                } catch (IOException e) {
+                    System.out.println("No se puede reutilizar el volcado (" + e.getMessage() + "); se vuelve a extraer.");
+                }
+            }
 
-    // Construir consulta SQL adecuada
-    String sql;
-    int totalParametros;
-    if (!primaryKeys.isEmpty()) {
-        sql = construirUpsertSQL(tableDestination, columnasOrigenMapeadas, columnasDestinoMapeadas, primaryKeys);
-        // Parámetros: valores para UPDATE + valores para WHERE (PKs) + valores para INSERT (si es necesario)
-        totalParametros = (columnasDestinoMapeadas.size() - primaryKeys.size()) + primaryKeys.size() + columnasDestinoMapeadas.size();
-    } else {
-        sql = construirInsertConVerificacion(tableDestination, columnasDestinoMapeadas);
-        // Parámetros: valores para WHERE + valores para INSERT
-        totalParametros = columnasDestinoMapeadas.size() * 2;
-    }
+            // Archivos de estado (checkpoint, huellas, índice de cambios, índices desactivados) del trabajo
+            String nombreEstado = nombreEstado(destConn, tableDestination, trabajo);
+
+            MarcasAgua marcas = null;
+            String claveMarca = null;
+            Object marcaAnterior = null;
+            Object marcaNueva = null;
+            if (!trabajo.columnaMarca.isEmpty() && volcado != null) {
+                // La marca guardada en el volcado avanza cuando su carga termina
+                marcas = MarcasAgua.de(directorioEstado(properties).resolve("marcas.properties"));
+                claveMarca = claveMarca(trabajo, tableDestination);
+                marcaNueva = volcado.marca;
+            } else if (!trabajo.columnaMarca.isEmpty()) {
+                String columnaMarca = trabajo.columnaMarca;
+                marcas = MarcasAgua.de(directorioEstado(properties).resolve("marcas.properties"));
+                claveMarca = claveMarca(trabajo, tableDestination);
+                marcaAnterior = marcas.obtener(claveMarca);
+                String desde = marcaAnterior == null ? null : "q." + columnaMarca + " > " + MarcasAgua.literalSQL(marcaAnterior);
+
+                // El límite superior se fija antes de leer: lo que cambie durante la carga entra en la próxima
+                try (Statement stmt = sourceConn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT MAX(q." + columnaMarca + ") FROM (" + query + ") AS q"
+                             + (desde == null ? "" : " WHERE " + desde))) {
+                    rs.next();
+                    marcaNueva = rs.getObject(1);
+                }
+                if (marcaNueva == null) {
+                    System.out.println("No hay filas nuevas desde la última marca de agua (" + claveMarca + ").");
+                    return;
+                }
 
-    try (PreparedStatement pstmt = destConn.prepareStatement(sql)) {
-        int batchSize = 0;
-        final int MAX_BATCH_SIZE = 1000;
-        destConn.setAutoCommit(false);
+                query = consultaIncremental(consultaOriginal, columnaMarca, marcaAnterior, marcaNueva);
+                System.out.println(marcaAnterior == null
+                        ? "Primera carga incremental: se leerá hasta la marca actual."
+                        : "Carga incremental desde la marca guardada.");
+            }
 
-        try {
-            while (rs.next()) {
-                int paramIndex = 1;
-                Object[] valores = new Object[totalParametros];
-                int valoresIndex = 0;
-
-                // Obtener y transformar todos los valores primero
-                for (String columnaOrigen : columnasOrigenMapeadas) {
-                    valores[valoresIndex++] = aplicarTransformacion(rs.getObject(columnaOrigen), 
-                            transformaciones.get(columnaOrigen));
+            // Modo de carga
+            if (trabajo.modoCarga == null) {
+                trabajo.modoCarga = seleccionarModoCarga(scanner, primaryKeys);
+            }
+            ModoCarga modoCarga = trabajo.modoCarga;
+            if (modoCarga == ModoCarga.DEDUPLICADO && !primaryKeys.isEmpty()) {
+                throw new IllegalArgumentException("El modo DEDUPLICADO es solo para tablas destino sin PK.");
+            }
+            if (modoCarga == ModoCarga.DEDUPLICADO && trabajo.conservarHuellas == null) {
+                System.out.print("¿Conservar las huellas para la próxima ejecución? (s/n): ");
+                trabajo.conservarHuellas = scanner.nextLine().trim().equalsIgnoreCase("s");
+            }
+            // Las huellas dependen de qué columnas se cargan y de cómo se transforman
+            String firmaHuellas = Integer.toHexString((tableDestination + "|" + columnasOrigenMapeadas + "|"
+                    + columnasDestinoMapeadas + "|" + new TreeMap<>(transformaciones)).hashCode());
+            CargadorDeduplicado.Huellas huellas = null;
+            if (modoCarga == ModoCarga.DEDUPLICADO) {
+                huellas = CargadorDeduplicado.Huellas.leer(destConn, tableDestination, columnasDestinoMapeadas,
+                        Boolean.TRUE.equals(trabajo.conservarHuellas)
+                                ? directorioEstado(properties).resolve(nombreEstado + ".huellas")
+                                : null,
+                        firmaHuellas);
+            }
+
+            // Detección de cambios: solo se envían las filas nuevas o modificadas
+            boolean admiteCambios = !primaryKeys.isEmpty()
+                    && (modoCarga == ModoCarga.FILA_A_FILA || modoCarga == ModoCarga.STAGING);
+            if (trabajo.detectarCambios == null) {
+                trabajo.detectarCambios = false;
+                if (scanner != null && admiteCambios) {
+                    System.out.print("¿Enviar solo las filas nuevas o modificadas (detección de cambios)? (s/n): ");
+                    trabajo.detectarCambios = scanner.nextLine().trim().equalsIgnoreCase("s");
                 }
+            }
+            // Índices no agrupados y restricciones desactivados durante la carga
+            if (trabajo.desactivarIndices == null) {
+                trabajo.desactivarIndices = false;
+                if (scanner != null) {
+                    System.out.print("¿Desactivar índices no agrupados y restricciones durante la carga? (s/n): ");
+                    trabajo.desactivarIndices = scanner.nextLine().trim().equalsIgnoreCase("s");
+                }
+            }
+            CargadorCambios.Indice cambios = null;
+            if (trabajo.detectarCambios) {
+                if (!admiteCambios) {
+                    throw new IllegalArgumentException("La detección de cambios requiere una tabla destino con PK "
+                            + "y el modo FILA_A_FILA o STAGING.");
+                }
+                cambios = CargadorCambios.Indice.leer(destConn, tableDestination, columnasDestinoMapeadas, primaryKeys,
+                        trabajo.columnaHuella, directorioEstado(properties).resolve(nombreEstado + ".cambios"),
+                        firmaHuellas);
+            }
 
-                // Lógica para establecer parámetros según el tipo de consulta
-                if (!primaryKeys.isEmpty()) {
-                    // Consulta UPSERT (UPDATE + INSERT)
-                    
-                    // 1. Parámetros para UPDATE (todos menos PKs)
-                    for (int i = 0; i < columnasDestinoMapeadas.size(); i++) {
-                        if (!primaryKeys.contains(columnasDestinoMapeadas.get(i))) {
-                            pstmt.setObject(paramIndex++, valores[i]);
-                        }
+            // Checkpoints: permiten reanudar con --resume desde la última clave confirmada
+            Checkpoint checkpoint = null;
+            int indiceClave = -1;
+            if (modoCarga == ModoCarga.BULK_COPY) {
+                if (reanudar) {
+                    System.out.println("El modo bulk copy no guarda checkpoints; la carga empieza desde el principio.");
+                }
+            } else if (archivoVolcado != null) {
+                if (reanudar) {
+                    System.out.println("Con volcado no se guardan checkpoints; para repetir la carga sin leer el origen "
+                            + "use volcado.reutilizar.");
+                }
+            } else {
+                if (trabajo.columnaCheckpoint == null) {
+                    trabajo.columnaCheckpoint = solicitarColumnaCheckpoint(scanner, columnaParticion, reanudar);
+                }
+                String columnaClave = trabajo.columnaCheckpoint;
+                indiceClave = columnasOrigenMapeadas.indexOf(columnaClave);
+                if (columnaClave.isEmpty()) {
+                    if (reanudar) {
+                        System.out.println("El trabajo no guarda checkpoints; la carga empieza desde el principio.");
                     }
-                    
-                    // 2. Parámetros para WHERE (solo PKs)
-                    for (String pk : primaryKeys) {
-                        int index = columnasDestinoMapeadas.indexOf(pk);
-                        pstmt.setObject(paramIndex++, valores[index]);
+                } else if (indiceClave < 0 || !"none".equals(transformaciones.getOrDefault(columnaClave, "none"))) {
+                    System.out.println("La columna '" + columnaClave + "' no está mapeada o tiene una transformación: "
+                            + "no se guardarán checkpoints.");
+                } else if (particiones > 1 && !columnaClave.equals(columnaParticion)) {
+                    throw new IllegalArgumentException("Con extracción particionada la columna de checkpoint debe ser "
+                            + "la columna de partición ('" + columnaParticion + "').");
+                } else {
+                    validarColumnaCheckpoint(destConn, tableDestination, columnaClave,
+                            columnasDestinoMapeadas.get(indiceClave), primaryKeys,
+                            metaData.getColumnType(columnasOrigen.indexOf(columnaClave) + 1));
+                    Path archivoCheckpoint = directorioEstado(properties).resolve(nombreEstado + ".checkpoint");
+                    String huellaTrabajo = Integer.toHexString((consultaOriginal + "|" + tableDestination + "|"
+                            + columnaClave + "|" + trabajo.columnaMarca + "|" + columnasOrigenMapeadas + "|"
+                            + columnasDestinoMapeadas).hashCode());
+                    if (reanudar) {
+                        checkpoint = Checkpoint.cargar(archivoCheckpoint, huellaTrabajo);
+                        System.out.println(checkpoint == null
+                                ? "No hay checkpoint para reanudar; la carga empieza desde el principio."
+                                : "Reanudando desde el checkpoint '" + archivoCheckpoint + "'.");
                     }
-                    
-                    // 3. Parámetros para INSERT (todos)
-                    for (int i = 0; i < columnasDestinoMapeadas.size(); i++) {
-                        pstmt.setObject(paramIndex++, valores[i]);
+                    if (checkpoint != null && marcas != null) {
+                        // Se reanuda entre las mismas marcas: con una marca nueva, las filas hasta la
+                        // clave confirmada que cambiaron después de la caída quedarían atrás
+                        marcaAnterior = checkpoint.marcaAnterior();
+                        marcaNueva = checkpoint.marcaNueva();
+                        query = consultaIncremental(consultaOriginal, trabajo.columnaMarca, marcaAnterior, marcaNueva);
                     }
-                } else {
-                    // Consulta INSERT con verificación
-                    
-                    // 1. Parámetros para WHERE (todos)
-                    for (int i = 0; i < columnasDestinoMapeadas.size(); i++) {
-                        pstmt.setObject(paramIndex++, valores[i]);
+                    if (checkpoint == null) {
+                        PlanParticiones plan = particiones > 1
+                                ? PlanParticiones.calcular(sourceConn, query, columnaClave, particiones, estrategia)
+                                : PlanParticiones.unica(columnaClave);
+                        checkpoint = Checkpoint.nuevo(archivoCheckpoint, huellaTrabajo, plan, marcaAnterior, marcaNueva);
                     }
-                    
-                    // 2. Parámetros para INSERT (todos)
-                    for (int i = 0; i < columnasDestinoMapeadas.size(); i++) {
-                        pstmt.setObject(paramIndex++, valores[i]);
+                }
+            }
+
+            // Una consulta por partición; con checkpoint cada una se lee en orden de la clave
+            FuenteFilas lectura = null;
+            if (volcado == null) {
+                List<String> consultas = new ArrayList<>();
+                PlanParticiones plan = checkpoint != null ? checkpoint.plan()
+                        : particiones > 1 ? PlanParticiones.calcular(sourceConn, query, columnaParticion, particiones, estrategia)
+                        : null;
+                if (plan == null) {
+                    consultas.add(query);
+                } else {
+                    for (int i = 0; i < plan.cantidad(); i++) {
+                        consultas.add(plan.consulta(query, i, checkpoint == null ? null : checkpoint.confirmado(i),
+                                checkpoint != null));
                     }
                 }
+                if (consultas.size() > 1) {
+                    System.out.println("Extracción particionada en " + consultas.size() + " lectores por '" + plan.columna() + "'.");
+                    lectura = new ExtraccionParticionada(proveedorOrigen, consultas, columnasOrigenMapeadas,
+                            entero(properties, "etl.cola.capacidad", 10000), entero(properties, "etl.origen.fetch", 1000));
+                } else {
+                    lectura = new FuenteResultSet(sourceConn, consultas.get(0), columnasOrigenMapeadas,
+                            entero(properties, "etl.origen.fetch", 1000));
+                }
+            }
 
-                pstmt.addBatch();
-                batchSize++;
-                
-                if (batchSize % MAX_BATCH_SIZE == 0) {
-                    pstmt.executeBatch();
-                    destConn.commit();
-                    System.out.println("Procesados " + batchSize + " registros...");
+            // Métricas por etapa: JMX y una línea "METRICAS clave=valor" periódica
+            MetricasETL metricas = new MetricasETL(trabajo.nombre);
+            metricas.columnas(columnasOrigenMapeadas);
+            if (lectura instanceof ExtraccionParticionada) {
+                metricas.cola("particiones", ((ExtraccionParticionada) lectura)::enCola);
+            }
+            metricas.iniciar(Boolean.parseBoolean(properties.getProperty("etl.metricas.jmx", "true")),
+                    entero(properties, "etl.metricas.intervalo.s", 10));
+
+            TransformacionFila transformacion = TransformacionFila.compilar(transformacionesJava, columnasOrigenMapeadas)
+                    .medir(metricas);
+            // Con checkpoint las filas de cada partición deben llegar a la carga en orden
+            int transformadores = checkpoint != null ? 1 : entero(properties, "etl.pipeline.transformadores", 1);
+            // Lotes columnares: lectura de un solo cursor, carga con sentencias preparadas y
+            // transformaciones restantes solo sobre columnas que no son numéricas
+            boolean columnar = lectura instanceof FuenteResultSet && modoCarga != ModoCarga.BULK_COPY
+                    && Boolean.parseBoolean(properties.getProperty("etl.lote.columnar", "true"))
+                    && transformacion.admiteLote(((FuenteResultSet) lectura).lector().tipos());
+            try {
+                if (archivoVolcado == null && columnar) {
+                    System.out.println("Lectura y carga por lotes columnares.");
+                    GestorIndices indices = desactivarIndices(trabajo, destConn, proveedorDestino, tableDestination,
+                            nombreEstado, properties);
+                    try {
+                        cargarLotes((FuenteResultSet) lectura, transformacion, destConn, proveedorDestino, modoCarga,
+                                tableDestination, columnasDestinoMapeadas, primaryKeys, huellas, cambios,
+                                checkpoint, indiceClave, properties, metricas);
+                    } catch (Exception e) {
+                        restaurarIndices(indices, e);
+                        throw e;
+                    }
+                    restaurarIndices(indices, null);
+                } else if (archivoVolcado == null) {
+                    GestorIndices indices = desactivarIndices(trabajo, destConn, proveedorDestino, tableDestination,
+                            nombreEstado, properties);
+                    try (FuenteFilas fuente = new PipelineETL(lectura, transformacion, columnasOrigenMapeadas.size(),
+                            entero(properties, "etl.pipeline.profundidad", 4096), transformadores, metricas)) {
+                        cargar(fuente, destConn, proveedorDestino, modoCarga, tableDestination, columnasDestinoMapeadas,
+                                primaryKeys, huellas, cambios, checkpoint, indiceClave, properties, metricas);
+                    } catch (Exception e) {
+                        restaurarIndices(indices, e);
+                        throw e;
+                    }
+                    restaurarIndices(indices, null);
+                } else {
+                    if (volcado == null) {
+                        long filas;
+                        try (FuenteFilas fuente = new PipelineETL(lectura, transformacion, columnasOrigenMapeadas.size(),
+                                entero(properties, "etl.pipeline.profundidad", 4096), transformadores, metricas)) {
+                            filas = ArchivoVolcado.escribir(archivoVolcado, huellaVolcado, columnasOrigenMapeadas,
+                                    marcaNueva, fuente, entero(properties, "etl.volcado.bloque.filas", 16384));
+                        }
+                        System.out.println("Extracción terminada: " + filas + " filas en el volcado '" + archivoVolcado
+                                + "' (" + Files.size(archivoVolcado) / 1024 + " KB). Origen liberado.");
+                        volcado = ArchivoVolcado.leerCabecera(archivoVolcado);
+                    } else {
+                        System.out.println("Carga desde el volcado existente '" + archivoVolcado + "' (" + volcado.filas()
+                                + " filas), sin leer el origen.");
+                    }
+                    // Con volcado los índices se desactivan recién para la carga, con el origen ya liberado
+                    GestorIndices indices = desactivarIndices(trabajo, destConn, proveedorDestino, tableDestination,
+                            nombreEstado, properties);
+                    try {
+                        cargarVolcado(archivoVolcado, volcado, destConn, proveedorDestino, modoCarga, tableDestination,
+                                columnasDestinoMapeadas, primaryKeys, huellas, cambios, properties, metricas);
+                    } catch (Exception e) {
+                        restaurarIndices(indices, e);
+                        throw e;
+                    }
+                    restaurarIndices(indices, null);
                 }
+            } catch (SQLException | IOException | RuntimeException e) {
+                metricas.errores.increment();
+                throw e;
+            } finally {
+                metricas.detener();
             }
-            
-            if (batchSize % MAX_BATCH_SIZE != 0) {
-                pstmt.executeBatch();
-                destConn.commit();
+
+            // La marca solo avanza después de que la carga se confirmó completa
+            if (marcas != null) {
+                marcas.guardar(claveMarca, marcaNueva);
+                System.out.println("Marca de agua actualizada para " + claveMarca + ".");
+            }
+        }
+    }
+
+    /**
+     * Nombre base de los archivos de estado de un trabajo: la tabla destino como esquema.tabla
+     * según SQL Server ("T" y "dbo.T" son la misma) y una huella del nombre y el origen del
+     * trabajo, para que dos trabajos que cargan la misma tabla no compartan checkpoint ni estado.
+     */
+    private static String nombreEstado(Connection destConn, String tableDestination, ConfiguracionTrabajo trabajo) {
+        String tabla = tableDestination;
+        try (PreparedStatement stmt = destConn.prepareStatement(
+                "SELECT OBJECT_SCHEMA_NAME(OBJECT_ID(?)), OBJECT_NAME(OBJECT_ID(?))")) {
+            stmt.setString(1, tableDestination);
+            stmt.setString(2, tableDestination);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getString(1) != null) {
+                    tabla = rs.getString(1) + "." + rs.getString(2);
+                }
             }
-            
-            System.out.println("\nProceso ETL completado con éxito. Datos cargados en '" + tableDestination + "'");
         } catch (SQLException e) {
-            destConn.rollback();
-            throw e;
-        } finally {
-            destConn.setAutoCommit(true);
+            // Sin el catálogo se usa el nombre tal como lo indica el trabajo
         }
+        return tabla.replaceAll("[^\\w.-]", "_") + "."
+                + Integer.toHexString((trabajo.nombre + "|" + trabajo.origen()).hashCode());
     }
-} catch (SQLException e) {
-    System.out.println("Error en el proceso ETL:");
-    e.printStackTrace();
-}
-}
 
+    /**
+     * Clave de la marca de agua: el destino, el origen y la columna de marca. Dos trabajos que
+     * cargan orígenes distintos en el mismo destino tienen cada uno su marca.
+     */
+    private static String claveMarca(ConfiguracionTrabajo trabajo, String tableDestination) {
+        return tableDestination + "<-" + trabajo.origen() + ":" + trabajo.columnaMarca;
+    }
 
-    private static List<String> obtenerClavesPrimarias(Connection conn, String tableName) throws SQLException {
-        List<String> primaryKeys = new ArrayList<>();
-        DatabaseMetaData metaData = conn.getMetaData();
-        
-        try (ResultSet rs = metaData.getPrimaryKeys(null, null, tableName)) {
-            while (rs.next()) {
-                primaryKeys.add(rs.getString("COLUMN_NAME"));
+    /** Filas de la consulta con la columna de marca posterior a {@code anterior} (si la hay) y hasta {@code nueva}. */
+    private static String consultaIncremental(String consulta, String columnaMarca, Object anterior, Object nueva) {
+        return "SELECT * FROM (" + consulta + ") AS q WHERE "
+                + (anterior == null ? "" : "q." + columnaMarca + " > " + MarcasAgua.literalSQL(anterior) + " AND ")
+                + "q." + columnaMarca + " <= " + MarcasAgua.literalSQL(nueva);
+    }
+
+    /** Desactiva los índices y restricciones de la tabla destino si el trabajo lo pide; si no, devuelve null. */
+    private static GestorIndices desactivarIndices(ConfiguracionTrabajo trabajo, Connection destConn,
+            ProveedorConexion proveedorDestino, String tableDestination, String nombreEstado, Properties properties)
+            throws SQLException, IOException {
+        if (!trabajo.desactivarIndices) {
+            return null;
+        }
+        return GestorIndices.desactivar(destConn, proveedorDestino, tableDestination,
+                directorioEstado(properties).resolve(nombreEstado + ".indices"), properties);
+    }
+
+    /**
+     * Reconstruye los índices y restricciones desactivados para la carga. Si la carga falló con
+     * {@code error}, un fallo de la reconstrucción (una restricción que las filas no cumplen)
+     * se agrega como suprimido para que se informe el error original.
+     */
+    private static void restaurarIndices(GestorIndices indices, Exception error) throws SQLException {
+        if (indices == null) {
+            return;
+        }
+        try {
+            indices.close();
+        } catch (SQLException | RuntimeException e) {
+            if (error == null) {
+                throw e;
             }
+            error.addSuppressed(e);
         }
-        return primaryKeys;
     }
 
-    private static List<String> obtenerColumnasDestino(Connection destConn, String tableDestination) throws SQLException {
-        List<String> columnasDestino = new ArrayList<>();
-        DatabaseMetaData metaData = destConn.getMetaData();
-        try (ResultSet columns = metaData.getColumns(null, null, tableDestination, "%")) {
-            while (columns.next()) {
-                columnasDestino.add(columns.getString("COLUMN_NAME"));
+    /** Restaura los índices y restricciones que dejaron desactivados cargas interrumpidas; devuelve los fallidos. */
+    private static int restaurarIndices(Properties properties) throws IOException {
+        Path estado = directorioEstado(properties);
+        List<Path> registros = new ArrayList<>();
+        if (Files.isDirectory(estado)) {
+            try (Stream<Path> archivos = Files.list(estado)) {
+                archivos.filter(archivo -> archivo.getFileName().toString().endsWith(".indices")).forEach(registros::add);
+            }
+        }
+        if (registros.isEmpty()) {
+            System.out.println("No hay índices desactivados por cargas interrumpidas.");
+            return 0;
+        }
+        int fallidos = 0;
+        try (Connection destConn = connectToDatabase(properties.getProperty("db.destino.url"),
+                properties.getProperty("db.destino.user"), properties.getProperty("db.destino.password"))) {
+            if (destConn == null) {
+                return registros.size();
+            }
+            for (Path registro : registros) {
+                try {
+                    GestorIndices.restaurar(destConn, registro, properties);
+                } catch (SQLException | IOException e) {
+                    System.out.println("No se pudo restaurar '" + registro + "': " + e.getMessage());
+                    fallidos++;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error al cerrar la conexión al destino: " + e.getMessage());
+        }
+        return fallidos;
+    }
+
+    /** Carga las filas de la fuente en la tabla destino según el modo de carga. */
+    private static void cargar(FuenteFilas fuente, Connection destConn, ProveedorConexion proveedorDestino,
+            ModoCarga modoCarga, String tableDestination, List<String> columnasDestinoMapeadas, List<String> primaryKeys,
+            CargadorDeduplicado.Huellas huellas, CargadorCambios.Indice cambios, Checkpoint checkpoint,
+            int indiceClave, Properties properties, MetricasETL metricas) throws SQLException {
+        if (modoCarga == ModoCarga.BULK_COPY) {
+            // Cada lote del bulk copy se confirma en su propia transacción
+            long filas = CargaBulkCopy.cargar(destConn, tableDestination,
+                    DatosBulkCopy.Columnas.leer(destConn, tableDestination, columnasDestinoMapeadas), fuente,
+                    entero(properties, "etl.bulk.lote", 10000),
+                    Boolean.parseBoolean(properties.getProperty("etl.bulk.bloqueoTabla", "true")), true, true);
+            metricas.filasCargadas.add(filas);
+            System.out.println("\nProceso ETL completado con éxito. Datos cargados en '" + tableDestination + "'");
+            System.out.println("Filas copiadas con bulk copy: " + filas + ".");
+        } else {
+            crearCarga(destConn, proveedorDestino, modoCarga, tableDestination, columnasDestinoMapeadas, primaryKeys,
+                    huellas, cambios, checkpoint, indiceClave, ControladorLote.desde(properties), properties,
+                    metricas).cargar(fuente, columnasDestinoMapeadas.size(), tableDestination);
+        }
+    }
+
+    /**
+     * Lee, transforma y carga por lotes columnares ({@link PipelineColumnar}): los valores
+     * numéricos pasan del ResultSet a los parámetros sin crear un objeto por valor.
+     */
+    private static void cargarLotes(FuenteResultSet lectura, TransformacionFila transformacion, Connection destConn,
+            ProveedorConexion proveedorDestino, ModoCarga modoCarga, String tableDestination,
+            List<String> columnasDestinoMapeadas, List<String> primaryKeys, CargadorDeduplicado.Huellas huellas,
+            CargadorCambios.Indice cambios, Checkpoint checkpoint, int indiceClave, Properties properties,
+            MetricasETL metricas) throws SQLException {
+        ControladorLote controlador = ControladorLote.desde(properties);
+        // La carga retiene los lotes de un commit; el lector necesita uno libre más el que está llenando
+        int lotes = Math.max(controlador.lotesPorCommit(), controlador.lotesPorCommitMaximo()) + 2;
+        try (PipelineColumnar fuente = new PipelineColumnar(lectura, transformacion, lotes, controlador.tamanio(),
+                metricas)) {
+            crearCarga(destConn, proveedorDestino, modoCarga, tableDestination, columnasDestinoMapeadas, primaryKeys,
+                    huellas, cambios, checkpoint, indiceClave, controlador, properties, metricas)
+                    .cargar(fuente, tableDestination);
+        }
+    }
+
+    private static CargaPorLotes crearCarga(Connection destConn, ProveedorConexion proveedorDestino,
+            ModoCarga modoCarga, String tableDestination, List<String> columnasDestinoMapeadas, List<String> primaryKeys,
+            CargadorDeduplicado.Huellas huellas, CargadorCambios.Indice cambios, Checkpoint checkpoint,
+            int indiceClave, ControladorLote controlador, Properties properties, MetricasETL metricas) {
+        boolean stagingConBulkCopy = Boolean.parseBoolean(properties.getProperty("etl.staging.bulk", "false"));
+        return new CargaPorLotes(destConn, proveedorDestino,
+                conn -> {
+                    Cargador cargador = crearCargador(modoCarga, conn, tableDestination,
+                            cambios == null ? columnasDestinoMapeadas : cambios.columnasCarga(), primaryKeys,
+                            huellas, stagingConBulkCopy);
+                    return cambios == null ? cargador : new CargadorCambios(cargador, cambios, conn);
+                },
+                controlador,
+                checkpoint, indiceClave, entero(properties, "etl.reintentos.maximo", 5),
+                entero(properties, "etl.reintentos.espera.ms", 500), metricas);
+    }
+
+    /**
+     * Carga un archivo de volcado. Con etl.volcado.cargadores mayor que 1 el archivo se
+     * divide en partes que se cargan en paralelo, cada una con su propia conexión.
+     */
+    private static void cargarVolcado(Path archivoVolcado, ArchivoVolcado.Cabecera volcado, Connection destConn,
+            ProveedorConexion proveedorDestino, ModoCarga modoCarga, String tableDestination,
+            List<String> columnasDestinoMapeadas, List<String> primaryKeys, CargadorDeduplicado.Huellas huellas,
+            CargadorCambios.Indice cambios, Properties properties, MetricasETL metricas) throws SQLException, IOException {
+        // Las huellas del modo deduplicado y las de detección de cambios son de un único cargador
+        int cargadores = modoCarga == ModoCarga.DEDUPLICADO || cambios != null ? 1
+                : entero(properties, "etl.volcado.cargadores", 1);
+        List<FuenteFilas> partes = ArchivoVolcado.partes(archivoVolcado, volcado, cargadores);
+        if (partes.size() == 1) {
+            try (FuenteFilas parte = partes.get(0)) {
+                cargar(parte, destConn, proveedorDestino, modoCarga, tableDestination, columnasDestinoMapeadas,
+                        primaryKeys, huellas, cambios, null, -1, properties, metricas);
             }
+            return;
         }
-        return columnasDestino;
+
+        System.out.println("Carga del volcado en " + partes.size() + " partes en paralelo.");
+        ExecutorService ejecutor = Executors.newFixedThreadPool(partes.size());
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (FuenteFilas parte : partes) {
+                tareas.add(ejecutor.submit(() -> {
+                    try (Connection conn = proveedorDestino.obtener(); FuenteFilas fuente = parte) {
+                        cargar(fuente, conn, proveedorDestino, modoCarga, tableDestination, columnasDestinoMapeadas,
+                                primaryKeys, huellas, cambios, null, -1, properties, metricas);
+                    }
+                    return null;
+                }));
+            }
+            Exception error = null;
+            for (Future<?> tarea : tareas) {
+                try {
+                    tarea.get();
+                } catch (ExecutionException e) {
+                    if (error == null && e.getCause() instanceof Exception) {
+                        error = (Exception) e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Carga del volcado interrumpida", e);
+                }
+            }
+            if (error instanceof SQLException) {
+                throw (SQLException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw new SQLException("Error en una parte de la carga del volcado", error);
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    private static List<String> obtenerClavesPrimarias(Connection conn, String tableName) throws SQLException {
+        return CacheMetadatos.compartida().clavesPrimarias(conn, tableName);
+    }
+
+    private static List<String> obtenerColumnasDestino(Connection destConn, String tableDestination) throws SQLException {
+        return CacheMetadatos.compartida().columnas(destConn, tableDestination);
     }
 
     private static Map<String, String> obtenerMapeoColumnas(Scanner scanner, List<String> columnasOrigen, 
@@ -344,6 +868,35 @@ if (!primaryKeys.isEmpty()) {
 return mapeo;
 }
 
+    /** Mapeo sin preguntas: cada columna origen a la columna destino del mismo nombre. */
+    private static Map<String, String> mapeoPorNombre(List<String> columnasOrigen, List<String> columnasDestino,
+            List<String> primaryKeys) {
+        Map<String, String> mapeo = new HashMap<>();
+        for (String columnaOrigen : columnasOrigen) {
+            for (String columnaDestino : columnasDestino) {
+                if (columnaDestino.equalsIgnoreCase(columnaOrigen)) {
+                    mapeo.put(columnaOrigen, columnaDestino);
+                    break;
+                }
+            }
+        }
+        validarMapeo(mapeo, columnasDestino, primaryKeys);
+        return mapeo;
+    }
+
+    private static void validarMapeo(Map<String, String> mapeo, List<String> columnasDestino, List<String> primaryKeys) {
+        for (String columnaDestino : mapeo.values()) {
+            if (!columnasDestino.contains(columnaDestino)) {
+                throw new IllegalArgumentException("La columna destino '" + columnaDestino + "' no existe.");
+            }
+        }
+        for (String pk : primaryKeys) {
+            if (!mapeo.containsValue(pk)) {
+                throw new IllegalArgumentException("La clave primaria '" + pk + "' no está mapeada. Debe mapear todas las claves primarias.");
+            }
+        }
+    }
+
     private static Map<String, String> solicitarTransformaciones(Scanner scanner, List<String> columnas) {
         Map<String, String> transformaciones = new HashMap<>();
         System.out.println("\nConfiguración de transformaciones:");
@@ -368,7 +921,7 @@ return mapeo;
                     transformaciones.put(columna, "upper");
                     break;
                 case 3:
-                    System.out.print("Parte a extraer (Año/Mes/Día/Hora): ");
+                    System.out.print("Parte a extraer (Año/Mes/Día/Hora/Minuto/Segundo): ");
                     String parteFecha = scanner.nextLine();
                     transformaciones.put(columna, "date:" + parteFecha);
                     break;
@@ -385,8 +938,147 @@ return mapeo;
         return transformaciones;
     }
 
-    private static String construirUpsertSQL(String tableName, 
-    List<String> columnasOrigen, List<String> columnasDestino, List<String> primaryKeys) {
+    private static void solicitarParticiones(Scanner scanner, ConfiguracionTrabajo trabajo, List<String> columnasOrigen) {
+        System.out.print("\nNúmero de lectores paralelos para la extracción (1 = sin particionar): ");
+        trabajo.particiones = Math.max(1, scanner.nextInt());
+        scanner.nextLine();
+
+        if (trabajo.particiones > 1) {
+            System.out.print("Columna numérica para particionar: ");
+            String columnaParticion = scanner.nextLine().trim();
+            while (!columnasOrigen.contains(columnaParticion)) {
+                System.out.print("La columna '" + columnaParticion + "' no está en la consulta. Ingrese una válida: ");
+                columnaParticion = scanner.nextLine().trim();
+            }
+            trabajo.columnaParticion = columnaParticion;
+
+            System.out.println("Estrategia de partición:");
+            System.out.println("1. Rangos entre MIN y MAX de la columna");
+            System.out.println("2. Módulo de la columna (claves con huecos o sesgadas)");
+            System.out.print("Seleccione opción: ");
+            int opcion = scanner.nextInt();
+            scanner.nextLine();
+            trabajo.estrategiaParticion = opcion == 2
+                    ? ExtraccionParticionada.Estrategia.MODULO
+                    : ExtraccionParticionada.Estrategia.RANGO;
+        }
+    }
+
+    /** Devuelve la columna de marca de agua, o "" para una extracción completa. */
+    private static String solicitarColumnaMarca(Scanner scanner, List<String> columnasOrigen) {
+        System.out.print("\n¿Extracción incremental por marca de agua? (s/n): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            return "";
+        }
+        System.out.print("Columna de marca de agua (rowversion, fecha o identity): ");
+        String columnaMarca = scanner.nextLine().trim();
+        while (!columnasOrigen.contains(columnaMarca)) {
+            System.out.print("La columna '" + columnaMarca + "' no está en la consulta. Ingrese una válida: ");
+            columnaMarca = scanner.nextLine().trim();
+        }
+        return columnaMarca;
+    }
+
+    /** Devuelve la columna clave de los checkpoints, o "" para no guardarlos. */
+    private static String solicitarColumnaCheckpoint(Scanner scanner, String columnaParticion, boolean reanudar) {
+        if (!reanudar) {
+            System.out.print("\n¿Guardar checkpoints para poder reanudar la carga? (s/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("s")) {
+                return "";
+            }
+        }
+        if (columnaParticion != null) {
+            return columnaParticion;
+        }
+        System.out.print("Columna entera y única para los checkpoints (mapeada y sin transformación): ");
+        return scanner.nextLine().trim();
+    }
+
+    /**
+     * El checkpoint guarda la mayor clave confirmada y al reanudar lee solo las mayores, así que la
+     * columna debe ser entera y, en el destino, la PK de una sola columna o la única columna de un
+     * índice único: con valores repetidos se saltearían las filas que comparten la última clave.
+     */
+    private static void validarColumnaCheckpoint(Connection destConn, String tabla, String columnaOrigen,
+            String columnaDestino, List<String> primaryKeys, int tipoSql) throws SQLException {
+        switch (tipoSql) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                break;
+            default:
+                throw new IllegalArgumentException("La columna de checkpoint '" + columnaOrigen + "' debe ser de tipo "
+                        + "entero (tinyint, smallint, int o bigint).");
+        }
+        if (primaryKeys.size() == 1 && primaryKeys.get(0).equalsIgnoreCase(columnaDestino)) {
+            return;
+        }
+        // Índices o restricciones UNIQUE sin filtro cuya única columna clave es la del checkpoint
+        try (PreparedStatement stmt = destConn.prepareStatement("SELECT COUNT(*) FROM sys.indexes i "
+                + "WHERE i.object_id = OBJECT_ID(?) AND i.is_unique = 1 AND i.has_filter = 0 AND i.is_disabled = 0 "
+                + "AND (SELECT COUNT(*) FROM sys.index_columns ic WHERE ic.object_id = i.object_id "
+                + "AND ic.index_id = i.index_id AND ic.key_ordinal > 0) = 1 "
+                + "AND EXISTS (SELECT 1 FROM sys.index_columns ic JOIN sys.columns c "
+                + "ON c.object_id = ic.object_id AND c.column_id = ic.column_id "
+                + "WHERE ic.object_id = i.object_id AND ic.index_id = i.index_id AND ic.key_ordinal > 0 AND c.name = ?)")) {
+            stmt.setString(1, tabla);
+            stmt.setString(2, columnaDestino);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("La columna de checkpoint '" + columnaOrigen + "' debe corresponder a la "
+                + "PK de una sola columna o a un índice único de una sola columna de '" + tabla + "' (columna '"
+                + columnaDestino + "').");
+    }
+
+    private static ModoCarga seleccionarModoCarga(Scanner scanner, List<String> primaryKeys) {
+        System.out.println("\nSeleccione el modo de carga:");
+        System.out.println("1. Fila a fila (UPDATE/INSERT por registro)");
+        System.out.println("2. Staging + MERGE por bloque");
+        if (primaryKeys.isEmpty()) {
+            System.out.println("3. Deduplicación por huellas + staging y MERGE de las filas nuevas");
+        }
+        System.out.println("4. Inserción masiva con bulk copy (solo inserta: cargas iniciales)");
+        System.out.print("Seleccione opción: ");
+        int opcion = scanner.nextInt();
+        scanner.nextLine();
+
+        switch (opcion) {
+            case 2:
+                return ModoCarga.STAGING;
+            case 3:
+                if (primaryKeys.isEmpty()) {
+                    return ModoCarga.DEDUPLICADO;
+                }
+                return ModoCarga.FILA_A_FILA;
+            case 4:
+                return ModoCarga.BULK_COPY;
+            default:
+                return ModoCarga.FILA_A_FILA;
+        }
+    }
+
+    private static Cargador crearCargador(ModoCarga modoCarga, Connection destConn, String tableDestination,
+            List<String> columnasDestinoMapeadas, List<String> primaryKeys, CargadorDeduplicado.Huellas huellas,
+            boolean stagingConBulkCopy) throws SQLException {
+        switch (modoCarga) {
+            case STAGING:
+                return new CargadorStaging(destConn, tableDestination, columnasDestinoMapeadas, primaryKeys,
+                        stagingConBulkCopy);
+            case DEDUPLICADO:
+                // La existencia se comprueba en el servidor; las huellas solo evitan enviar las filas ya conocidas
+                return new CargadorDeduplicado(new CargadorStaging(destConn, tableDestination, columnasDestinoMapeadas,
+                        primaryKeys, stagingConBulkCopy), destConn, huellas);
+            default:
+                return new CargadorFilaAFila(destConn, tableDestination, columnasDestinoMapeadas, primaryKeys);
+        }
+    }
+
+    static String construirUpsertSQL(String tableName, List<String> columnasDestino, List<String> primaryKeys) {
 
 StringBuilder sql = new StringBuilder();
 
@@ -426,22 +1118,7 @@ sql.append(") END");
 return sql.toString();
 }
 
-    private static String construirMergeSQL(String tableDestination, List<String> columnasOrigen, 
-            List<String> columnasDestino, Connection destConn) throws SQLException {
-        
-        // Obtener la clave primaria de la tabla destino
-        List<String> primaryKeys = obtenerClavesPrimarias(destConn, tableDestination);
-        
-        if (primaryKeys.isEmpty()) {
-            // Si no hay PK, usar INSERT con verificación de existencia para todas las columnas
-            return construirInsertConVerificacion(tableDestination, columnasDestino);
-        } else {
-            // Construir MERGE usando las claves primarias reales
-            return construirMergeSQLCompleto(tableDestination, columnasOrigen, columnasDestino, primaryKeys);
-        }
-    }
-
-    private static String construirInsertConVerificacion(String tableName, List<String> columnasDestino) {
+    static String construirInsertConVerificacion(String tableName, List<String> columnasDestino) {
         StringBuilder sql = new StringBuilder();
         
         sql.append("IF NOT EXISTS (SELECT 1 FROM ").append(tableName).append(" WHERE ");
@@ -464,20 +1141,19 @@ return sql.toString();
         
         return sql.toString();
     }
-    private static String construirMergeSQLCompleto(String tableDestination, 
-    List<String> columnasOrigen, List<String> columnasDestino, List<String> primaryKeys) {
+
+    /**
+     * Construye un MERGE sobre la tabla destino. {@code fuente} es la expresión de tabla que
+     * sigue a USING (un VALUES con parámetros, una tabla o una subconsulta) y {@code salida}
+     * una cláusula OUTPUT opcional.
+     */
+    static String construirMergeSQLCompleto(String tableDestination, String fuente,
+    List<String> columnasOrigen, List<String> columnasDestino, List<String> primaryKeys, String salida) {
 
     StringBuilder sql = new StringBuilder();
     sql.append("MERGE INTO ").append(tableDestination).append(" AS destino ")
-    .append("USING (VALUES (");
-
-    // Placeholders para los valores de origen
-    for (int i = 0; i < columnasOrigen.size(); i++) {
-        if (i > 0) sql.append(", ");
-        sql.append('?');
-    }
-
-    sql.append(")) AS origen (")
+    .append("USING ").append(fuente)
+    .append(" AS origen (")
     .append(String.join(", ", columnasOrigen))
     .append(") ON ");
 
@@ -498,14 +1174,12 @@ return sql.toString();
         throw new IllegalArgumentException("No se pudo mapear ninguna clave primaria para la condición MERGE");
     }
 
-    sql.append(" WHEN MATCHED THEN UPDATE SET ");
-
-    // Actualizar solo las columnas que no son PK
+    // Actualizar solo las columnas que no son PK (si todas son clave no hay nada que actualizar)
     boolean firstUpdate = true;
     for (int i = 0; i < columnasDestino.size(); i++) {
         String colDest = columnasDestino.get(i);
         if (!primaryKeys.contains(colDest)) {
-            if (!firstUpdate) sql.append(", ");
+            sql.append(firstUpdate ? " WHEN MATCHED THEN UPDATE SET " : ", ");
             sql.append("destino.").append(colDest)
             .append(" = origen.").append(columnasOrigen.get(i));
             firstUpdate = false;
@@ -522,47 +1196,10 @@ return sql.toString();
         sql.append("origen.").append(columnasOrigen.get(i));
     }
 
-    return sql.append(");").toString();
+    sql.append(")");
+    if (salida != null) {
+        sql.append(" ").append(salida);
     }
-
-    private static Object aplicarTransformacion(Object valor, String transformacion) {
-        if (valor == null || "none".equals(transformacion)) {
-            return valor;
-        }
-
-        switch (transformacion.split(":")[0]) {
-            case "lower":
-                return valor.toString().toLowerCase();
-            case "upper":
-                return valor.toString().toUpperCase();
-            case "date":
-                return extraerParteFecha(valor, transformacion.split(":")[1]);
-            case "concat":
-                return valor.toString() + transformacion.split(":")[1];
-            default:
-                return valor;
-        }
+    return sql.append(";").toString();
     }
-
-    private static Object extraerParteFecha(Object valor, String parteFecha) {
-        if (!(valor instanceof java.util.Date)) {
-            return valor;
-        }
-
-        java.util.Calendar calendar = java.util.Calendar.getInstance();
-        calendar.setTime((java.util.Date) valor);
-
-        switch (parteFecha.toLowerCase()) {
-            case "año":
-                return calendar.get(java.util.Calendar.YEAR);
-            case "mes":
-                return calendar.get(java.util.Calendar.MONTH) + 1;
-            case "día":
-                return calendar.get(java.util.Calendar.DAY_OF_MONTH);
-            case "hora":
-                return calendar.get(java.util.Calendar.HOUR_OF_DAY);
-            default:
-                return valor;
-        }
-    }
-}
\ No newline at end of file
+}
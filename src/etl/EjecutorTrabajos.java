@@ -0,0 +1,229 @@
+package src.etl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ejecución sin preguntas de trabajos definidos en archivos (ver {@link ConfiguracionTrabajo}).
+ *
+ * Los trabajos se ordenan por sus dependencias (trabajo.depende) y los que no dependen
+ * entre sí se ejecutan a la vez en un número acotado de hilos, de modo que la duración
+ * total se acerca a la de la cadena de dependencias más larga y no a la suma de todos.
+ * Si un trabajo falla, los que dependen de él se omiten. Las conexiones al origen y al
+ * destino salen de un pool compartido por todos los trabajos.
+ *
+ * Uso: {@code ETLProcess --trabajos <archivo|directorio>... [--paralelo N] [--resume]}
+ */
+final class EjecutorTrabajos {
+
+    private enum Estado { OK, ERROR, OMITIDO }
+
+    private static final class Resultado {
+        final String nombre;
+        final Estado estado;
+        final long nanos;
+        final String detalle;
+
+        Resultado(String nombre, Estado estado, long nanos, String detalle) {
+            this.nombre = nombre;
+            this.estado = estado;
+            this.nanos = nanos;
+            this.detalle = detalle;
+        }
+    }
+
+    private EjecutorTrabajos() {
+    }
+
+    /** Ejecuta los trabajos y devuelve cuántos no terminaron bien (fallidos u omitidos). */
+    static int ejecutar(List<String> rutas, int paralelo, Properties properties, boolean reanudar)
+            throws IOException, InterruptedException {
+        Map<String, ConfiguracionTrabajo> trabajos = new LinkedHashMap<>();
+        for (Path archivo : archivosTrabajo(rutas)) {
+            ConfiguracionTrabajo trabajo = ConfiguracionTrabajo.desdeArchivo(archivo);
+            if (trabajos.put(trabajo.nombre, trabajo) != null) {
+                throw new IllegalArgumentException("Hay dos trabajos con el nombre '" + trabajo.nombre + "'.");
+            }
+        }
+        if (trabajos.isEmpty()) {
+            System.out.println("No se encontraron archivos de trabajo.");
+            return 0;
+        }
+
+        // Trabajo -> trabajos que esperan por él, y cuántas dependencias le faltan a cada uno
+        Map<String, List<String>> dependientes = new HashMap<>();
+        Map<String, Integer> faltan = new HashMap<>();
+        for (ConfiguracionTrabajo trabajo : trabajos.values()) {
+            for (String dependencia : trabajo.dependencias) {
+                if (!trabajos.containsKey(dependencia)) {
+                    throw new IllegalArgumentException("El trabajo '" + trabajo.nombre
+                            + "' depende de '" + dependencia + "', que no está entre los trabajos indicados.");
+                }
+                dependientes.computeIfAbsent(dependencia, k -> new ArrayList<>()).add(trabajo.nombre);
+            }
+            faltan.put(trabajo.nombre, trabajo.dependencias.size());
+        }
+        verificarCiclos(trabajos, dependientes, faltan);
+
+        int hilos = Math.max(1, paralelo);
+        System.out.println("Trabajos a ejecutar: " + trabajos.size() + " (" + hilos + " a la vez).");
+
+        String dbUrlOrigen = properties.getProperty("db.origen.url");
+        String dbUserOrigen = properties.getProperty("db.origen.user");
+        String dbPasswordOrigen = properties.getProperty("db.origen.password");
+        String dbUrlDestino = properties.getProperty("db.destino.url");
+        String dbUserDestino = properties.getProperty("db.destino.user");
+        String dbPasswordDestino = properties.getProperty("db.destino.password");
+        int inactivas = ETLProcess.entero(properties, "etl.pool.inactivas", 2 * hilos);
+
+        Map<String, Resultado> resultados = new HashMap<>();
+        long inicio = System.nanoTime();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try (PoolConexiones poolOrigen = new PoolConexiones(
+                () -> DriverManager.getConnection(dbUrlOrigen, dbUserOrigen, dbPasswordOrigen), inactivas);
+             PoolConexiones poolDestino = new PoolConexiones(
+                () -> DriverManager.getConnection(dbUrlDestino, dbUserDestino, dbPasswordDestino), inactivas)) {
+            CompletionService<Resultado> terminados = new ExecutorCompletionService<>(ejecutor);
+            int enCurso = 0;
+            for (ConfiguracionTrabajo trabajo : trabajos.values()) {
+                if (trabajo.dependencias.isEmpty()) {
+                    terminados.submit(() -> ejecutarTrabajo(trabajo, poolOrigen, poolDestino, properties, reanudar));
+                    enCurso++;
+                }
+            }
+            while (enCurso > 0) {
+                Resultado resultado = terminados.take().get();
+                enCurso--;
+                resultados.put(resultado.nombre, resultado);
+
+                for (String dependiente : dependientes.getOrDefault(resultado.nombre, List.of())) {
+                    if (resultado.estado != Estado.OK) {
+                        omitir(dependiente, resultado.nombre, dependientes, resultados);
+                    } else if (faltan.merge(dependiente, -1, Integer::sum) == 0
+                            && !resultados.containsKey(dependiente)) {
+                        ConfiguracionTrabajo trabajo = trabajos.get(dependiente);
+                        terminados.submit(() -> ejecutarTrabajo(trabajo, poolOrigen, poolDestino, properties, reanudar));
+                        enCurso++;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            // ejecutarTrabajo no lanza: recoge cualquier error en su resultado
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+        long total = System.nanoTime() - inicio;
+
+        int fallidos = 0;
+        long suma = 0;
+        System.out.println("\n=== RESUMEN DE TRABAJOS ===");
+        for (String nombre : trabajos.keySet()) {
+            Resultado resultado = resultados.get(nombre);
+            suma += resultado.nanos;
+            if (resultado.estado != Estado.OK) {
+                fallidos++;
+            }
+            System.out.println(String.format("Trabajo %s: %s (%.1f s)%s", nombre, resultado.estado,
+                    resultado.nanos / 1e9, resultado.detalle == null ? "" : " - " + resultado.detalle));
+        }
+        System.out.println(String.format("Duración total: %.1f s (suma de los trabajos: %.1f s).", total / 1e9, suma / 1e9));
+        return fallidos;
+    }
+
+    private static Resultado ejecutarTrabajo(ConfiguracionTrabajo trabajo, PoolConexiones poolOrigen,
+            PoolConexiones poolDestino, Properties properties, boolean reanudar) {
+        long inicio = System.nanoTime();
+        System.out.println("\n=== TRABAJO " + trabajo.nombre + " ===");
+        try (Connection sourceConnection = poolOrigen.obtener();
+             Connection destinationConnection = poolDestino.obtener()) {
+            ETLProcess.extractTransformLoad(sourceConnection, destinationConnection, poolOrigen, poolDestino,
+                    trabajo, null, properties, reanudar);
+        } catch (Exception e) {
+            System.out.println("Error en el trabajo '" + trabajo.nombre + "':");
+            e.printStackTrace();
+            return new Resultado(trabajo.nombre, Estado.ERROR, System.nanoTime() - inicio, e.getMessage());
+        }
+        return new Resultado(trabajo.nombre, Estado.OK, System.nanoTime() - inicio, null);
+    }
+
+    /** Marca como omitido un trabajo y, con él, todos los que dependen de él. */
+    private static void omitir(String nombre, String causa, Map<String, List<String>> dependientes,
+            Map<String, Resultado> resultados) {
+        if (resultados.containsKey(nombre)) {
+            return;
+        }
+        resultados.put(nombre, new Resultado(nombre, Estado.OMITIDO, 0, "no terminó bien '" + causa + "'"));
+        for (String dependiente : dependientes.getOrDefault(nombre, List.of())) {
+            omitir(dependiente, causa, dependientes, resultados);
+        }
+    }
+
+    /** Comprueba, antes de empezar, que las dependencias no forman un ciclo. */
+    private static void verificarCiclos(Map<String, ConfiguracionTrabajo> trabajos,
+            Map<String, List<String>> dependientes, Map<String, Integer> faltan) {
+        Map<String, Integer> pendientes = new HashMap<>(faltan);
+        Deque<String> listos = new ArrayDeque<>();
+        pendientes.forEach((nombre, cantidad) -> {
+            if (cantidad == 0) {
+                listos.add(nombre);
+            }
+        });
+        int ordenados = 0;
+        while (!listos.isEmpty()) {
+            String nombre = listos.poll();
+            ordenados++;
+            for (String dependiente : dependientes.getOrDefault(nombre, List.of())) {
+                if (pendientes.merge(dependiente, -1, Integer::sum) == 0) {
+                    listos.add(dependiente);
+                }
+            }
+        }
+        if (ordenados < trabajos.size()) {
+            List<String> enCiclo = pendientes.entrySet().stream()
+                    .filter(entrada -> entrada.getValue() > 0)
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .collect(Collectors.toList());
+            throw new IllegalArgumentException("Las dependencias entre trabajos forman un ciclo: " + enCiclo);
+        }
+    }
+
+    /** Archivos .properties indicados, o los de cada directorio indicado, en orden alfabético. */
+    private static List<Path> archivosTrabajo(List<String> rutas) throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        for (String ruta : rutas) {
+            Path path = Paths.get(ruta);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> contenido = Files.list(path)) {
+                    archivos.addAll(contenido
+                            .filter(archivo -> archivo.getFileName().toString().endsWith(".properties"))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                archivos.add(path);
+            }
+        }
+        return archivos;
+    }
+}
@@ -0,0 +1,133 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extracción en paralelo: la consulta origen se divide en particiones por una columna
+ * numérica ({@link PlanParticiones}) y cada partición se lee con su propia conexión. Las filas de todos los
+ * lectores se entregan por una cola acotada a la misma carga, que las consume con
+ * {@link #siguiente(Object[])} igual que a una lectura secuencial. Los arreglos de
+ * fila se reciclan entre lectores y consumidor, así que la cola no genera basura.
+ */
+class ExtraccionParticionada implements FuenteFilas {
+
+    enum Estrategia {
+        // Rangos contiguos entre MIN y MAX de la columna
+        RANGO,
+        // Cubetas por el resto de la columna entre el número de particiones
+        MODULO
+    }
+
+    // Marca el final de una partición en la cola
+    private static final Object[] FIN = new Object[0];
+
+    private final BlockingQueue<Object[]> cola;
+    private final BlockingQueue<Object[]> libres;
+    private final ExecutorService lectores;
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+    private final int particiones;
+    private final int tamanioFetch;
+    private int particionesTerminadas = 0;
+
+    /**
+     * @param consultas una consulta por partición (ver {@link PlanParticiones#consulta})
+     */
+    ExtraccionParticionada(ProveedorConexion proveedorOrigen, List<String> consultas,
+            List<String> columnasOrigenMapeadas, int capacidadCola, int tamanioFetch) {
+        this.particiones = consultas.size();
+        this.tamanioFetch = tamanioFetch;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola + this.particiones);
+        this.libres = new ArrayBlockingQueue<>(capacidadCola);
+        for (int i = 0; i < capacidadCola; i++) {
+            libres.add(new Object[columnasOrigenMapeadas.size()]);
+        }
+
+        AtomicInteger numeroLector = new AtomicInteger();
+        this.lectores = Executors.newFixedThreadPool(this.particiones, r -> {
+            Thread hilo = new Thread(r, "etl-lector-" + numeroLector.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        for (String consulta : consultas) {
+            lectores.submit(() -> leerParticion(proveedorOrigen, consulta, columnasOrigenMapeadas));
+        }
+        lectores.shutdown();
+    }
+
+    private void leerParticion(ProveedorConexion proveedorOrigen, String consulta, List<String> columnasOrigenMapeadas) {
+        try (Connection conn = proveedorOrigen.obtener();
+             PreparedStatement stmt = LectorColumnas.prepararConsulta(conn, consulta, tamanioFetch);
+             ResultSet rs = stmt.executeQuery()) {
+            LectorColumnas lector = new LectorColumnas(rs, columnasOrigenMapeadas);
+            while (error.get() == null) {
+                Object[] fila = libres.take();
+                if (!lector.siguiente(fila)) {
+                    libres.put(fila);
+                    break;
+                }
+                cola.put(fila);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            error.compareAndSet(null, e);
+        }
+        try {
+            cola.put(FIN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean siguiente(Object[] fila) throws SQLException {
+        try {
+            while (particionesTerminadas < particiones) {
+                Object[] leida = cola.take();
+                if (leida == FIN) {
+                    particionesTerminadas++;
+                    verificarError();
+                } else {
+                    System.arraycopy(leida, 0, fila, 0, fila.length);
+                    libres.put(leida);
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Extracción particionada interrumpida", e);
+        }
+    }
+
+    /** Filas leídas en espera de ser consumidas. */
+    int enCola() {
+        return cola.size();
+    }
+
+    private void verificarError() throws SQLException {
+        Exception e = error.get();
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw new SQLException("Error en un lector de la extracción particionada", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        lectores.shutdownNow();
+    }
+}
@@ -0,0 +1,19 @@
+package src.etl;
+
+import java.sql.SQLException;
+
+/**
+ * Origen de filas para la carga. Cada fila trae los valores de las columnas origen
+ * mapeadas, en el mismo orden que columnasOrigenMapeadas.
+ */
+interface FuenteFilas extends AutoCloseable {
+
+    /**
+     * Copia la siguiente fila en {@code fila}, que el llamador reutiliza entre filas.
+     * Devuelve false cuando no quedan más.
+     */
+    boolean siguiente(Object[] fila) throws SQLException;
+
+    @Override
+    void close() throws SQLException;
+}
@@ -0,0 +1,48 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Lectura secuencial de la consulta origen con un único cursor en streaming
+ * (ver {@link LectorColumnas}).
+ */
+class FuenteResultSet implements FuenteFilas {
+    private final Statement stmt;
+    private final ResultSet rs;
+    private final LectorColumnas lector;
+
+    FuenteResultSet(Connection sourceConn, String query, List<String> columnasOrigenMapeadas, int tamanioFetch)
+            throws SQLException {
+        this.stmt = LectorColumnas.crearStatement(sourceConn, tamanioFetch);
+        try {
+            this.rs = stmt.executeQuery(query);
+            this.lector = new LectorColumnas(rs, columnasOrigenMapeadas);
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean siguiente(Object[] fila) throws SQLException {
+        return lector.siguiente(fila);
+    }
+
+    /** Para leer por lotes columnares en lugar de fila a fila (ver {@link PipelineColumnar}). */
+    LectorColumnas lector() {
+        return lector;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package src.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Desactiva los índices no agrupados y las restricciones CHECK y FOREIGN KEY de la
+ * tabla destino durante una carga grande, y los reconstruye y vuelve a verificar al
+ * terminar: mantener cada índice fila a fila cuesta más que reconstruirlo una vez.
+ *
+ * No se tocan la PK ni los índices únicos, que la carga necesita para encontrar las
+ * filas y que garantizan la unicidad. Lo desactivado se anota en el directorio de
+ * estado antes del primer ALTER; si la ejecución se interrumpe, la próxima carga
+ * del mismo trabajo (o {@code --restaurar-indices}) lo restaura desde ese archivo.
+ *
+ * La restauración al cerrar usa una conexión nueva del proveedor: la de la carga pudo
+ * haberse perdido y reemplazado durante un reintento.
+ */
+final class GestorIndices implements AutoCloseable {
+    private final ProveedorConexion proveedor;
+    private final String tabla;
+    private final Path archivo;
+    private final boolean online;
+    private final int maxdop;
+    private final boolean verificar;
+    private final List<String> indices;
+    private final List<String> restricciones;
+
+    private GestorIndices(ProveedorConexion proveedor, String tabla, Path archivo, boolean online, int maxdop,
+            boolean verificar, List<String> indices, List<String> restricciones) {
+        this.proveedor = proveedor;
+        this.tabla = tabla;
+        this.archivo = archivo;
+        this.online = online;
+        this.maxdop = maxdop;
+        this.verificar = verificar;
+        this.indices = indices;
+        this.restricciones = restricciones;
+    }
+
+    /**
+     * Desactiva los índices y restricciones de la tabla y devuelve el gestor que los
+     * restaura al cerrarse con una conexión de {@code proveedor}. La conexión debe estar
+     * en auto-commit.
+     *
+     * @param archivo registro de lo desactivado; si ya existe, primero se restaura lo que quedó de otra ejecución
+     */
+    static GestorIndices desactivar(Connection destConn, ProveedorConexion proveedor, String tabla, Path archivo,
+            Properties properties)
+            throws SQLException, IOException {
+        boolean online = enLinea(destConn, properties.getProperty("etl.indices.online", "auto").trim());
+        int maxdop = ETLProcess.entero(properties, "etl.indices.maxdop", 0);
+        boolean verificar = Boolean.parseBoolean(properties.getProperty("etl.indices.verificar", "true"));
+        if (Files.exists(archivo)) {
+            System.out.println("Restaurando los índices que dejó desactivados una carga anterior de '" + tabla + "'...");
+            restaurar(destConn, archivo, properties);
+        }
+
+        List<String> indices = new ArrayList<>();
+        try (PreparedStatement stmt = destConn.prepareStatement("SELECT name FROM sys.indexes "
+                + "WHERE object_id = OBJECT_ID(?) AND type = 2 AND is_primary_key = 0 AND is_unique = 0 "
+                + "AND is_unique_constraint = 0 AND is_disabled = 0")) {
+            stmt.setString(1, tabla);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    indices.add(rs.getString(1));
+                }
+            }
+        }
+        List<String> restricciones = new ArrayList<>();
+        try (PreparedStatement stmt = destConn.prepareStatement(
+                "SELECT name FROM sys.check_constraints WHERE parent_object_id = OBJECT_ID(?) AND is_disabled = 0 "
+                + "UNION ALL SELECT name FROM sys.foreign_keys WHERE parent_object_id = OBJECT_ID(?) AND is_disabled = 0")) {
+            stmt.setString(1, tabla);
+            stmt.setString(2, tabla);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    restricciones.add(rs.getString(1));
+                }
+            }
+        }
+
+        GestorIndices gestor = new GestorIndices(proveedor, tabla, archivo, online, maxdop, verificar, indices,
+                restricciones);
+        if (indices.isEmpty() && restricciones.isEmpty()) {
+            System.out.println("La tabla '" + tabla + "' no tiene índices no agrupados ni restricciones que desactivar.");
+            return gestor;
+        }
+        // El registro va antes de cualquier cambio: una caída a mitad de camino igual se puede restaurar
+        gestor.registrar();
+        try (Statement stmt = destConn.createStatement()) {
+            for (String indice : indices) {
+                stmt.execute("ALTER INDEX " + nombre(indice) + " ON " + tabla + " DISABLE");
+            }
+            for (String restriccion : restricciones) {
+                stmt.execute("ALTER TABLE " + tabla + " NOCHECK CONSTRAINT " + nombre(restriccion));
+            }
+        }
+        System.out.println("Desactivados durante la carga: " + indices.size() + " índices no agrupados y "
+                + restricciones.size() + " restricciones de '" + tabla + "'.");
+        return gestor;
+    }
+
+    /** Restaura lo anotado en el archivo de una ejecución interrumpida y lo elimina. */
+    static void restaurar(Connection destConn, Path archivo, Properties properties) throws SQLException, IOException {
+        Properties registro = new Properties();
+        try (InputStream in = Files.newInputStream(archivo)) {
+            registro.load(in);
+        }
+        new GestorIndices(null, registro.getProperty("tabla"), archivo,
+                enLinea(destConn, properties.getProperty("etl.indices.online", "auto").trim()),
+                ETLProcess.entero(properties, "etl.indices.maxdop", 0),
+                Boolean.parseBoolean(properties.getProperty("etl.indices.verificar", "true")),
+                lista(registro, "indice."), lista(registro, "restriccion.")).reconstruir(destConn);
+    }
+
+    /** Reconstruye los índices y vuelve a activar las restricciones; el registro se borra al terminar. */
+    @Override
+    public void close() throws SQLException {
+        if (indices.isEmpty() && restricciones.isEmpty()) {
+            return;
+        }
+        try (Connection destConn = proveedor.obtener()) {
+            reconstruir(destConn);
+        }
+    }
+
+    private void reconstruir(Connection destConn) throws SQLException {
+        if (indices.isEmpty() && restricciones.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        String opciones = " WITH (SORT_IN_TEMPDB = ON" + (maxdop > 0 ? ", MAXDOP = " + maxdop : "");
+        try (Statement stmt = destConn.createStatement()) {
+            stmt.setQueryTimeout(0);
+            for (String indice : indices) {
+                String reconstruir = "ALTER INDEX " + nombre(indice) + " ON " + tabla + " REBUILD" + opciones;
+                if (online) {
+                    try {
+                        stmt.execute(reconstruir + ", ONLINE = ON)");
+                        continue;
+                    } catch (SQLException e) {
+                        // Columnas o versiones que no admiten reconstrucción en línea
+                        System.out.println("No se pudo reconstruir '" + indice + "' en línea (" + e.getMessage()
+                                + "); se reconstruye sin ONLINE.");
+                    }
+                }
+                stmt.execute(reconstruir + ")");
+            }
+            List<String> fallidas = new ArrayList<>();
+            for (String restriccion : restricciones) {
+                try {
+                    stmt.execute("ALTER TABLE " + tabla + (verificar ? " WITH CHECK" : " WITH NOCHECK")
+                            + " CHECK CONSTRAINT " + nombre(restriccion));
+                } catch (SQLException e) {
+                    if (!verificar) {
+                        throw e;
+                    }
+                    // Hay filas que no cumplen la restricción: se siguen activando las demás
+                    System.out.println("No se pudo activar la restricción '" + restriccion + "' de '" + tabla
+                            + "' verificando las filas: " + e.getMessage());
+                    fallidas.add(restriccion);
+                }
+            }
+            if (!fallidas.isEmpty()) {
+                // El registro queda solo con lo pendiente, para restaurarlo cuando el operador decida
+                new GestorIndices(proveedor, tabla, archivo, online, maxdop, verificar, new ArrayList<>(), fallidas)
+                        .registrar();
+                throw new SQLException("Restricciones de '" + tabla + "' sin activar porque hay filas que no las "
+                        + "cumplen: " + String.join(", ", fallidas) + ". Corrija las filas y ejecute "
+                        + "--restaurar-indices, o actívelas sin verificar las filas existentes (WITH NOCHECK; quedan "
+                        + "como no confiables) con --restaurar-indices --sin-verificar.");
+            }
+        } catch (IOException e) {
+            throw new SQLException("No se pudo actualizar el registro de índices '" + archivo + "'", e);
+        }
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            throw new SQLException("No se pudo eliminar el registro de índices '" + archivo + "'", e);
+        }
+        System.out.println("Reconstruidos " + indices.size() + " índices y reactivadas " + restricciones.size()
+                + " restricciones de '" + tabla + "' en " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+    }
+
+    /** Escribe el registro de forma atómica (archivo temporal + move). */
+    private void registrar() throws IOException {
+        Properties registro = new Properties();
+        registro.setProperty("tabla", tabla);
+        for (int i = 0; i < indices.size(); i++) {
+            registro.setProperty("indice." + i, indices.get(i));
+        }
+        for (int i = 0; i < restricciones.size(); i++) {
+            registro.setProperty("restriccion." + i, restricciones.get(i));
+        }
+        Files.createDirectories(archivo.toAbsolutePath().getParent());
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporal)) {
+            registro.store(out, "Índices y restricciones desactivados durante la carga");
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** ONLINE = ON solo existe en las ediciones Enterprise/Developer y en Azure SQL. */
+    private static boolean enLinea(Connection destConn, String opcion) throws SQLException {
+        if (!"auto".equalsIgnoreCase(opcion)) {
+            return Boolean.parseBoolean(opcion);
+        }
+        try (Statement stmt = destConn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CAST(SERVERPROPERTY('EngineEdition') AS INT)")) {
+            int edicion = rs.next() ? rs.getInt(1) : 0;
+            return edicion == 3 || edicion == 5 || edicion == 8;
+        }
+    }
+
+    private static List<String> lista(Properties registro, String prefijo) {
+        List<String> valores = new ArrayList<>();
+        for (int i = 0; registro.getProperty(prefijo + i) != null; i++) {
+            valores.add(registro.getProperty(prefijo + i));
+        }
+        return valores;
+    }
+
+    private static String nombre(String identificador) {
+        return "[" + identificador.replace("]", "]]") + "]";
+    }
+}
@@ -0,0 +1,81 @@
+package src.etl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos con cubetas logarítmico-lineales (como un
+ * HdrHistogram de precisión fija): cada potencia de dos se divide en 16 cubetas, así el
+ * error relativo de un percentil es como máximo 1/16 en todo el rango, con memoria fija
+ * y registro sin bloqueos desde varios hilos.
+ */
+final class HistogramaLatencia {
+    private static final int BITS_SUBCUBETA = 4;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(64 * SUBCUBETAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cuentas.incrementAndGet(indice(valor));
+        total.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    long cantidad() {
+        return total.sum();
+    }
+
+    long suma() {
+        return suma.sum();
+    }
+
+    long maximo() {
+        return maximo.get();
+    }
+
+    double media() {
+        long cantidad = total.sum();
+        return cantidad == 0 ? 0 : (double) suma.sum() / cantidad;
+    }
+
+    /** Valor por debajo del cual queda la fracción {@code p} (0..1) de los registros. */
+    long percentil(double p) {
+        long cantidad = total.sum();
+        if (cantidad == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(p * cantidad));
+        long acumulado = 0;
+        for (int i = 0; i < cuentas.length(); i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int subcubeta = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + subcubeta;
+    }
+
+    static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int exponente = indice / SUBCUBETAS + BITS_SUBCUBETA - 1;
+        int subcubeta = indice % SUBCUBETAS;
+        return ((SUBCUBETAS + subcubeta + 1L) << (exponente - BITS_SUBCUBETA)) - 1;
+    }
+}
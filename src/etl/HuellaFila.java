@@ -0,0 +1,92 @@
+package src.etl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+
+/**
+ * Huella de 64 bits de una fila. Los valores se normalizan antes de mezclarse para que
+ * una fila leída del destino (tipos del driver) y la misma fila transformada desde el
+ * origen produzcan la misma huella: 5, 5L y 5.00 son iguales, igual que un Timestamp
+ * y un java.util.Date con el mismo instante.
+ */
+final class HuellaFila {
+    private static final long SEMILLA = 0x9E3779B97F4A7C15L;
+    private static final long PRIMO_FNV = 0x100000001B3L;
+
+    private HuellaFila() {
+    }
+
+    static long calcular(Object[] valores) {
+        long h = SEMILLA;
+        for (Object valor : valores) {
+            h = (h ^ huellaValor(valor)) * SEMILLA;
+            h = Long.rotateLeft(h, 31);
+        }
+        return mezclar(h ^ valores.length);
+    }
+
+    private static long huellaValor(Object valor) {
+        if (valor == null) {
+            return 0x5A5A5A5A5A5A5A5AL;
+        }
+        if (valor instanceof Long || valor instanceof Integer || valor instanceof Short || valor instanceof Byte) {
+            return mezclar(((Number) valor).longValue());
+        }
+        if (valor instanceof BigDecimal) {
+            BigDecimal decimal = ((BigDecimal) valor).stripTrailingZeros();
+            if (decimal.scale() <= 0 && decimal.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0
+                    && decimal.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0) {
+                return mezclar(decimal.longValueExact());
+            }
+            return huellaTexto(decimal.toPlainString());
+        }
+        if (valor instanceof BigInteger) {
+            BigInteger entero = (BigInteger) valor;
+            return entero.bitLength() < 64 ? mezclar(entero.longValue()) : huellaTexto(entero.toString());
+        }
+        if (valor instanceof Double || valor instanceof Float) {
+            double d = ((Number) valor).doubleValue();
+            if (d == Math.rint(d) && Math.abs(d) < 9.0E18) {
+                return mezclar((long) d);
+            }
+            return huellaTexto(BigDecimal.valueOf(d).stripTrailingZeros().toPlainString());
+        }
+        if (valor instanceof Timestamp) {
+            Timestamp ts = (Timestamp) valor;
+            return mezclar(ts.getTime() * 31 + ts.getNanos() % 1_000_000);
+        }
+        if (valor instanceof java.util.Date) {
+            return mezclar(((java.util.Date) valor).getTime() * 31);
+        }
+        if (valor instanceof Boolean) {
+            return mezclar((Boolean) valor ? 1 : 0);
+        }
+        if (valor instanceof byte[]) {
+            long h = PRIMO_FNV;
+            for (byte b : (byte[]) valor) {
+                h = (h ^ (b & 0xFF)) * PRIMO_FNV;
+            }
+            return mezclar(h);
+        }
+        return huellaTexto(valor.toString());
+    }
+
+    private static long huellaTexto(String texto) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            h = (h ^ texto.charAt(i)) * PRIMO_FNV;
+        }
+        return mezclar(h ^ texto.length());
+    }
+
+    // Finalizador de MurmurHash3 (fmix64)
+    private static long mezclar(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
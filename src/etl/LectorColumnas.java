@@ -0,0 +1,198 @@
+package src.etl;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Lectura de filas del origen en streaming: cursor solo hacia adelante y de solo lectura,
+ * tamaño de fetch configurable y buffering adaptativo del driver (el resultado se lee
+ * de la red a medida que se consume, en lugar de cargarse completo en memoria), de modo
+ * que el heap no crece con el tamaño de la tabla.
+ *
+ * Las columnas se resuelven una sola vez a su posición y a un getter según su tipo SQL
+ * (getInt, getString, getTimestamp...), en lugar de rs.getObject(nombre) en cada fila.
+ * Cada getter devuelve el mismo tipo Java que daría getObject.
+ *
+ * También puede llenar un {@link LoteColumnar}: las columnas numéricas se leen con los
+ * getters primitivos directo a los arreglos del lote, sin crear un objeto por valor.
+ */
+final class LectorColumnas {
+
+    @FunctionalInterface
+    private interface LectorColumna {
+        Object leer(ResultSet rs, int indice) throws SQLException;
+    }
+
+    private final ResultSet rs;
+    private final int[] indices;
+    private final int[] tipos;
+    private final LectorColumna[] lectores;
+
+    /**
+     * @param columnas columnas a leer, en el orden en que se dejan en la fila
+     */
+    LectorColumnas(ResultSet rs, List<String> columnas) throws SQLException {
+        this.rs = rs;
+        this.indices = new int[columnas.size()];
+        this.tipos = new int[columnas.size()];
+        this.lectores = new LectorColumna[columnas.size()];
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = rs.findColumn(columnas.get(i));
+            tipos[i] = metaData.getColumnType(indices[i]);
+            lectores[i] = lectorPara(tipos[i]);
+        }
+    }
+
+    /** Avanza el cursor y copia la fila actual en {@code fila}; false al terminar. */
+    boolean siguiente(Object[] fila) throws SQLException {
+        if (!rs.next()) {
+            return false;
+        }
+        for (int i = 0; i < indices.length; i++) {
+            fila[i] = lectores[i].leer(rs, indices[i]);
+        }
+        return true;
+    }
+
+    /** Tipos SQL de las columnas leídas, en el orden de la fila. */
+    int[] tipos() {
+        return tipos;
+    }
+
+    /** Lote vacío para {@link #llenar}, con una columna por columna leída. */
+    LoteColumnar crearLote() {
+        return new LoteColumnar(tipos);
+    }
+
+    /**
+     * Vacía el lote y lo llena con hasta {@code maximo} filas del cursor; devuelve las
+     * filas leídas, 0 al terminar.
+     */
+    int llenar(LoteColumnar lote, int maximo) throws SQLException {
+        lote.preparar(maximo);
+        for (int fila = 0; fila < maximo && rs.next(); fila++) {
+            for (int c = 0; c < indices.length; c++) {
+                int i = indices[c];
+                switch (tipos[c]) {
+                    case Types.INTEGER:
+                        lote.ponerEntero(c, fila, rs.getInt(i), rs.wasNull());
+                        break;
+                    case Types.BIGINT:
+                        lote.ponerEntero(c, fila, rs.getLong(i), rs.wasNull());
+                        break;
+                    case Types.SMALLINT:
+                    case Types.TINYINT:
+                        lote.ponerEntero(c, fila, rs.getShort(i), rs.wasNull());
+                        break;
+                    case Types.BIT:
+                    case Types.BOOLEAN:
+                        lote.ponerEntero(c, fila, rs.getBoolean(i) ? 1 : 0, rs.wasNull());
+                        break;
+                    case Types.REAL:
+                        lote.ponerReal(c, fila, rs.getFloat(i), rs.wasNull());
+                        break;
+                    case Types.FLOAT:
+                    case Types.DOUBLE:
+                        lote.ponerReal(c, fila, rs.getDouble(i), rs.wasNull());
+                        break;
+                    default:
+                        lote.ponerObjeto(c, fila, lectores[c].leer(rs, i));
+                        break;
+                }
+            }
+            lote.filaCompleta();
+        }
+        return lote.filas();
+    }
+
+    static Statement crearStatement(Connection conn, int tamanioFetch) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        configurar(stmt, tamanioFetch);
+        return stmt;
+    }
+
+    static PreparedStatement prepararConsulta(Connection conn, String consulta, int tamanioFetch) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(consulta, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        configurar(stmt, tamanioFetch);
+        return stmt;
+    }
+
+    private static void configurar(Statement stmt, int tamanioFetch) throws SQLException {
+        if (tamanioFetch > 0) {
+            stmt.setFetchSize(tamanioFetch);
+        }
+        // Aunque la URL de conexión pida responseBuffering=full
+        if (stmt.isWrapperFor(ISQLServerStatement.class)) {
+            stmt.unwrap(ISQLServerStatement.class).setResponseBuffering("adaptive");
+        }
+    }
+
+    private static LectorColumna lectorPara(int tipoSql) {
+        switch (tipoSql) {
+            case Types.INTEGER:
+                return (rs, i) -> {
+                    int valor = rs.getInt(i);
+                    return rs.wasNull() ? null : valor;
+                };
+            case Types.BIGINT:
+                return (rs, i) -> {
+                    long valor = rs.getLong(i);
+                    return rs.wasNull() ? null : valor;
+                };
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return (rs, i) -> {
+                    short valor = rs.getShort(i);
+                    return rs.wasNull() ? null : valor;
+                };
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return (rs, i) -> {
+                    boolean valor = rs.getBoolean(i);
+                    return rs.wasNull() ? null : valor;
+                };
+            case Types.REAL:
+                return (rs, i) -> {
+                    float valor = rs.getFloat(i);
+                    return rs.wasNull() ? null : valor;
+                };
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return (rs, i) -> {
+                    double valor = rs.getDouble(i);
+                    return rs.wasNull() ? null : valor;
+                };
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return ResultSet::getBigDecimal;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return ResultSet::getString;
+            case Types.TIMESTAMP:
+                return ResultSet::getTimestamp;
+            case Types.DATE:
+                return ResultSet::getDate;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return ResultSet::getBytes;
+            default:
+                // datetimeoffset, time, uniqueidentifier, sql_variant...: lo que decida el driver
+                return ResultSet::getObject;
+        }
+    }
+}
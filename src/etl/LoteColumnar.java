@@ -0,0 +1,192 @@
+package src.etl;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Lote de filas del origen guardado por columnas: los enteros y booleanos en un long[],
+ * los números de coma flotante en un double[] y el resto (texto, decimales, fechas,
+ * binarios) en un Object[], con un mapa de bits de nulos por columna.
+ *
+ * Lo llena {@link LectorColumnas#llenar} con los getters primitivos del ResultSet y lo
+ * consume {@link PlanEnlace#enlazar(java.sql.PreparedStatement, LoteColumnar, int)} con
+ * setInt, setLong, setDouble...: los valores numéricos no se convierten a Integer, Long
+ * o Double en ningún momento. Los arreglos se reutilizan de un lote al siguiente y solo
+ * crecen si se pide una capacidad mayor, así que la memoria de la carga depende de la
+ * cantidad de lotes en vuelo y no de la cantidad de filas.
+ */
+final class LoteColumnar {
+    // Forma en que se guarda cada columna
+    static final int ENTERO = 0;
+    static final int REAL = 1;
+    static final int OBJETO = 2;
+
+    // Tipos SQL de las columnas origen; el mismo arreglo en todos los lotes de una lectura
+    private final int[] tipos;
+    private final int[] clases;
+    private final long[][] enteros;
+    private final double[][] reales;
+    private final Object[][] objetos;
+    private final long[][] nulos;
+    // Fila con los valores como objetos, para los cargadores que no leen columnas
+    private final Object[] fila;
+    private int capacidad = 0;
+    private int filas = 0;
+
+    LoteColumnar(int[] tipos) {
+        this.tipos = tipos;
+        this.clases = new int[tipos.length];
+        this.enteros = new long[tipos.length][];
+        this.reales = new double[tipos.length][];
+        this.objetos = new Object[tipos.length][];
+        this.nulos = new long[tipos.length][];
+        this.fila = new Object[tipos.length];
+        for (int c = 0; c < tipos.length; c++) {
+            clases[c] = clase(tipos[c]);
+        }
+    }
+
+    /** Forma en que se guarda una columna del tipo SQL indicado. */
+    static int clase(int tipoSql) {
+        switch (tipoSql) {
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return ENTERO;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return REAL;
+            default:
+                return OBJETO;
+        }
+    }
+
+    int[] tipos() {
+        return tipos;
+    }
+
+    int claseColumna(int columna) {
+        return clases[columna];
+    }
+
+    int columnas() {
+        return tipos.length;
+    }
+
+    int filas() {
+        return filas;
+    }
+
+    /** Vacía el lote y se asegura de que quepan {@code capacidad} filas. */
+    void preparar(int capacidad) {
+        if (capacidad > this.capacidad) {
+            int palabras = (capacidad + 63) >>> 6;
+            for (int c = 0; c < tipos.length; c++) {
+                switch (clases[c]) {
+                    case ENTERO:
+                        enteros[c] = new long[capacidad];
+                        break;
+                    case REAL:
+                        reales[c] = new double[capacidad];
+                        break;
+                    default:
+                        objetos[c] = new Object[capacidad];
+                        break;
+                }
+                nulos[c] = new long[palabras];
+            }
+            this.capacidad = capacidad;
+        } else {
+            int palabras = (filas + 63) >>> 6;
+            for (int c = 0; c < tipos.length; c++) {
+                Arrays.fill(nulos[c], 0, palabras, 0L);
+            }
+        }
+        filas = 0;
+    }
+
+    /** Suma al lote la fila siguiente, ya escrita en todas las columnas. */
+    void filaCompleta() {
+        filas++;
+    }
+
+    void ponerEntero(int columna, int fila, long valor, boolean nulo) {
+        if (nulo) {
+            nulos[columna][fila >>> 6] |= 1L << fila;
+        } else {
+            enteros[columna][fila] = valor;
+        }
+    }
+
+    void ponerReal(int columna, int fila, double valor, boolean nulo) {
+        if (nulo) {
+            nulos[columna][fila >>> 6] |= 1L << fila;
+        } else {
+            reales[columna][fila] = valor;
+        }
+    }
+
+    void ponerObjeto(int columna, int fila, Object valor) {
+        objetos[columna][fila] = valor;
+        if (valor == null) {
+            nulos[columna][fila >>> 6] |= 1L << fila;
+        }
+    }
+
+    boolean esNulo(int columna, int fila) {
+        return (nulos[columna][fila >>> 6] & (1L << fila)) != 0;
+    }
+
+    long entero(int columna, int fila) {
+        return enteros[columna][fila];
+    }
+
+    double real(int columna, int fila) {
+        return reales[columna][fila];
+    }
+
+    Object objeto(int columna, int fila) {
+        return objetos[columna][fila];
+    }
+
+    /** El valor como objeto, del mismo tipo Java que devolvería getObject (o null). */
+    Object valor(int columna, int fila) {
+        if (esNulo(columna, fila)) {
+            return null;
+        }
+        switch (tipos[columna]) {
+            case Types.INTEGER:
+                return (int) enteros[columna][fila];
+            case Types.BIGINT:
+                return enteros[columna][fila];
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return (short) enteros[columna][fila];
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return enteros[columna][fila] != 0;
+            case Types.REAL:
+                return (float) reales[columna][fila];
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return reales[columna][fila];
+            default:
+                return objetos[columna][fila];
+        }
+    }
+
+    /**
+     * Copia la fila a un arreglo de valores que el lote reutiliza: sirve hasta la próxima
+     * llamada y no debe guardarse.
+     */
+    Object[] fila(int fila) {
+        for (int c = 0; c < tipos.length; c++) {
+            this.fila[c] = valor(c, fila);
+        }
+        return this.fila;
+    }
+}
@@ -0,0 +1,147 @@
+package src.etl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Mapa de huella de clave a huella de fila (long -> long) con direccionamiento abierto
+ * sobre dos long[], sin objetos por entrada. Igual que en {@link ConjuntoHuellas}, el 0
+ * marca una celda vacía: las claves y los valores 0 se guardan como 1.
+ *
+ * El archivo, que se escribe solo al terminar una carga, guarda además de las entradas
+ * la firma del trabajo y un marcador del contenido del destino en ese momento: el mapa de
+ * otro mapeo o transformación, o de un destino que cambió desde entonces, no se vuelve a leer.
+ */
+final class MapaHuellas {
+    private static final int MAGICO = 0x45544D35; // "ETM5": con la firma del trabajo y el marcador del destino
+    private static final long VACIO = 0L;
+
+    private long[] claves;
+    private long[] valores;
+    private int tamanio;
+
+    MapaHuellas(int capacidadEsperada) {
+        int capacidad = 16;
+        while (capacidad < capacidadEsperada * 2L) {
+            capacidad <<= 1;
+        }
+        claves = new long[capacidad];
+        valores = new long[capacidad];
+    }
+
+    /** Asocia la huella de fila a la clave, reemplazando la anterior. */
+    void poner(long clave, long valor) {
+        if (clave == VACIO) {
+            clave = 1L;
+        }
+        if (valor == VACIO) {
+            valor = 1L;
+        }
+        if ((tamanio + 1) * 2 > claves.length) {
+            redimensionar();
+        }
+        int mascara = claves.length - 1;
+        int i = posicionInicial(clave, mascara);
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = clave;
+        valores[i] = valor;
+        tamanio++;
+    }
+
+    /** Huella de fila de la clave, o 0 si la clave no está. */
+    long obtener(long clave) {
+        if (clave == VACIO) {
+            clave = 1L;
+        }
+        int mascara = claves.length - 1;
+        int i = posicionInicial(clave, mascara);
+        while (claves[i] != VACIO) {
+            if (claves[i] == clave) {
+                return valores[i];
+            }
+            i = (i + 1) & mascara;
+        }
+        return VACIO;
+    }
+
+    private static int posicionInicial(long clave, int mascara) {
+        return (int) (clave ^ (clave >>> 32)) & mascara;
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    private void redimensionar() {
+        long[] clavesAnteriores = claves;
+        long[] valoresAnteriores = valores;
+        claves = new long[clavesAnteriores.length << 1];
+        valores = new long[clavesAnteriores.length << 1];
+        tamanio = 0;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != VACIO) {
+                poner(clavesAnteriores[i], valoresAnteriores[i]);
+            }
+        }
+    }
+
+    /**
+     * Escribe el mapa en un archivo temporal y lo mueve de forma atómica sobre el destino.
+     *
+     * @param firma    identifica las columnas y transformaciones que produjeron las huellas
+     * @param marcador describe el contenido del destino al terminar la carga
+     */
+    void guardar(Path archivo, String firma, String marcador) throws IOException {
+        Files.createDirectories(archivo.toAbsolutePath().getParent());
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+            out.writeInt(MAGICO);
+            out.writeUTF(firma);
+            out.writeUTF(marcador);
+            out.writeInt(tamanio);
+            for (int i = 0; i < claves.length; i++) {
+                if (claves[i] != VACIO) {
+                    out.writeLong(claves[i]);
+                    out.writeLong(valores[i]);
+                }
+            }
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee un mapa guardado con la misma {@code firma} cuando el destino todavía tiene el mismo
+     * {@code marcador}; si no, falla con IOException.
+     */
+    static MapaHuellas cargar(Path archivo, String firma, String marcador) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (in.readInt() != MAGICO) {
+                throw new IOException("El archivo de huellas '" + archivo + "' no tiene un formato válido.");
+            }
+            if (!in.readUTF().equals(firma)) {
+                throw new IOException("'" + archivo + "' es de otro mapeo de columnas o de otras transformaciones.");
+            }
+            if (!in.readUTF().equals(marcador)) {
+                throw new IOException("el destino cambió desde que se escribió '" + archivo + "'.");
+            }
+            int cantidad = in.readInt();
+            MapaHuellas mapa = new MapaHuellas(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                mapa.poner(in.readLong(), in.readLong());
+            }
+            return mapa;
+        }
+    }
+}
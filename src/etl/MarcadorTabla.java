@@ -0,0 +1,56 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Marcador del contenido de una tabla destino, para saber si cambió desde que se guardó
+ * estado local sobre ella (huellas, índice de cambios). Se obtiene del catálogo sin
+ * recorrer la tabla: cantidad de filas de sys.partitions, modify_date de sys.objects y,
+ * si la tabla tiene una columna rowversion, su máximo, que cambia con cualquier INSERT
+ * o UPDATE. Sin rowversion un UPDATE que no cambia la cantidad de filas no se detecta.
+ */
+final class MarcadorTabla {
+    // system_type_id de rowversion (timestamp)
+    private static final int ROWVERSION = 189;
+
+    final String valor;
+    final boolean conVersionFila;
+
+    private MarcadorTabla(String valor, boolean conVersionFila) {
+        this.valor = valor;
+        this.conVersionFila = conVersionFila;
+    }
+
+    static MarcadorTabla leer(Connection conn, String tabla) throws SQLException {
+        String filas;
+        String modificada;
+        String columnaVersion;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT CONVERT(VARCHAR(30), o.modify_date, 126), "
+                + "(SELECT SUM(p.rows) FROM sys.partitions p WHERE p.object_id = o.object_id AND p.index_id IN (0, 1)), "
+                + "(SELECT TOP 1 c.name FROM sys.columns c WHERE c.object_id = o.object_id AND c.system_type_id = "
+                + ROWVERSION + ") FROM sys.objects o WHERE o.object_id = OBJECT_ID(?)")) {
+            stmt.setString(1, tabla);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("La tabla '" + tabla + "' no existe.");
+                }
+                modificada = rs.getString(1);
+                filas = rs.getString(2);
+                columnaVersion = rs.getString(3);
+            }
+        }
+        if (columnaVersion == null) {
+            return new MarcadorTabla(filas + "|" + modificada, false);
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CONVERT(VARCHAR(20), MAX([" + columnaVersion.replace("]", "]]")
+                     + "]), 1) FROM " + tabla)) {
+            rs.next();
+            return new MarcadorTabla(filas + "|" + modificada + "|" + rs.getString(1), true);
+        }
+    }
+}
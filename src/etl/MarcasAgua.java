@@ -0,0 +1,143 @@
+package src.etl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marcas de agua de la extracción incremental, guardadas en un archivo properties del
+ * directorio de estado. Cada clave identifica una carga (tabla destino, origen y columna de
+ * marca) y su valor es el máximo de la columna ya cargado y confirmado.
+ *
+ * Se admiten columnas numéricas (identity), de fecha (LastActivityDate) y rowversion.
+ * Con identity o fechas, una transacción del origen que confirme tarde un valor menor
+ * a la marca ya guardada no se vuelve a leer; rowversion no tiene ese problema.
+ *
+ * Hay una sola instancia por archivo en el proceso ({@link #de}): los trabajos que corren
+ * en paralelo leen y reescriben el archivo de a uno, sin perder las marcas de los demás.
+ */
+final class MarcasAgua {
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSSS");
+
+    private static final Map<Path, MarcasAgua> POR_ARCHIVO = new ConcurrentHashMap<>();
+
+    private final Path archivo;
+
+    private MarcasAgua(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    /** Marcas de agua del archivo, compartidas por todos los trabajos del proceso. */
+    static MarcasAgua de(Path archivo) {
+        return POR_ARCHIVO.computeIfAbsent(archivo.toAbsolutePath().normalize(), MarcasAgua::new);
+    }
+
+    /** Devuelve la última marca confirmada para la clave, o null si nunca se cargó. */
+    synchronized Object obtener(String clave) throws IOException {
+        String valor = leer().getProperty(clave);
+        return valor == null ? null : desdeTexto(valor);
+    }
+
+    /** Guarda la marca de forma atómica (archivo temporal + move) sin perder las demás claves. */
+    synchronized void guardar(String clave, Object marca) throws IOException {
+        Properties marcas = leer();
+        marcas.setProperty(clave, aTexto(marca));
+
+        Files.createDirectories(archivo.getParent());
+        // Nombre temporal único: otro proceso puede estar guardando en el mismo directorio
+        Path temporal = Files.createTempFile(archivo.getParent(), archivo.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporal)) {
+            marcas.store(out, "Marcas de agua de la extracción incremental");
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Properties leer() throws IOException {
+        Properties marcas = new Properties();
+        if (Files.exists(archivo)) {
+            try (InputStream in = Files.newInputStream(archivo)) {
+                marcas.load(in);
+            }
+        }
+        return marcas;
+    }
+
+    /** Literal SQL Server para comparar la columna de marca con el valor. */
+    static String literalSQL(Object marca) {
+        if (marca instanceof Number) {
+            return marca instanceof BigDecimal ? ((BigDecimal) marca).toPlainString() : marca.toString();
+        }
+        if (marca instanceof Timestamp) {
+            return "CONVERT(DATETIME2, '" + ((Timestamp) marca).toLocalDateTime().format(FORMATO_FECHA) + "', 121)";
+        }
+        if (marca instanceof java.sql.Date) {
+            return "CONVERT(DATE, '" + marca + "', 23)";
+        }
+        if (marca instanceof byte[]) {
+            return "0x" + hexadecimal((byte[]) marca);
+        }
+        return "'" + marca.toString().replace("'", "''") + "'";
+    }
+
+    /** Valor de la marca con su tipo, tal como se guarda en el archivo. */
+    static String aTexto(Object marca) {
+        if (marca instanceof Long || marca instanceof Integer || marca instanceof Short || marca instanceof Byte) {
+            return "entero:" + marca;
+        }
+        if (marca instanceof Number) {
+            return "decimal:" + new BigDecimal(marca.toString()).toPlainString();
+        }
+        if (marca instanceof Timestamp) {
+            return "fecha:" + ((Timestamp) marca).toLocalDateTime();
+        }
+        if (marca instanceof java.sql.Date) {
+            return "dia:" + marca;
+        }
+        if (marca instanceof byte[]) {
+            return "binario:" + hexadecimal((byte[]) marca);
+        }
+        return "texto:" + marca;
+    }
+
+    static Object desdeTexto(String texto) {
+        int separador = texto.indexOf(':');
+        String tipo = texto.substring(0, separador);
+        String valor = texto.substring(separador + 1);
+        switch (tipo) {
+            case "entero":
+                return Long.parseLong(valor);
+            case "decimal":
+                return new BigDecimal(valor);
+            case "fecha":
+                return Timestamp.valueOf(LocalDateTime.parse(valor));
+            case "dia":
+                return java.sql.Date.valueOf(valor);
+            case "binario":
+                byte[] bytes = new byte[valor.length() / 2];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = (byte) Integer.parseInt(valor.substring(i * 2, i * 2 + 2), 16);
+                }
+                return bytes;
+            default:
+                return valor;
+        }
+    }
+
+    private static String hexadecimal(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString().toUpperCase();
+    }
+}
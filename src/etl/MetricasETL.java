@@ -0,0 +1,309 @@
+package src.etl;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas de ejecución de un trabajo: filas por etapa, latencias de lectura de la
+ * fuente, de transformación (total y por columna), de ejecutarLote y de commit, tiempos
+ * de espera entre etapas, profundidad de las colas y errores, reintentos y reconexiones.
+ *
+ * Las esperas indican el cuello de botella: si la carga espera filas, el límite está en
+ * el origen o en la transformación; si el lector espera filas libres, en el destino.
+ * La lectura y la transformación se cronometran una de cada {@code MUESTREO} filas para
+ * no pagar dos System.nanoTime por fila; los lotes y commits, siempre.
+ *
+ * Se publican por JMX y, cada {@code etl.metricas.intervalo.s} segundos, en una línea
+ * "METRICAS clave=valor ..." fácil de procesar.
+ */
+final class MetricasETL implements MetricasETLMBean {
+    /** Se mide una de cada MUESTREO filas (potencia de dos). */
+    static final int MUESTREO = 64;
+
+    private final String trabajo;
+    private final long inicio = System.nanoTime();
+
+    final LongAdder filasLeidas = new LongAdder();
+    final LongAdder filasCargadas = new LongAdder();
+    final LongAdder errores = new LongAdder();
+    final LongAdder reintentos = new LongAdder();
+    final LongAdder reconexiones = new LongAdder();
+    final LongAdder esperaLectorNanos = new LongAdder();
+    final LongAdder esperaCargaNanos = new LongAdder();
+
+    final HistogramaLatencia lectura = new HistogramaLatencia();
+    final HistogramaLatencia transformacion = new HistogramaLatencia();
+    final HistogramaLatencia ejecutarLote = new HistogramaLatencia();
+    final HistogramaLatencia commit = new HistogramaLatencia();
+
+    // Valores actuales del ControladorLote
+    volatile int tamanioLote;
+    volatile int lotesPorCommit;
+
+    private final Map<String, IntSupplier> colas = new LinkedHashMap<>();
+    private volatile List<String> columnas = List.of();
+    private volatile LongAdder[] nanosColumna = new LongAdder[0];
+    private volatile LongAdder[] muestrasColumna = new LongAdder[0];
+
+    private ObjectName nombreJmx;
+    private ScheduledExecutorService informe;
+    private long filasInformeAnterior;
+    private long nanosInformeAnterior = inicio;
+
+    MetricasETL(String trabajo) {
+        this.trabajo = trabajo;
+    }
+
+    /** Columnas de la fila en la etapa de transformación, para el desglose por columna. */
+    void columnas(List<String> columnas) {
+        LongAdder[] nanos = new LongAdder[columnas.size()];
+        LongAdder[] muestras = new LongAdder[columnas.size()];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+            muestras[i] = new LongAdder();
+        }
+        this.nanosColumna = nanos;
+        this.muestrasColumna = muestras;
+        this.columnas = List.copyOf(columnas);
+    }
+
+    void operacionColumna(int columna, long nanos) {
+        nanosColumna[columna].add(nanos);
+        muestrasColumna[columna].increment();
+    }
+
+    /** Registra una cola cuya profundidad actual se informa con el nombre dado. */
+    synchronized void cola(String nombre, IntSupplier profundidad) {
+        colas.put(nombre, profundidad);
+    }
+
+    /**
+     * Publica las métricas por JMX (si {@code jmx}) y empieza el informe periódico (si
+     * {@code intervaloSegundos} > 0).
+     */
+    void iniciar(boolean jmx, int intervaloSegundos) {
+        if (jmx) {
+            try {
+                MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+                ObjectName nombre = new ObjectName("src.etl:type=MetricasETL,trabajo=" + ObjectName.quote(trabajo));
+                if (servidor.isRegistered(nombre)) {
+                    servidor.unregisterMBean(nombre);
+                }
+                servidor.registerMBean(this, nombre);
+                nombreJmx = nombre;
+            } catch (JMException e) {
+                System.out.println("No se pudieron publicar las métricas por JMX: " + e.getMessage());
+            }
+        }
+        if (intervaloSegundos > 0) {
+            informe = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "etl-metricas");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            informe.scheduleAtFixedRate(() -> System.out.println(lineaInforme()), intervaloSegundos,
+                    intervaloSegundos, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Detiene el informe periódico, imprime la línea final y retira el MBean. */
+    void detener() {
+        if (informe != null) {
+            informe.shutdownNow();
+        }
+        System.out.println(lineaInforme());
+        if (nombreJmx != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(nombreJmx);
+            } catch (JMException e) {
+                // Ya no estaba registrado
+            }
+        }
+    }
+
+    private synchronized String lineaInforme() {
+        long ahora = System.nanoTime();
+        long cargadas = filasCargadas.sum();
+        double intervalo = (ahora - nanosInformeAnterior) / 1e9;
+        double filasPorSegundoIntervalo = intervalo > 0 ? (cargadas - filasInformeAnterior) / intervalo : 0;
+        filasInformeAnterior = cargadas;
+        nanosInformeAnterior = ahora;
+        return "METRICAS " + resumen(ahora) + String.format(Locale.ROOT, " filas_s_intervalo=%.0f", filasPorSegundoIntervalo);
+    }
+
+    private String resumen(long ahora) {
+        StringBuilder linea = new StringBuilder();
+        linea.append("trabajo=").append(trabajo.replace(' ', '_'))
+             .append(String.format(Locale.ROOT, " t_s=%.1f", (ahora - inicio) / 1e9))
+             .append(" filas_leidas=").append(filasLeidas.sum())
+             .append(" filas_cargadas=").append(filasCargadas.sum())
+             .append(String.format(Locale.ROOT, " filas_s=%.0f", getFilasPorSegundo()))
+             .append(" lectura_p50_us=").append(getLecturaP50Micros())
+             .append(" lectura_p99_us=").append(getLecturaP99Micros())
+             .append(" transformacion_p50_us=").append(getTransformacionP50Micros())
+             .append(" transformacion_p99_us=").append(getTransformacionP99Micros())
+             .append(String.format(Locale.ROOT, " lote_p50_ms=%.2f lote_p99_ms=%.2f lote_max_ms=%.2f",
+                     getEjecutarLoteP50Millis(), getEjecutarLoteP99Millis(), ejecutarLote.maximo() / 1e6))
+             .append(String.format(Locale.ROOT, " commit_p50_ms=%.2f commit_p99_ms=%.2f",
+                     getCommitP50Millis(), getCommitP99Millis()))
+             .append(" lote_filas=").append(tamanioLote)
+             .append(" lotes_por_commit=").append(lotesPorCommit)
+             .append(" espera_lector_ms=").append(getEsperaLectorMillis())
+             .append(" espera_carga_ms=").append(getEsperaCargaMillis());
+        synchronized (this) {
+            for (Map.Entry<String, IntSupplier> cola : colas.entrySet()) {
+                linea.append(" cola_").append(cola.getKey()).append('=').append(cola.getValue().getAsInt());
+            }
+        }
+        String porColumna = getTransformacionPorColumnaNanos();
+        if (!porColumna.isEmpty()) {
+            linea.append(" transformacion_columnas_ns=").append(porColumna.replace(", ", ","));
+        }
+        linea.append(" errores=").append(errores.sum())
+             .append(" reintentos=").append(reintentos.sum())
+             .append(" reconexiones=").append(reconexiones.sum());
+        return linea.toString();
+    }
+
+    @Override
+    public String getTrabajo() {
+        return trabajo;
+    }
+
+    @Override
+    public long getFilasLeidas() {
+        return filasLeidas.sum();
+    }
+
+    @Override
+    public long getFilasCargadas() {
+        return filasCargadas.sum();
+    }
+
+    @Override
+    public double getFilasPorSegundo() {
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        return segundos > 0 ? filasCargadas.sum() / segundos : 0;
+    }
+
+    @Override
+    public long getLecturaP50Micros() {
+        return lectura.percentil(0.50) / 1000;
+    }
+
+    @Override
+    public long getLecturaP99Micros() {
+        return lectura.percentil(0.99) / 1000;
+    }
+
+    @Override
+    public long getTransformacionP50Micros() {
+        return transformacion.percentil(0.50) / 1000;
+    }
+
+    @Override
+    public long getTransformacionP99Micros() {
+        return transformacion.percentil(0.99) / 1000;
+    }
+
+    @Override
+    public double getEjecutarLoteP50Millis() {
+        return ejecutarLote.percentil(0.50) / 1e6;
+    }
+
+    @Override
+    public double getEjecutarLoteP99Millis() {
+        return ejecutarLote.percentil(0.99) / 1e6;
+    }
+
+    @Override
+    public double getCommitP50Millis() {
+        return commit.percentil(0.50) / 1e6;
+    }
+
+    @Override
+    public double getCommitP99Millis() {
+        return commit.percentil(0.99) / 1e6;
+    }
+
+    @Override
+    public int getTamanioLote() {
+        return tamanioLote;
+    }
+
+    @Override
+    public int getLotesPorCommit() {
+        return lotesPorCommit;
+    }
+
+    @Override
+    public long getEsperaLectorMillis() {
+        return esperaLectorNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public long getEsperaCargaMillis() {
+        return esperaCargaNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public synchronized String getProfundidadColas() {
+        StringBuilder texto = new StringBuilder();
+        for (Map.Entry<String, IntSupplier> cola : colas.entrySet()) {
+            if (texto.length() > 0) {
+                texto.append(", ");
+            }
+            texto.append(cola.getKey()).append('=').append(cola.getValue().getAsInt());
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public String getTransformacionPorColumnaNanos() {
+        List<String> nombres = columnas;
+        LongAdder[] nanos = nanosColumna;
+        LongAdder[] muestras = muestrasColumna;
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < nanos.length; i++) {
+            long cantidad = muestras[i].sum();
+            if (cantidad > 0) {
+                if (texto.length() > 0) {
+                    texto.append(", ");
+                }
+                texto.append(nombres.get(i)).append('=').append(nanos[i].sum() / cantidad);
+            }
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    @Override
+    public long getReintentos() {
+        return reintentos.sum();
+    }
+
+    @Override
+    public long getReconexiones() {
+        return reconexiones.sum();
+    }
+
+    @Override
+    public String getResumen() {
+        return resumen(System.nanoTime());
+    }
+}
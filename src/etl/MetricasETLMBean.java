@@ -0,0 +1,53 @@
+package src.etl;
+
+/**
+ * Métricas de un trabajo ETL en curso expuestas por JMX (src.etl:type=MetricasETL,trabajo=...).
+ * Los tiempos de lectura y transformación son muestreados; los de lote y commit, exactos.
+ */
+public interface MetricasETLMBean {
+
+    String getTrabajo();
+
+    long getFilasLeidas();
+
+    long getFilasCargadas();
+
+    double getFilasPorSegundo();
+
+    long getLecturaP50Micros();
+
+    long getLecturaP99Micros();
+
+    long getTransformacionP50Micros();
+
+    long getTransformacionP99Micros();
+
+    double getEjecutarLoteP50Millis();
+
+    double getEjecutarLoteP99Millis();
+
+    double getCommitP50Millis();
+
+    double getCommitP99Millis();
+
+    int getTamanioLote();
+
+    int getLotesPorCommit();
+
+    long getEsperaLectorMillis();
+
+    long getEsperaCargaMillis();
+
+    String getProfundidadColas();
+
+    String getTransformacionPorColumnaNanos();
+
+    long getErrores();
+
+    long getReintentos();
+
+    long getReconexiones();
+
+    /** La misma línea clave=valor del informe periódico. */
+    String getResumen();
+}
@@ -0,0 +1,15 @@
+package src.etl;
+
+/**
+ * Modos de carga disponibles para la tabla destino.
+ */
+enum ModoCarga {
+    // UPDATE + IF @@ROWCOUNT = 0 INSERT (o IF NOT EXISTS sin PK) por cada registro
+    FILA_A_FILA,
+    // INSERT por lotes en una tabla temporal y un MERGE por bloque
+    STAGING,
+    // Tablas sin PK: descarte previo por huella en el cliente y staging + MERGE de las filas restantes
+    DEDUPLICADO,
+    // Solo inserta, con SQLServerBulkCopy (cargas iniciales y recargas completas)
+    BULK_COPY
+}
@@ -0,0 +1,146 @@
+package src.etl;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reescribe la consulta generada para una tabla origen (origen.tabla y origen.columnas)
+ * para que SQL Server resuelva las transformaciones que puede hacer igual que
+ * {@link TransformacionFila}: LOWER(col), UPPER(col), DATEPART(year, col) y col + 'x'.
+ * Cada expresión conserva el nombre de la columna con AS, así que el mapeo, las
+ * particiones y las marcas de agua no cambian. Las transformaciones que no se pueden
+ * resolver en SQL con el mismo resultado siguen aplicándose en Java.
+ *
+ * También agrega el filtro del trabajo (origen.filtro) a la consulta, para que las filas
+ * descartadas no crucen la red.
+ */
+final class OptimizadorConsulta {
+
+    /** Consulta reescrita y transformaciones que quedan para Java. */
+    static final class Resultado {
+        final String consulta;
+        final Map<String, String> transformaciones;
+        final List<String> resueltas;
+
+        private Resultado(String consulta, Map<String, String> transformaciones, List<String> resueltas) {
+            this.consulta = consulta;
+            this.transformaciones = transformaciones;
+            this.resueltas = resueltas;
+        }
+    }
+
+    private OptimizadorConsulta() {
+    }
+
+    /**
+     * @param metaData   estructura de la consulta sin reescribir, para conocer el tipo de cada columna
+     * @param excluidas  columnas que deben llegar sin transformar al cliente (marca de agua, partición)
+     * @param filtro     condición WHERE del trabajo, o null
+     */
+    static Resultado optimizar(String tabla, List<String> columnas, ResultSetMetaData metaData,
+            Map<String, String> transformaciones, Set<String> excluidas, String filtro) throws SQLException {
+        Map<String, String> restantes = new LinkedHashMap<>(transformaciones);
+        List<String> resueltas = new ArrayList<>();
+        List<String> seleccion = new ArrayList<>();
+        for (int i = 0; i < columnas.size(); i++) {
+            String columna = columnas.get(i);
+            String transformacion = transformaciones.get(columna);
+            String expresion = excluidas.contains(columna) ? null
+                    : expresion(columna, transformacion, metaData.getColumnType(i + 1));
+            if (expresion == null) {
+                seleccion.add(columna);
+            } else {
+                seleccion.add(expresion + " AS " + columna);
+                restantes.remove(columna);
+                resueltas.add(columna + "=" + transformacion);
+            }
+        }
+        String consulta = "SELECT " + String.join(", ", seleccion) + " FROM " + tabla;
+        if (filtro != null) {
+            consulta += " WHERE " + filtro;
+        }
+        return new Resultado(consulta, restantes, resueltas);
+    }
+
+    /** Filtro sobre una consulta escrita a mano, que se usa como tabla derivada. */
+    static String filtrar(String consulta, String filtro) {
+        return "SELECT * FROM (" + consulta + ") AS q WHERE " + filtro;
+    }
+
+    /**
+     * Expresión SQL equivalente a la transformación sobre una columna del tipo indicado,
+     * o null si no la hay. NULL queda NULL en ambos casos, como en TransformacionFila.
+     */
+    static String expresion(String columna, String transformacion, int tipoSql) {
+        if (transformacion == null || "none".equals(transformacion)) {
+            return null;
+        }
+        String[] partes = transformacion.split(":", 2);
+        String argumento = partes.length > 1 ? partes[1] : "";
+
+        switch (partes[0]) {
+            // En Java se aplican sobre toString(): solo coinciden con SQL en columnas de texto
+            case "lower":
+                return esTexto(tipoSql) ? "LOWER(" + columna + ")" : null;
+            case "upper":
+                return esTexto(tipoSql) ? "UPPER(" + columna + ")" : null;
+            case "concat":
+                if (!esTexto(tipoSql)) {
+                    return null;
+                }
+                String literal = "'" + argumento.replace("'", "''") + "'";
+                return "(" + columna + " + " + (esUnicode(tipoSql) ? "N" + literal : literal) + ")";
+            case "date":
+                String parte = parteFecha(argumento, tipoSql);
+                return parte == null ? null : "DATEPART(" + parte + ", " + columna + ")";
+            default:
+                return null;
+        }
+    }
+
+    // Los tipos LONG (text, ntext) no admiten LOWER, UPPER ni +
+    private static boolean esTexto(int tipoSql) {
+        switch (tipoSql) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean esUnicode(int tipoSql) {
+        return tipoSql == Types.NCHAR || tipoSql == Types.NVARCHAR;
+    }
+
+    private static String parteFecha(String parteFecha, int tipoSql) {
+        if (tipoSql != Types.TIMESTAMP && tipoSql != Types.DATE) {
+            return null;
+        }
+        switch (parteFecha.toLowerCase()) {
+            case "año":
+                return "year";
+            case "mes":
+                return "month";
+            case "día":
+                return "day";
+            case "hora":
+                // En Java la hora de una fecha sin hora es 0; DATEPART(hour) no admite DATE
+                return tipoSql == Types.TIMESTAMP ? "hour" : null;
+            case "minuto":
+                return tipoSql == Types.TIMESTAMP ? "minute" : null;
+            case "segundo":
+                return tipoSql == Types.TIMESTAMP ? "second" : null;
+            default:
+                return null;
+        }
+    }
+}
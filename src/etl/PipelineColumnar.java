@@ -0,0 +1,146 @@
+package src.etl;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Variante de {@link PipelineETL} que hace circular {@link LoteColumnar} en lugar de
+ * filas: un hilo lee el cursor de la fuente lote a lote, aplica las transformaciones
+ * sobre el lote y lo deja para la carga, que lo devuelve con {@link #liberar} cuando ya
+ * no lo necesita (después del commit, porque ante un reintento lo vuelve a enviar).
+ *
+ * La cantidad de lotes es fija, así que la memoria de la carga queda acotada por
+ * lotes x filas por lote x columnas, sin importar el tamaño de la tabla: cuando la carga
+ * retiene todos los lotes, el lector espera.
+ */
+final class PipelineColumnar implements AutoCloseable {
+    // Marca el final del flujo en la cola
+    private static final LoteColumnar FIN = new LoteColumnar(new int[0]);
+
+    private final FuenteResultSet fuente;
+    private final LectorColumnas lector;
+    private final TransformacionFila transformacion;
+    private final BlockingQueue<LoteColumnar> libres;
+    private final BlockingQueue<LoteColumnar> porCargar;
+    private final Thread hilo;
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+    private final MetricasETL metricas;
+    // Filas por lote que pide la carga; el lector la toma al empezar cada lote
+    private volatile int tamanio;
+    private boolean terminado = false;
+
+    /**
+     * @param lotes   lotes en circulación; la carga debe poder retener los de un commit
+     *                completo y aun así dejar uno libre al lector
+     * @param tamanio filas por lote hasta el primer {@link #tamanio(int)}
+     */
+    PipelineColumnar(FuenteResultSet fuente, TransformacionFila transformacion, int lotes, int tamanio,
+            MetricasETL metricas) {
+        this.fuente = fuente;
+        this.lector = fuente.lector();
+        this.transformacion = transformacion;
+        this.metricas = metricas;
+        this.tamanio = Math.max(1, tamanio);
+
+        int cantidad = Math.max(2, lotes);
+        this.libres = new ArrayBlockingQueue<>(cantidad);
+        // Capacidad extra para la marca de fin
+        this.porCargar = new ArrayBlockingQueue<>(cantidad + 1);
+        for (int i = 0; i < cantidad; i++) {
+            libres.add(lector.crearLote());
+        }
+        metricas.cola("lotes_por_cargar", porCargar::size);
+
+        this.hilo = new Thread(this::leer, "etl-lectura");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private void leer() {
+        try {
+            while (error.get() == null) {
+                LoteColumnar lote = tomar(libres, metricas.esperaLectorNanos);
+                long inicio = System.nanoTime();
+                int filas = lector.llenar(lote, tamanio);
+                if (filas == 0) {
+                    libres.put(lote);
+                    break;
+                }
+                // Como en el pipeline por filas, la lectura se registra por fila
+                metricas.lectura.registrar((System.nanoTime() - inicio) / filas);
+                metricas.filasLeidas.add(filas);
+                transformacion.aplicar(lote);
+                porCargar.put(lote);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            error.compareAndSet(null, e);
+        }
+        try {
+            porCargar.put(FIN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Filas de los próximos lotes que se lean. */
+    void tamanio(int filas) {
+        tamanio = Math.max(1, filas);
+    }
+
+    /** Siguiente lote leído y transformado, o null al terminar. */
+    LoteColumnar siguiente() throws SQLException {
+        if (terminado) {
+            return null;
+        }
+        try {
+            LoteColumnar lote = tomar(porCargar, metricas.esperaCargaNanos);
+            verificarError();
+            if (lote == FIN) {
+                terminado = true;
+                return null;
+            }
+            return lote;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Pipeline ETL interrumpido", e);
+        }
+    }
+
+    /** Devuelve un lote que la carga ya no necesita, para que el lector lo vuelva a llenar. */
+    void liberar(LoteColumnar lote) {
+        libres.add(lote);
+    }
+
+    /** take() que, si tiene que esperar, suma la espera al contador indicado. */
+    private static LoteColumnar tomar(BlockingQueue<LoteColumnar> cola, LongAdder espera)
+            throws InterruptedException {
+        LoteColumnar lote = cola.poll();
+        if (lote == null) {
+            long inicio = System.nanoTime();
+            lote = cola.take();
+            espera.add(System.nanoTime() - inicio);
+        }
+        return lote;
+    }
+
+    private void verificarError() throws SQLException {
+        Exception e = error.get();
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw new SQLException("Error en una etapa del pipeline ETL", e);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        hilo.interrupt();
+        fuente.close();
+    }
+}
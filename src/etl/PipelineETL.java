@@ -0,0 +1,180 @@
+package src.etl;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Extracción, transformación y carga solapadas en etapas con hilos propios.
+ *
+ * El lector llena filas reutilizables desde la fuente, los transformadores las
+ * transforman en el lugar y el hilo que llama a {@link #siguiente(Object[])} (la
+ * carga) las consume. Las filas circulan por un anillo de tamaño fijo: cuando la
+ * carga se atrasa el lector se queda sin filas libres y espera, y cuando la fuente
+ * se atrasa la carga espera filas transformadas, sin acumular memoria en ningún caso.
+ * Esas esperas, y el tiempo de lectura de la fuente, se registran en {@link MetricasETL}.
+ */
+class PipelineETL implements FuenteFilas {
+    // Marca el final del flujo en las colas
+    private static final Object[] FIN = new Object[0];
+
+    private final FuenteFilas fuente;
+    private final Consumer<Object[]> transformacion;
+    private final BlockingQueue<Object[]> libres;
+    private final BlockingQueue<Object[]> porTransformar;
+    private final BlockingQueue<Object[]> porCargar;
+    private final List<Thread> hilos = new ArrayList<>();
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+    private final int transformadores;
+    private final MetricasETL metricas;
+    private int transformadoresTerminados = 0;
+
+    /**
+     * @param profundidad     filas en vuelo entre las etapas (tamaño del anillo)
+     * @param transformadores hilos de transformación; con más de uno no se conserva
+     *                        el orden de las filas
+     */
+    PipelineETL(FuenteFilas fuente, Consumer<Object[]> transformacion, int columnas, int profundidad,
+            int transformadores, MetricasETL metricas) {
+        this.fuente = fuente;
+        this.transformacion = transformacion;
+        this.transformadores = Math.max(1, transformadores);
+        this.metricas = metricas;
+
+        int filas = Math.max(2, profundidad);
+        this.libres = new ArrayBlockingQueue<>(filas);
+        // Capacidad extra para las marcas de fin
+        this.porTransformar = new ArrayBlockingQueue<>(filas + this.transformadores);
+        this.porCargar = new ArrayBlockingQueue<>(filas + this.transformadores);
+        for (int i = 0; i < filas; i++) {
+            libres.add(new Object[columnas]);
+        }
+        metricas.cola("por_transformar", porTransformar::size);
+        metricas.cola("por_cargar", porCargar::size);
+
+        iniciar(new Thread(this::leer, "etl-lectura"));
+        for (int i = 1; i <= this.transformadores; i++) {
+            iniciar(new Thread(this::transformar, "etl-transformacion-" + i));
+        }
+    }
+
+    private void iniciar(Thread hilo) {
+        hilo.setDaemon(true);
+        hilos.add(hilo);
+        hilo.start();
+    }
+
+    private void leer() {
+        // Las filas leídas se suman a las métricas de a MUESTREO para no tocar el contador compartido por fila
+        int leidas = 0;
+        try {
+            while (error.get() == null) {
+                Object[] fila = tomar(libres, metricas.esperaLectorNanos);
+                boolean hay;
+                if ((leidas & (MetricasETL.MUESTREO - 1)) == 0) {
+                    long inicio = System.nanoTime();
+                    hay = fuente.siguiente(fila);
+                    metricas.lectura.registrar(System.nanoTime() - inicio);
+                } else {
+                    hay = fuente.siguiente(fila);
+                }
+                if (!hay) {
+                    libres.put(fila);
+                    break;
+                }
+                if (++leidas == MetricasETL.MUESTREO) {
+                    metricas.filasLeidas.add(leidas);
+                    leidas = 0;
+                }
+                porTransformar.put(fila);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            error.compareAndSet(null, e);
+        }
+        metricas.filasLeidas.add(leidas);
+        try {
+            for (int i = 0; i < transformadores; i++) {
+                porTransformar.put(FIN);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void transformar() {
+        try {
+            Object[] fila;
+            while ((fila = porTransformar.take()) != FIN) {
+                if (error.get() == null) {
+                    try {
+                        transformacion.accept(fila);
+                    } catch (RuntimeException e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+                porCargar.put(fila);
+            }
+            porCargar.put(FIN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean siguiente(Object[] fila) throws SQLException {
+        try {
+            while (transformadoresTerminados < transformadores) {
+                Object[] transformada = tomar(porCargar, metricas.esperaCargaNanos);
+                if (transformada == FIN) {
+                    transformadoresTerminados++;
+                    continue;
+                }
+                verificarError();
+                System.arraycopy(transformada, 0, fila, 0, fila.length);
+                libres.put(transformada);
+                return true;
+            }
+            verificarError();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Pipeline ETL interrumpido", e);
+        }
+    }
+
+    /** take() que, si tiene que esperar, suma la espera al contador indicado. */
+    private static Object[] tomar(BlockingQueue<Object[]> cola, LongAdder espera) throws InterruptedException {
+        Object[] fila = cola.poll();
+        if (fila == null) {
+            long inicio = System.nanoTime();
+            fila = cola.take();
+            espera.add(System.nanoTime() - inicio);
+        }
+        return fila;
+    }
+
+    private void verificarError() throws SQLException {
+        Exception e = error.get();
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw new SQLException("Error en una etapa del pipeline ETL", e);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        for (Thread hilo : hilos) {
+            hilo.interrupt();
+        }
+        fuente.close();
+    }
+}
@@ -0,0 +1,330 @@
+package src.etl;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enlace de una fila a los parámetros de una sentencia, calculado una sola vez por
+ * trabajo: para cada parámetro, la posición del valor en la fila y un setter elegido
+ * según el tipo de la columna destino (setInt, setString, setTimestamp...). En el bucle
+ * de carga solo se recorren dos arreglos, sin búsquedas en listas ni por nombre.
+ *
+ * Un valor que no es del tipo Java esperado (por ejemplo, tras una transformación) se
+ * enlaza con setObject, como antes; NULL se envía con setNull y el tipo de la columna.
+ *
+ * Desde un {@link LoteColumnar} los valores numéricos se enlazan con el setter primitivo
+ * directamente desde los arreglos del lote, con los mismos criterios que para una fila.
+ */
+final class PlanEnlace {
+
+    @FunctionalInterface
+    private interface Enlazador {
+        void enlazar(PreparedStatement ps, int parametro, Object valor) throws SQLException;
+    }
+
+    // Setter de un parámetro para un lote columnar
+    private static final int CON_ENLAZADOR = 0;
+    private static final int CON_INT = 1;
+    private static final int CON_LONG = 2;
+    private static final int CON_SHORT = 3;
+    private static final int CON_BOOLEAN = 4;
+    private static final int CON_DOUBLE = 5;
+    private static final int CON_FLOAT = 6;
+    // Valor primitivo de un tipo que el setter de la columna no acepta: se pasa como objeto
+    private static final int CONVERTIDO = 7;
+
+    // Por parámetro (desde 0): posición del valor en la fila, su setter y el tipo de la columna destino
+    private final int[] valores;
+    private final Enlazador[] enlazadores;
+    private final int[] tiposParametro;
+    // Setters para los lotes con estos tipos origen; se calculan con el primer lote
+    private int[] tiposLote;
+    private int[] settersLote;
+
+    private PlanEnlace(int[] valores, Enlazador[] enlazadores, int[] tiposParametro) {
+        this.valores = valores;
+        this.enlazadores = enlazadores;
+        this.tiposParametro = tiposParametro;
+    }
+
+    void enlazar(PreparedStatement ps, Object[] fila) throws SQLException {
+        for (int p = 0; p < valores.length; p++) {
+            enlazadores[p].enlazar(ps, p + 1, fila[valores[p]]);
+        }
+    }
+
+    void enlazar(PreparedStatement ps, LoteColumnar lote, int fila) throws SQLException {
+        if (lote.tipos() != tiposLote) {
+            prepararLote(lote.tipos());
+        }
+        for (int p = 0; p < valores.length; p++) {
+            int c = valores[p];
+            if (lote.esNulo(c, fila)) {
+                enlazadores[p].enlazar(ps, p + 1, null);
+                continue;
+            }
+            switch (settersLote[p]) {
+                case CON_INT:
+                    ps.setInt(p + 1, (int) lote.entero(c, fila));
+                    break;
+                case CON_LONG:
+                    ps.setLong(p + 1, lote.entero(c, fila));
+                    break;
+                case CON_SHORT:
+                    ps.setShort(p + 1, (short) lote.entero(c, fila));
+                    break;
+                case CON_BOOLEAN:
+                    ps.setBoolean(p + 1, lote.entero(c, fila) != 0);
+                    break;
+                case CON_DOUBLE:
+                    ps.setDouble(p + 1, lote.real(c, fila));
+                    break;
+                case CON_FLOAT:
+                    ps.setFloat(p + 1, (float) lote.real(c, fila));
+                    break;
+                case CONVERTIDO:
+                    enlazadores[p].enlazar(ps, p + 1, lote.valor(c, fila));
+                    break;
+                default:
+                    enlazadores[p].enlazar(ps, p + 1, lote.objeto(c, fila));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * El setter primitivo solo se usa donde la fila equivalente también lo usaría (un
+     * Integer en una columna INT o BIGINT, un Double en una FLOAT...); en el resto de
+     * los casos el valor se pasa como objeto al enlazador de la columna.
+     */
+    private void prepararLote(int[] tiposOrigen) {
+        int[] setters = new int[valores.length];
+        for (int p = 0; p < valores.length; p++) {
+            int origen = tiposOrigen[valores[p]];
+            int destino = tiposParametro[p];
+            switch (LoteColumnar.clase(origen)) {
+                case LoteColumnar.ENTERO:
+                    if (origen == Types.INTEGER && destino == Types.INTEGER) {
+                        setters[p] = CON_INT;
+                    } else if ((origen == Types.INTEGER || origen == Types.BIGINT) && destino == Types.BIGINT) {
+                        setters[p] = CON_LONG;
+                    } else if ((origen == Types.SMALLINT || origen == Types.TINYINT)
+                            && (destino == Types.SMALLINT || destino == Types.TINYINT)) {
+                        setters[p] = CON_SHORT;
+                    } else if ((origen == Types.BIT || origen == Types.BOOLEAN)
+                            && (destino == Types.BIT || destino == Types.BOOLEAN)) {
+                        setters[p] = CON_BOOLEAN;
+                    } else {
+                        setters[p] = CONVERTIDO;
+                    }
+                    break;
+                case LoteColumnar.REAL:
+                    if (origen == Types.REAL && destino == Types.REAL) {
+                        setters[p] = CON_FLOAT;
+                    } else if (origen != Types.REAL && (destino == Types.FLOAT || destino == Types.DOUBLE)) {
+                        setters[p] = CON_DOUBLE;
+                    } else {
+                        setters[p] = CONVERTIDO;
+                    }
+                    break;
+                default:
+                    setters[p] = CON_ENLAZADOR;
+                    break;
+            }
+        }
+        settersLote = setters;
+        tiposLote = tiposOrigen;
+    }
+
+    /** Un parámetro por columna, en el orden de la fila (INSERT simple). */
+    static PlanEnlace insercion(int[] tipos) {
+        List<Integer> orden = new ArrayList<>();
+        for (int i = 0; i < tipos.length; i++) {
+            orden.add(i);
+        }
+        return crear(orden, tipos);
+    }
+
+    /** Parámetros de {@link ETLProcess#construirUpsertSQL}: UPDATE sin PK, WHERE por PK, INSERT completo. */
+    static PlanEnlace upsert(List<String> columnasDestino, List<String> primaryKeys, int[] tipos) {
+        List<Integer> orden = new ArrayList<>();
+        for (int i = 0; i < columnasDestino.size(); i++) {
+            if (!primaryKeys.contains(columnasDestino.get(i))) {
+                orden.add(i);
+            }
+        }
+        for (String pk : primaryKeys) {
+            orden.add(columnasDestino.indexOf(pk));
+        }
+        for (int i = 0; i < columnasDestino.size(); i++) {
+            orden.add(i);
+        }
+        return crear(orden, tipos);
+    }
+
+    /** Parámetros de {@link ETLProcess#construirInsertConVerificacion}: WHERE completo e INSERT completo. */
+    static PlanEnlace insercionConVerificacion(int[] tipos) {
+        List<Integer> orden = new ArrayList<>();
+        for (int vuelta = 0; vuelta < 2; vuelta++) {
+            for (int i = 0; i < tipos.length; i++) {
+                orden.add(i);
+            }
+        }
+        return crear(orden, tipos);
+    }
+
+    private static PlanEnlace crear(List<Integer> orden, int[] tipos) {
+        int[] valores = new int[orden.size()];
+        Enlazador[] enlazadores = new Enlazador[orden.size()];
+        int[] tiposParametro = new int[orden.size()];
+        for (int p = 0; p < valores.length; p++) {
+            valores[p] = orden.get(p);
+            tiposParametro[p] = tipos[valores[p]];
+            enlazadores[p] = enlazadorPara(tiposParametro[p]);
+        }
+        return new PlanEnlace(valores, enlazadores, tiposParametro);
+    }
+
+    /** Tipos SQL (java.sql.Types) de las columnas de la tabla, en el orden indicado. */
+    static int[] tiposColumnas(Connection conn, String tabla, List<String> columnas) throws SQLException {
+        int[] tipos = new int[columnas.size()];
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT TOP 0 " + String.join(", ", columnas) + " FROM " + tabla)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 0; i < tipos.length; i++) {
+                tipos[i] = metaData.getColumnType(i + 1);
+            }
+        }
+        return tipos;
+    }
+
+    private static Enlazador enlazadorPara(int tipoSql) {
+        switch (tipoSql) {
+            case Types.INTEGER:
+                return (ps, p, v) -> {
+                    if (v instanceof Integer) {
+                        ps.setInt(p, (Integer) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.BIGINT:
+                return (ps, p, v) -> {
+                    if (v instanceof Long || v instanceof Integer) {
+                        ps.setLong(p, ((Number) v).longValue());
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return (ps, p, v) -> {
+                    if (v instanceof Short) {
+                        ps.setShort(p, (Short) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return (ps, p, v) -> {
+                    if (v instanceof Boolean) {
+                        ps.setBoolean(p, (Boolean) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return (ps, p, v) -> {
+                    if (v instanceof Double) {
+                        ps.setDouble(p, (Double) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.REAL:
+                return (ps, p, v) -> {
+                    if (v instanceof Float) {
+                        ps.setFloat(p, (Float) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return (ps, p, v) -> {
+                    if (v instanceof BigDecimal) {
+                        ps.setBigDecimal(p, (BigDecimal) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+                return (ps, p, v) -> {
+                    if (v instanceof String) {
+                        ps.setString(p, (String) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return (ps, p, v) -> {
+                    if (v instanceof String) {
+                        ps.setNString(p, (String) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.TIMESTAMP:
+                return (ps, p, v) -> {
+                    if (v instanceof Timestamp) {
+                        ps.setTimestamp(p, (Timestamp) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.DATE:
+                return (ps, p, v) -> {
+                    if (v instanceof java.sql.Date) {
+                        ps.setDate(p, (java.sql.Date) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return (ps, p, v) -> {
+                    if (v instanceof byte[]) {
+                        ps.setBytes(p, (byte[]) v);
+                    } else {
+                        generico(ps, p, v, tipoSql);
+                    }
+                };
+            default:
+                return (ps, p, v) -> generico(ps, p, v, tipoSql);
+        }
+    }
+
+    private static void generico(PreparedStatement ps, int parametro, Object valor, int tipoSql) throws SQLException {
+        if (valor == null) {
+            ps.setNull(parametro, tipoSql);
+        } else {
+            ps.setObject(parametro, valor);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * División de la consulta origen en particiones por una columna entera. El plan se
+ * calcula una vez y se guarda con el checkpoint, de modo que al reanudar una carga se
+ * leen exactamente los mismos rangos aunque MIN/MAX hayan cambiado desde entonces.
+ *
+ * Las filas con la columna en NULL van a una partición propia (la última), que no
+ * tiene checkpoint y se vuelve a leer completa al reanudar.
+ */
+final class PlanParticiones {
+    private final String columna;
+    // null = una sola partición, sin filtro por la columna
+    private final ExtraccionParticionada.Estrategia estrategia;
+    // RANGO: inicio de cada partición y, al final, el MAX (incluido en la última)
+    private final long[] limites;
+    // MODULO: número de cubetas
+    private final int modulo;
+
+    private PlanParticiones(String columna, ExtraccionParticionada.Estrategia estrategia, long[] limites, int modulo) {
+        this.columna = columna;
+        this.estrategia = estrategia;
+        this.limites = limites;
+        this.modulo = modulo;
+    }
+
+    static PlanParticiones unica(String columna) {
+        return new PlanParticiones(columna, null, null, 0);
+    }
+
+    /**
+     * @throws IllegalArgumentException si la columna no es entera: los límites se guardan como
+     *                                  long y un MAX decimal truncado dejaría afuera las últimas filas
+     */
+    static PlanParticiones calcular(Connection sourceConn, String query, String columna, int particiones,
+            ExtraccionParticionada.Estrategia estrategia) throws SQLException {
+        if (estrategia == ExtraccionParticionada.Estrategia.MODULO) {
+            try (Statement stmt = sourceConn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT TOP 0 q." + columna + " FROM (" + query + ") AS q")) {
+                validarEntera(columna, rs.getMetaData().getColumnType(1));
+            }
+            return new PlanParticiones(columna, estrategia, null, particiones);
+        }
+
+        long minimo;
+        long maximo;
+        try (Statement stmt = sourceConn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(q." + columna + "), MAX(q." + columna + ") FROM ("
+                     + query + ") AS q")) {
+            validarEntera(columna, rs.getMetaData().getColumnType(2));
+            rs.next();
+            minimo = rs.getLong(1);
+            if (rs.wasNull()) {
+                // Consulta sin filas (o solo NULL): una sola partición sin filtro
+                return unica(columna);
+            }
+            maximo = rs.getLong(2);
+        }
+
+        long paso = Math.max(1, (maximo - minimo) / particiones + 1);
+        List<Long> inicios = new ArrayList<>();
+        for (long inicio = minimo; inicio <= maximo; inicio += paso) {
+            inicios.add(inicio);
+            if (inicio + paso < inicio) {
+                break; // desbordamiento
+            }
+        }
+        long[] limites = new long[inicios.size() + 1];
+        for (int i = 0; i < inicios.size(); i++) {
+            limites[i] = inicios.get(i);
+        }
+        limites[inicios.size()] = maximo;
+        return new PlanParticiones(columna, estrategia, limites, 0);
+    }
+
+    private static void validarEntera(String columna, int tipoSql) {
+        switch (tipoSql) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return;
+            default:
+                throw new IllegalArgumentException("La columna de partición '" + columna + "' debe ser de tipo entero "
+                        + "(tinyint, smallint, int o bigint).");
+        }
+    }
+
+    String columna() {
+        return columna;
+    }
+
+    /** Número de particiones, incluida la de valores NULL cuando la consulta está particionada. */
+    int cantidad() {
+        if (estrategia == null) {
+            return 1;
+        }
+        return (estrategia == ExtraccionParticionada.Estrategia.MODULO ? modulo : limites.length - 1) + 1;
+    }
+
+    /** Partición a la que pertenece un valor de la columna, o -1 para NULL (sin checkpoint). */
+    int particionDe(Object clave) {
+        if (clave == null) {
+            return -1;
+        }
+        long valor = ((Number) clave).longValue();
+        if (estrategia == null) {
+            return 0;
+        }
+        if (estrategia == ExtraccionParticionada.Estrategia.MODULO) {
+            return (int) Math.abs(valor % modulo);
+        }
+        int posicion = Arrays.binarySearch(limites, 0, limites.length - 1, valor);
+        int particion = posicion >= 0 ? posicion : -posicion - 2;
+        return Math.max(0, Math.min(particion, limites.length - 2));
+    }
+
+    /**
+     * Consulta de una partición.
+     *
+     * @param desde   último valor ya confirmado en la partición, o null para leerla completa
+     * @param ordenar true para leer en orden de la columna (necesario para los checkpoints)
+     */
+    String consulta(String query, int particion, Long desde, boolean ordenar) {
+        String q = "q." + columna;
+        List<String> condiciones = new ArrayList<>();
+
+        if (estrategia != null && particion == cantidad() - 1) {
+            condiciones.add(q + " IS NULL");
+        } else {
+            if (estrategia == ExtraccionParticionada.Estrategia.MODULO) {
+                condiciones.add("ABS(" + q + " % " + modulo + ") = " + particion);
+            } else if (estrategia == ExtraccionParticionada.Estrategia.RANGO) {
+                boolean ultima = particion == limites.length - 2;
+                condiciones.add(q + " >= " + limites[particion] + " AND " + q + (ultima ? " <= " : " < ")
+                        + limites[particion + 1]);
+            }
+            if (desde != null) {
+                // Sin particionar, los NULL no tienen checkpoint y se vuelven a leer
+                condiciones.add(estrategia == null ? "(" + q + " > " + desde + " OR " + q + " IS NULL)" : q + " > " + desde);
+            }
+        }
+
+        if (condiciones.isEmpty() && !ordenar) {
+            return query;
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM (").append(query).append(") AS q");
+        if (!condiciones.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", condiciones));
+        }
+        if (ordenar) {
+            sql.append(" ORDER BY ").append(q);
+        }
+        return sql.toString();
+    }
+
+    void guardar(Properties propiedades) {
+        propiedades.setProperty("particion.columna", columna);
+        propiedades.setProperty("particion.estrategia", estrategia == null ? "UNICA" : estrategia.name());
+        if (limites != null) {
+            StringBuilder texto = new StringBuilder();
+            for (long limite : limites) {
+                if (texto.length() > 0) texto.append(',');
+                texto.append(limite);
+            }
+            propiedades.setProperty("particion.limites", texto.toString());
+        }
+        propiedades.setProperty("particion.modulo", String.valueOf(modulo));
+    }
+
+    static PlanParticiones cargar(Properties propiedades) {
+        String columna = propiedades.getProperty("particion.columna");
+        String estrategia = propiedades.getProperty("particion.estrategia");
+        if ("UNICA".equals(estrategia)) {
+            return unica(columna);
+        }
+        long[] limites = null;
+        String texto = propiedades.getProperty("particion.limites");
+        if (texto != null) {
+            limites = Arrays.stream(texto.split(",")).mapToLong(Long::parseLong).toArray();
+        }
+        return new PlanParticiones(columna, ExtraccionParticionada.Estrategia.valueOf(estrategia), limites,
+                Integer.parseInt(propiedades.getProperty("particion.modulo", "0")));
+    }
+}
@@ -0,0 +1,213 @@
+package src.etl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Conexiones reutilizables a una base de datos, compartidas por los trabajos que se
+ * ejecutan a la vez.
+ *
+ * Cada conexión entregada es un proxy: su close() la devuelve al pool en lugar de
+ * cerrarla, con la sesión como estaba al abrirla: se deshace la transacción abierta y se
+ * restauran autocommit, nivel de aislamiento, solo lectura, base de datos, LOCK_TIMEOUT y
+ * las opciones SET de @@OPTIONS (NOCOUNT, XACT_ABORT...). Se conservan como
+ * máximo {@code maximoInactivas} conexiones libres; el total en uso no se limita aquí,
+ * porque ya lo acota el número de trabajos concurrentes y un trabajo puede necesitar
+ * varias a la vez (lectores paralelos, reconexiones) sin esperar a que otro termine.
+ */
+final class PoolConexiones implements ProveedorConexion, AutoCloseable {
+
+    private static final int SEGUNDOS_VALIDACION = 2;
+
+    // Bits de @@OPTIONS y la opción SET que controla cada uno; IMPLICIT_TRANSACTIONS lo maneja
+    // el driver con setAutoCommit, que ya se restaura antes
+    private static final String[] OPCIONES_SET = {
+        null, null, "CURSOR_CLOSE_ON_COMMIT", "ANSI_WARNINGS", "ANSI_PADDING", "ANSI_NULLS",
+        "ARITHABORT", "ARITHIGNORE", "QUOTED_IDENTIFIER", "NOCOUNT", "ANSI_NULL_DFLT_ON", "ANSI_NULL_DFLT_OFF",
+        "CONCAT_NULL_YIELDS_NULL", "NUMERIC_ROUNDABORT", "XACT_ABORT"
+    };
+
+    /** Conexión física con el estado de su sesión al abrirla. */
+    private static final class Sesion {
+        final Connection conexion;
+        final int aislamiento;
+        final boolean soloLectura;
+        final String catalogo;
+        final int opciones;
+        final int tiempoBloqueo;
+
+        Sesion(Connection conexion) throws SQLException {
+            this.conexion = conexion;
+            this.aislamiento = conexion.getTransactionIsolation();
+            this.soloLectura = conexion.isReadOnly();
+            this.catalogo = conexion.getCatalog();
+            try (Statement stmt = conexion.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT @@OPTIONS, @@LOCK_TIMEOUT")) {
+                rs.next();
+                this.opciones = rs.getInt(1);
+                this.tiempoBloqueo = rs.getInt(2);
+            }
+        }
+    }
+
+    private final ProveedorConexion proveedor;
+    private final int maximoInactivas;
+    private final LinkedBlockingDeque<Sesion> inactivas = new LinkedBlockingDeque<>();
+    private volatile boolean cerrado;
+
+    PoolConexiones(ProveedorConexion proveedor, int maximoInactivas) {
+        this.proveedor = proveedor;
+        this.maximoInactivas = maximoInactivas;
+    }
+
+    @Override
+    public Connection obtener() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+        Sesion sesion;
+        while ((sesion = inactivas.pollFirst()) != null) {
+            if (sesion.conexion.isValid(SEGUNDOS_VALIDACION)) {
+                return envolver(sesion);
+            }
+            cerrarSinError(sesion.conexion);
+        }
+        Connection conexion = proveedor.obtener();
+        try {
+            return envolver(new Sesion(conexion));
+        } catch (SQLException e) {
+            cerrarSinError(conexion);
+            throw e;
+        }
+    }
+
+    private Connection envolver(Sesion sesion) {
+        Connection conexion = sesion.conexion;
+        InvocationHandler manejador = new InvocationHandler() {
+            private boolean devuelta;
+
+            @Override
+            public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+                switch (metodo.getName()) {
+                    case "close":
+                        if (!devuelta) {
+                            devuelta = true;
+                            devolver(sesion);
+                        }
+                        return null;
+                    case "isClosed":
+                        return devuelta || conexion.isClosed();
+                    case "unwrap":
+                    case "isWrapperFor":
+                        break;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        if (devuelta) {
+                            throw new SQLException("La conexión ya fue devuelta al pool");
+                        }
+                }
+                try {
+                    return metodo.invoke(conexion, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, manejador);
+    }
+
+    private void devolver(Sesion sesion) {
+        Connection conexion = sesion.conexion;
+        try {
+            if (cerrado || conexion.isClosed()) {
+                cerrarSinError(conexion);
+                return;
+            }
+            if (!conexion.getAutoCommit()) {
+                conexion.rollback();
+                conexion.setAutoCommit(true);
+            }
+            restaurar(sesion);
+            conexion.clearWarnings();
+        } catch (SQLException e) {
+            // Conexión en mal estado: no se reutiliza
+            cerrarSinError(conexion);
+            return;
+        }
+        if (inactivas.size() >= maximoInactivas || !inactivas.offerFirst(sesion)) {
+            cerrarSinError(conexion);
+        }
+        if (cerrado && inactivas.remove(sesion)) {
+            cerrarSinError(conexion);
+        }
+    }
+
+    /**
+     * Deja la sesión como estaba al abrir la conexión, para que el trabajo siguiente no
+     * herede un SET NOCOUNT, un nivel de aislamiento o una base de datos del anterior. Las
+     * opciones SET se comparan en una ida y vuelta y solo se envían las que cambiaron.
+     */
+    private static void restaurar(Sesion sesion) throws SQLException {
+        Connection conexion = sesion.conexion;
+        if (conexion.getTransactionIsolation() != sesion.aislamiento) {
+            conexion.setTransactionIsolation(sesion.aislamiento);
+        }
+        if (conexion.isReadOnly() != sesion.soloLectura) {
+            conexion.setReadOnly(sesion.soloLectura);
+        }
+        if (sesion.catalogo != null && !sesion.catalogo.equals(conexion.getCatalog())) {
+            conexion.setCatalog(sesion.catalogo);
+        }
+        try (Statement stmt = conexion.createStatement()) {
+            int opciones;
+            int tiempoBloqueo;
+            try (ResultSet rs = stmt.executeQuery("SELECT @@OPTIONS, @@LOCK_TIMEOUT")) {
+                rs.next();
+                opciones = rs.getInt(1);
+                tiempoBloqueo = rs.getInt(2);
+            }
+            StringBuilder sql = new StringBuilder();
+            int distintas = opciones ^ sesion.opciones;
+            for (int bit = 1; bit < OPCIONES_SET.length; bit++) {
+                if (OPCIONES_SET[bit] != null && (distintas & (1 << bit)) != 0) {
+                    sql.append("SET ").append(OPCIONES_SET[bit])
+                       .append((sesion.opciones & (1 << bit)) != 0 ? " ON; " : " OFF; ");
+                }
+            }
+            if (tiempoBloqueo != sesion.tiempoBloqueo) {
+                sql.append("SET LOCK_TIMEOUT ").append(sesion.tiempoBloqueo).append("; ");
+            }
+            if (sql.length() > 0) {
+                stmt.execute(sql.toString());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        cerrado = true;
+        Sesion sesion;
+        while ((sesion = inactivas.pollFirst()) != null) {
+            cerrarSinError(sesion.conexion);
+        }
+    }
+
+    private static void cerrarSinError(Connection conexion) {
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            // Ya no se usará
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package src.etl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Abre conexiones adicionales a una base de datos (por ejemplo, una por lector paralelo).
+ */
+@FunctionalInterface
+interface ProveedorConexion {
+
+    Connection obtener() throws SQLException;
+}
@@ -0,0 +1,48 @@
+package src.etl;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Clasificación de errores transitorios de SQL Server y espera exponencial entre reintentos.
+ */
+final class Reintentos {
+    // Víctima de interbloqueo, tiempo de espera de bloqueo y errores transitorios de Azure SQL
+    private static final int[] CODIGOS_TRANSITORIOS = {1205, 1222, 4060, 40197, 40501, 40613, 49918, 49919, 49920};
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+
+    private Reintentos() {
+    }
+
+    static boolean esTransitorio(SQLException e) {
+        for (SQLException actual = e; actual != null; actual = actual.getNextException()) {
+            if (esConexionPerdida(actual) || "40001".equals(actual.getSQLState())) {
+                return true;
+            }
+            for (int codigo : CODIGOS_TRANSITORIOS) {
+                if (actual.getErrorCode() == codigo) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Errores de la clase 08 (conexión): la sesión se perdió y hay que abrir otra. */
+    static boolean esConexionPerdida(SQLException e) {
+        String estado = e.getSQLState();
+        return estado != null && estado.startsWith("08");
+    }
+
+    /** Espera base * 2^(intento-1), con variación aleatoria de ±25% y un máximo de 30 s. */
+    static void esperar(int intento, long esperaBaseMs) throws SQLException {
+        long espera = Math.min(ESPERA_MAXIMA_MS, esperaBaseMs << Math.min(intento - 1, 20));
+        espera += (long) (espera * (ThreadLocalRandom.current().nextDouble() - 0.5) / 2);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Reintento interrumpido", e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package src.etl;
+
+/**
+ * Operación ya compilada que se aplica al valor de una columna.
+ */
+@FunctionalInterface
+interface TransformacionColumna {
+
+    Object aplicar(Object valor);
+}